@@ -0,0 +1,27 @@
+package mountainPineBeetle;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs the benchmarks with the GC profiler, so every result is reported with its 
+ *  allocation rate (gc.alloc.rate.norm is bytes allocated per operation). <br>
+ *  Any of the usual JMH command line options may be given, 
+ *  for example a benchmark name pattern or -rf csv to save the results.
+ * 
+ * @author michaelfrancenelson */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException
+	{
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,119 @@
+package mountainPineBeetle;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of the Regniere and Bentz winter survival kernels. <br>
+ *  The daily temperatures are a synthetic season starting on the 1st of August, 
+ *  so both the gain-only and the gain and loss branches are exercised.  
+ *  Each call advances a day index so that the inputs are not constant.
+ * 
+ * @author michaelfrancenelson */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegniereBentzBenchmark {
+
+	static final int DAYS = 365;
+
+	/** Number of cells for the batch update. */
+	@Param({"1024"})
+	int cells;
+
+	double[] tMin, tMax;
+	boolean[] gainOnly;
+	int day;
+
+	double[] temps = new double[2];
+	double[] state = new double[4];
+
+	double[] cellTMin, cellTMax, coldHardening, gain, loss, survival;
+
+	@Setup
+	public void setup()
+	{
+		tMin = new double[DAYS]; tMax = new double[DAYS];
+		for(int d = 0; d < DAYS; d++){
+			tMin[d] = -10d + 20d * Math.cos(2d * Math.PI * (d - 10) / DAYS) + 3d * Math.sin(d);
+			tMax[d] = tMin[d] + 8d + d % 5;
+		}
+		gainOnly = new SeasonCalendar(LocalDate.of(2000, 8, 1), DAYS).gainOnlyFlags();
+
+		state[3] = 1d;
+		cellTMin = new double[cells]; cellTMax = new double[cells];
+		coldHardening = new double[cells]; gain = new double[cells]; loss = new double[cells]; survival = new double[cells];
+		for(int i = 0; i < cells; i++) survival[i] = 1d;
+	}
+
+	int nextDay() { day = day + 1 == DAYS ? 0 : day + 1; return day; }
+
+	@Benchmark
+	public double[] updateState()
+	{
+		int d = nextDay();
+		temps[0] = tMin[d]; temps[1] = tMax[d];
+		return RegniereBentzMPBCalculator.updateState(temps, gainOnly[d], state);
+	}
+
+	@Benchmark
+	public double[] updateStates()
+	{
+		int d = nextDay();
+		for(int i = 0; i < cells; i++){ cellTMin[i] = tMin[d] - 0.01 * i; cellTMax[i] = tMax[d] - 0.01 * i; }
+		RegniereBentzMPBCalculator.updateStates(cellTMin, cellTMax, gainOnly[d], 
+				coldHardening, gain, loss, survival, 0, cells);
+		return survival;
+	}
+
+	@Benchmark
+	public double probSurvival()
+	{
+		int d = nextDay();
+		return RegniereBentzMPBCalculator.probSurvival(0.9, tMin[d] - 20d, 0.2, 0.3, 0.5);
+	}
+
+	@Benchmark
+	public double probSurvivalArray()
+	{
+		int d = nextDay();
+		return RegniereBentzMPBCalculator.probSurvival(0.9, tMin[d] - 20d, 
+				RegniereBentzMPBCalculator.allProportions(d / 4d));
+	}
+
+	@Benchmark
+	public double logistic()
+	{
+		return RegniereBentzMPBCalculator.logistic(tMin[nextDay()] - 20d, 
+				RegniereBentzMPBCalculator.ModelParameters.meanSCPAlpha2, 
+				RegniereBentzMPBCalculator.ModelParameters.spreadSCPBeta2);
+	}
+
+	@Benchmark
+	public double logisticTabulated()
+	{
+		return LogisticLookupTable.logistic(tMin[nextDay()] - 20d, 
+				RegniereBentzMPBCalculator.ModelParameters.meanSCPAlpha2, 
+				RegniereBentzMPBCalculator.ModelParameters.spreadSCPBeta2);
+	}
+
+	@Benchmark
+	public double medianLethalTemperature()
+	{
+		return RegniereBentzMPBCalculator.medianLethalTemperature(nextDay() / 4d);
+	}
+}
@@ -0,0 +1,65 @@
+package mountainPineBeetle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of the Safranyik et al. 1999 per-DBH-class equations for one stand.
+ * 
+ * @author michaelfrancenelson */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SafranyikBenchmark {
+
+	/** Number of DBH classes in the stand. */
+	@Param({"10", "40"})
+	int classes;
+
+	int[] liveTrees;
+	double[] dbh, proportionPerDBHClass, survival, meanEggs, proportionFemale;
+
+	@Setup
+	public void setup()
+	{
+		liveTrees = new int[classes];
+		dbh = new double[classes];
+		proportionPerDBHClass = new double[classes];
+		survival = new double[classes];
+		meanEggs = new double[classes];
+		proportionFemale = new double[classes];
+		for(int i = 0; i < classes; i++){
+			dbh[i] = 10d + 2.5 * i;
+			liveTrees[i] = 200 - 4 * i;
+			proportionPerDBHClass[i] = 1d / classes;
+			survival[i] = 0.05 + 0.001 * i;
+			meanEggs[i] = 40d + i;
+			proportionFemale[i] = 0.6;
+		}
+	}
+
+	@Benchmark
+	public double[] attackProportionDBHClasses()
+	{
+		return SafranyikMPBCalculator.attackProportionDBHClasses(liveTrees, dbh);
+	}
+
+	@Benchmark
+	public double dbhClassesReproductionFemale()
+	{
+		return SafranyikMPBCalculator.dbhClassesReproductionFemale(proportionPerDBHClass, survival, meanEggs, proportionFemale);
+	}
+}
@@ -0,0 +1,102 @@
+package gapModels;
+
+/** Light available to every tree of a plot under the disk canopy of JaBoWa equation 7
+ *  ({@link GapModelCalculator#diskLightAvailability(double, double, double)}). <br><br>
+ *  
+ *  The trees are sorted by height, tallest first, and a running sum of leaf area down 
+ *  the sorted order gives each tree the leaf area of all trees taller than itself. 
+ *  Trees of exactly equal height do not shade each other.  This takes O(n log n) 
+ *  time per plot instead of the O(n<sup>2</sup>) of comparing every pair of trees. <br><br>
+ *  
+ *  The sort is a stable bottom-up merge sort of tree indices that skips merges of runs already 
+ *  in order, so a plot whose trees are stored roughly tallest first sorts in close to linear time. 
+ *  The index buffers are kept between calls and grow with the plot, so an instance belongs 
+ *  to one plot, or one thread, at a time.
+ * 
+ * @author michaelfrancenelson */
+public class CanopyLight {
+
+	/** Runs of this length are sorted by insertion before merging. */
+	static final int INSERTION_RUN = 16;
+
+	int[] order = new int[0];
+	int[] scratch = new int[0];
+
+	/** Write the light available to each of the first n trees into light.
+	 * @param height tree heights
+	 * @param leafArea leaf area of each tree, in the units that k applies to:
+	 *  e.g. {@link GapModelCalculator#allometricLeafArea(double, double, double, double)}
+	 *  or {@link GapModelCalculator#leafWeightJaBoWa(double, double, double)}
+	 * @param n number of trees
+	 * @param phi insolation above the canopy
+	 * @param k light extinction per unit of leaf area
+	 * @param light output, light available to each tree
+	 * @return the light reaching the ground under all n trees */
+	public double lightAvailability(double[] height, double[] leafArea, int n, double phi, double k, double[] light)
+	{
+		int[] sorted = sortByHeight(height, n);
+		double above = 0d;
+		int i = 0;
+		while(i < n){
+			/* Trees of equal height share the leaf area above them. */
+			double h = height[sorted[i]];
+			double shading = GapModelCalculator.diskLightAvailability(phi, k, above);
+			int j = i;
+			for(; j < n && height[sorted[j]] == h; j++){
+				light[sorted[j]] = shading;
+				above += leafArea[sorted[j]];
+			}
+			i = j;
+		}
+		return GapModelCalculator.diskLightAvailability(phi, k, above);
+	}
+
+	/** Set each tree's light and the plot's floor light. */
+	public void apply(GapPlot plot, double phi, double k)
+	{
+		plot.floorLight = lightAvailability(plot.height, plot.leafArea, plot.trees, phi, k, plot.light);
+	}
+
+	/** @return indices of the first n trees, tallest first, valid until the next call */
+	int[] sortByHeight(double[] height, int n)
+	{
+		if(order.length < n){
+			order = new int[Math.max(n, 2 * order.length)];
+			scratch = new int[order.length];
+		}
+		int[] a = order, b = scratch;
+		for(int i = 0; i < n; i++) a[i] = i;
+
+		for(int lo = 0; lo < n; lo += INSERTION_RUN){
+			int hi = Math.min(n, lo + INSERTION_RUN);
+			for(int i = lo + 1; i < hi; i++){
+				int t = a[i];
+				double h = height[t];
+				int j = i - 1;
+				for(; j >= lo && height[a[j]] < h; j--) a[j + 1] = a[j];
+				a[j + 1] = t;
+			}
+		}
+
+		for(int width = INSERTION_RUN; width < n; width *= 2){
+			for(int lo = 0; lo < n; lo += 2 * width){
+				int mid = Math.min(n, lo + width), hi = Math.min(n, lo + 2 * width);
+				if(mid >= hi || height[a[mid - 1]] >= height[a[mid]]){
+					System.arraycopy(a, lo, b, lo, hi - lo);
+					continue;
+				}
+				int i = lo, j = mid, k = lo;
+				while(i < mid && j < hi) b[k++] = height[a[j]] > height[a[i]] ? a[j++] : a[i++];
+				while(i < mid) b[k++] = a[i++];
+				while(j < hi) b[k++] = a[j++];
+			}
+			int[] t = a; a = b; b = t;
+		}
+		/* Keep the sorted indices in the order buffer. */
+		if(a != order){
+			scratch = order;
+			order = a;
+		}
+		return order;
+	}
+}
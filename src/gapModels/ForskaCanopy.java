@@ -0,0 +1,193 @@
+package gapModels;
+
+/** A FORSKA cylinder-layer canopy (Prentice and Leemans 1990) kept up to date as trees change. <br><br>
+ *  
+ *  The canopy is a stack of layers of fixed depth from the ground to a fixed top height.  
+ *  Each tree's leaf area is spread evenly down its crown, from its height to its bole height, 
+ *  in a {@link VerticalLeafAreaIndex} whose buckets are the layers, so adding, removing or 
+ *  growing a tree takes O(log layers) time however deep its crown. <br><br>
+ *  
+ *  Light intensities at the layer boundaries follow equation 2, and each species' light 
+ *  responses at the boundaries follow equation 3.  For each species a running trapezoidal sum 
+ *  of its responses down the canopy is kept, so the Riemann-sum integral of 
+ *  {@link ForskaCalculator#forskaNetLightAssimilationLayers(double[], double, double, double, double)} 
+ *  is the difference of two running sums for any crown, and all trees are done in one pass.  
+ *  The profile and the sums are refreshed, in O(layers &times; species), the first time 
+ *  they are needed after a change. <br><br>
+ *  
+ *  Light intensity below a species' compensation point gives a light response of 0.
+ * 
+ * @author michaelfrancenelson */
+public class ForskaCanopy {
+
+	final int layers;
+	final double layerDepth, top, area;
+	final double canopyLight, extinction;
+	final double[] compensation, halfSaturation;
+
+	/** Foliage of each layer; bucket 0 is the bottom layer. */
+	final VerticalLeafAreaIndex foliage;
+
+	/** Foliage in and above each bucket, read from the index in one pass on refresh */
+	final double[] suffix;
+
+	/** Light intensity at each layer boundary, top first. */
+	final double[] light;
+
+	/** Light response of each species at each boundary: [species][boundary] */
+	final double[][] response;
+
+	/** Trapezoidal sum of each species' response from the top down to each boundary: [species][boundary] */
+	final double[][] integral;
+
+	boolean stale = true;
+
+	/**
+	 * @param layers number of layers
+	 * @param layerDepth depth of each layer, m
+	 * @param area area of the plot, m<sup>2</sup>
+	 * @param compensationPoints light compensation point of each species
+	 * @param halfSaturationPoints half saturation point of each species */
+	public ForskaCanopy(int layers, double layerDepth, double area,
+			double[] compensationPoints, double[] halfSaturationPoints)
+	{
+		this(layers, layerDepth, area, compensationPoints, halfSaturationPoints,
+				ForskaCalculator.DEFAULT_CANOPY_LIGHT_INTENSITY, ForskaCalculator.DEFAULT_EXTINCTION_COEFFICIENT);
+	}
+
+	/**
+	 * @param canopyLight light intensity above the canopy
+	 * @param extinction light extinction coefficient */
+	public ForskaCanopy(int layers, double layerDepth, double area,
+			double[] compensationPoints, double[] halfSaturationPoints,
+			double canopyLight, double extinction)
+	{
+		this.layers = layers;
+		this.layerDepth = layerDepth;
+		this.top = layers * layerDepth;
+		this.area = area;
+		this.compensation = compensationPoints.clone();
+		this.halfSaturation = halfSaturationPoints.clone();
+		this.canopyLight = canopyLight;
+		this.extinction = extinction;
+		foliage = new VerticalLeafAreaIndex(layers, layerDepth, area);
+		suffix = new double[layers + 1];
+		light = new double[layers + 1];
+		response = new double[compensation.length][layers + 1];
+		integral = new double[compensation.length][layers + 1];
+	}
+
+	public int layers() { return layers; }
+
+	/** @return the height of the top of the canopy */
+	public double top() { return top; }
+
+	/** @return the leaf area index of a layer, top layer first */
+	public double leafAreaIndex(int layer) { return foliage.foliageInBucket(layers - 1 - layer) / area; }
+
+	/** @return the light intensity at a layer boundary: 0 is the top of the canopy, {@link #layers()} the ground */
+	public double lightIntensity(int boundary)
+	{
+		refresh();
+		return light[boundary];
+	}
+
+	/** @return the light responses of a species at the layer boundaries; do not change it */
+	public double[] lightResponses(int species)
+	{
+		refresh();
+		return response[species];
+	}
+
+	/** Remove every tree. */
+	public void clear()
+	{
+		foliage.clear();
+		stale = true;
+	}
+
+	/** Add a tree's leaf area to the layers its crown occupies. */
+	public void add(double height, double boleHeight, double leafArea)
+	{
+		foliage.add(height, boleHeight, leafArea);
+		stale = true;
+	}
+
+	/** Remove a tree added with the same arguments. */
+	public void remove(double height, double boleHeight, double leafArea)
+	{
+		foliage.remove(height, boleHeight, leafArea);
+		stale = true;
+	}
+
+	/** Replace a tree's crown after it grows. */
+	public void update(double oldHeight, double oldBoleHeight, double oldLeafArea,
+			double height, double boleHeight, double leafArea)
+	{
+		foliage.resize(oldHeight, oldBoleHeight, oldLeafArea, height, boleHeight, leafArea);
+		stale = true;
+	}
+
+	/** @return the layer holding a height; the top of the canopy is in layer 0 and the ground in the last layer */
+	int layer(double height)
+	{
+		int i = (int) ((top - height) / layerDepth);
+		return Math.min(layers - 1, Math.max(0, i));
+	}
+
+	/** Recompute the light profile and the species' running sums after a change. */
+	void refresh()
+	{
+		if(!stale) return;
+		foliage.suffixSums(suffix);
+		light[0] = canopyLight;
+		for(int i = 0; i < layers; i++){
+			/* The floor of layer i is the bottom of bucket layers - 1 - i. 
+			 * Removals can leave rounding error below zero. */
+			double above = Math.max(0d, suffix[layers - 1 - i] / area);
+			light[i + 1] = ForskaCalculator.forskaLightIntensityAtDepth(canopyLight, extinction, above);
+		}
+		for(int s = 0; s < compensation.length; s++){
+			double[] r = response[s], sum = integral[s];
+			for(int b = 0; b <= layers; b++){
+				r[b] = light[b] > compensation[s] ? 
+						ForskaCalculator.forskaCylinderLightResponse(light[b], extinction, compensation[s], halfSaturation[s]) : 0d;
+			}
+			sum[0] = 0d;
+			for(int b = 0; b < layers; b++) sum[b + 1] = sum[b] + ForskaCalculator.trapezoidArea(r[b], r[b + 1], layerDepth);
+		}
+		stale = false;
+	}
+
+	/** @return the integral of the species' light response from the top of the canopy down to z */
+	double integralFromTop(int species, double z)
+	{
+		double[] r = response[species];
+		int i = layer(z);
+		double ceiling = top - i * layerDepth;
+		double rz = ForskaCalculator.linearInterpolation(z, ceiling, r[i], ceiling - layerDepth, r[i + 1]);
+		return integral[species][i] + ForskaCalculator.trapezoidArea(r[i], rz, ceiling - z);
+	}
+
+	/** @return the Riemann-sum integral of a species' light response over a crown, 
+	 *  as {@link ForskaCalculator#forskaNetLightAssimilationLayers(double[], double, double, double, double)} */
+	public double assimilation(int species, double height, double boleHeight)
+	{
+		refresh();
+		height = Math.min(top, Math.max(0d, height));
+		boleHeight = Math.min(height, Math.max(0d, boleHeight));
+		return integralFromTop(species, boleHeight) - integralFromTop(species, height);
+	}
+
+	/** The light response integral over every tree's crown.
+	 * @param species species of each tree
+	 * @param height height of each tree
+	 * @param boleHeight bole height of each tree
+	 * @param n number of trees
+	 * @param out receives the integral for each tree */
+	public void assimilation(int[] species, double[] height, double[] boleHeight, int n, double[] out)
+	{
+		refresh();
+		for(int i = 0; i < n; i++) out[i] = assimilation(species[i], height[i], boleHeight[i]);
+	}
+}
@@ -327,6 +327,17 @@ public class GapModelCalculator {
 		return phi * Math.exp(-k * slaAbove);
 	}
 
+	/** Botkin et al. 1972 (JaBoWa) Equation 7 with the leaf area above a tree read from 
+	 *  a {@link VerticalLeafAreaIndex} of the plot's disk crowns.
+	 * @param phi annual insolation in appropriate units, 1 by default in original JaBoWa
+	 * @param k tuning parameter, 1/6000 in original JaBoWa
+	 * @param leafArea the leaf areas of the plot's trees, each added at its height
+	 * @param height the tree's height
+	 * @return an estimate of light available to the tree for photosynthesis. */
+	public static double diskLightAvailability(double phi, double k, VerticalLeafAreaIndex leafArea, double height){
+		return diskLightAvailability(phi, k, leafArea.foliageAboveDisk(height));
+	}
+
 	/** Botkin et al. 1972 (JaBoWa) Equation 9: a site's degree days. <br><br>
 	 * NOTE: The return value is in the same units as the arguments. <br>
 	 * NOTE: All arguments must be in the same units (degrees C or F).
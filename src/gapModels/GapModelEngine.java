@@ -0,0 +1,179 @@
+package gapModels;
+
+import java.util.Arrays;
+
+import org.apache.commons.rng.UniformRandomProvider;
+
+/** An annual JaBoWa-style gap-model engine for {@link GapPlot}s (Botkin et al. 1972). <br><br>
+ *  
+ *  Each year runs four passes over the plot's arrays: <br>
+ *  1. light: the light available to each tree under the leaf area of the taller trees (equation 7), 
+ *     from a {@link CanopyLight} sort of the plot's trees by height, <br>
+ *  2. growth: the maximum diameter increment (equation 5) reduced by light (equation 8), 
+ *     degree days (equation 10) and crowding (equation 11), <br>
+ *  3. mortality: intrinsic mortality (equation 12a), and a higher mortality for trees whose 
+ *     increment was below {@link #SLOW_GROWTH_INCREMENT}, followed by compaction of the dead trees, <br>
+ *  4. regeneration: saplings of each species whose light and temperature responses 
+ *     at the forest floor are positive. <br><br>
+ *  
+ *  Species constants come from a {@link SpeciesAllometry}, so the passes only read cached values 
+ *  and create no objects.  The engine itself is not changed by a step, so one engine may run 
+ *  many plots on several threads, each with its own random stream.
+ * 
+ * @author michaelfrancenelson */
+public class GapModelEngine {
+
+	/** Diameter increment, cm, below which a tree is growing too slowly (Botkin et al. 1972). */
+	public static final double SLOW_GROWTH_INCREMENT = 0.01;
+
+	/** Annual mortality of slowly growing trees: 1 / e, so that about 1% survive 10 years. */
+	public static final double SLOW_GROWTH_MORTALITY = 0.368;
+
+	/** Default number of saplings a species may add to a plot in a year. */
+	public static final int DEFAULT_SAPLINGS_MAX = 3;
+
+	final SpeciesAllometry allometry;
+
+	/** Annual insolation above the canopy, phi in equation 7 */
+	double phi = 1d;
+	/** Light extinction per m<sup>2</sup> of leaf area on the plot, k in equation 7 */
+	double lightExtinction = 0.005;
+	/** Largest basal area the plot can support, m<sup>2</sup>, equation 11 */
+	double maxBasalArea = 1.5;
+	/** Diameter of new saplings, cm */
+	double saplingDBH = 0.5;
+
+	/** Saplings maximum of each species, grown by {@link #saplingsMax()} as species are registered */
+	volatile int[] saplingsMax;
+
+	/** An engine with JaBoWa defaults for a 10 m &times; 10 m plot. */
+	public GapModelEngine(SpeciesAllometry allometry)
+	{
+		this.allometry = allometry;
+		saplingsMax = new int[allometry.species()];
+		Arrays.fill(saplingsMax, DEFAULT_SAPLINGS_MAX);
+	}
+
+	/** Set the insolation and light extinction of equation 7. */
+	public void setLight(double phi, double lightExtinction) { this.phi = phi; this.lightExtinction = lightExtinction; }
+
+	/** Set the largest basal area the plot can support, m<sup>2</sup>. */
+	public void setMaxBasalArea(double maxBasalArea) { this.maxBasalArea = maxBasalArea; }
+
+	/** Set the largest number of saplings of a species added to a plot in a year. */
+	public synchronized void setSaplingsMax(int species, int saplings) 
+	{ 
+		if(species < 0 || species >= allometry.species()){
+			throw new IllegalArgumentException("No species " + species + " in the allometry");
+		}
+		saplingsMax()[species] = saplings; 
+	}
+
+	/** @return the saplings maximum of every species in the allometry, including species registered 
+	 *  since the engine was made, which start at {@link #DEFAULT_SAPLINGS_MAX} */
+	int[] saplingsMax()
+	{
+		int[] max = saplingsMax;
+		if(max.length >= allometry.species()) return max;
+		synchronized(this){
+			max = saplingsMax;
+			int n = allometry.species();
+			if(max.length < n){
+				int old = max.length;
+				max = Arrays.copyOf(max, n);
+				Arrays.fill(max, old, n, DEFAULT_SAPLINGS_MAX);
+				saplingsMax = max;
+			}
+			return max;
+		}
+	}
+
+	public SpeciesAllometry allometry() { return allometry; }
+
+	/** Run one year: light, growth, mortality with compaction, and regeneration. */
+	public void step(GapPlot plot, UniformRandomProvider random)
+	{
+		lightPass(plot);
+		growthPass(plot);
+		mortalityPass(plot, random);
+		plot.compact();
+		regenerationPass(plot, random);
+	}
+
+	/** Run several years. */
+	public void run(GapPlot plot, int years, UniformRandomProvider random)
+	{
+		for(int y = 0; y < years; y++) step(plot, random);
+	}
+
+	/** Equation 7 for every tree: the shading leaf area is the leaf area of all taller trees. <br>
+	 *  Uses the plot's {@link CanopyLight}, in O(n log n) time. */
+	public void lightPass(GapPlot plot)
+	{
+		plot.canopy.apply(plot, phi, lightExtinction);
+	}
+
+	/** {@link #lightPass(GapPlot)} by comparing every pair of trees, for checking. */
+	void lightPassPairwise(GapPlot plot)
+	{
+		int n = plot.trees;
+		double[] height = plot.height, leafArea = plot.leafArea;
+		double total = 0d;
+		for(int i = 0; i < n; i++){
+			double above = 0d;
+			for(int j = 0; j < n; j++) if(height[j] > height[i]) above += leafArea[j];
+			plot.light[i] = GapModelCalculator.diskLightAvailability(phi, lightExtinction, above);
+			total += leafArea[i];
+		}
+		plot.floorLight = GapModelCalculator.diskLightAvailability(phi, lightExtinction, total);
+	}
+
+	/** Grow every tree by its maximum increment reduced by light, temperature and crowding. */
+	public void growthPass(GapPlot plot)
+	{
+		int n = plot.trees;
+		double crowding = GapModelCalculator.linearCrowdingCompetition(plot.basalArea(), maxBasalArea);
+		for(int i = 0; i < n; i++){
+			int s = plot.species[i];
+			double dbh = plot.dbh[i];
+			double increment = allometry.maxDiameterIncrement(s, dbh, plot.height[i]) 
+					* allometry.lightResponse(s, plot.light[i])
+					* allometry.temperatureEffect(s, plot.degreeDays)
+					* crowding;
+			increment = Math.max(0d, increment);
+			dbh += increment;
+			plot.increment[i] = increment;
+			plot.dbh[i] = dbh;
+			plot.height[i] = allometry.height(s, dbh);
+			plot.leafArea[i] = allometry.leafArea(s, dbh);
+		}
+	}
+
+	/** Flag trees that die this year.  Call {@link GapPlot#compact()} to remove them. */
+	public void mortalityPass(GapPlot plot, UniformRandomProvider random)
+	{
+		int n = plot.trees;
+		for(int i = 0; i < n; i++){
+			double mortality = plot.increment[i] < SLOW_GROWTH_INCREMENT ? 
+					SLOW_GROWTH_MORTALITY : allometry.mortality(plot.species[i]);
+			if(random.nextDouble() < mortality) plot.alive[i] = false;
+		}
+	}
+
+	/** Add saplings of every species that can establish under the light at the forest floor 
+	 *  and the plot's degree days: up to the species' saplings maximum, at random. */
+	public void regenerationPass(GapPlot plot, UniformRandomProvider random)
+	{
+		int[] max = saplingsMax();
+		for(int s = 0; s < max.length; s++){
+			if(max[s] == 0) continue;
+			if(allometry.temperatureEffect(s, plot.degreeDays) <= 0d) continue;
+			if(allometry.lightResponse(s, plot.floorLight) <= 0d) continue;
+			int saplings = random.nextInt(max[s] + 1);
+			for(int k = 0; k < saplings; k++){
+				double dbh = saplingDBH * (1d + 0.1 * random.nextDouble());
+				plot.add(s, dbh, allometry.height(s, dbh), allometry.leafArea(s, dbh));
+			}
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package gapModels;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.rng.JumpableUniformRandomProvider;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+
+/** Ensembles of independent gap-model plots run with a {@link GapModelEngine}. <br><br>
+ *  
+ *  Every plot starts from the same initial plot, often bare ground.  
+ *  Plot p draws from its own stream: the stream of a {@link RandomSource#XO_RO_SHI_RO_128_PP} 
+ *  generator seeded with the ensemble seed, jumped ahead p times by 2<sup>64</sup> steps, 
+ *  so each plot gives the same trajectory however the plots are scheduled. <br><br>
+ *  
+ *  Plot histories are not kept: after every year each plot's basal area, biomass 
+ *  (FORET, {@link GapModelCalculator#foretStandBiomassFortran(double, double, double)}), stems, 
+ *  and basal area of each species are added to {@link StreamingMoments}.  
+ *  The plots are split into tasks of {@link #PLOTS_PER_TASK} in a fixed binary tree, 
+ *  and the tasks' moments are merged up the same tree, so the summary does not depend 
+ *  on the number of threads either.
+ * 
+ * @author michaelfrancenelson */
+public class GapModelEnsemble {
+
+	/** Number of plots a fork-join task runs without splitting further. */
+	public static final int PLOTS_PER_TASK = 8;
+
+	/** Biomass parameters from the FORET fortran code. */
+	public static final double FORET_BIOMASS_A = 0.1193, FORET_BIOMASS_B = 2.393;
+
+	/** Moments of an ensemble, one stream per year. */
+	public static class Summary {
+		public final int years, species;
+		/** Basal area, m<sup>2</sup> per plot */
+		public final StreamingMoments basalArea;
+		/** Biomass per plot */
+		public final StreamingMoments biomass;
+		/** Live trees per plot */
+		public final StreamingMoments stems;
+		/** Basal area of each species per plot: stream year * species + s */
+		public final StreamingMoments speciesBasalArea;
+
+		Summary(int years, int species)
+		{
+			this.years = years; this.species = species;
+			basalArea = new StreamingMoments(years);
+			biomass = new StreamingMoments(years);
+			stems = new StreamingMoments(years);
+			speciesBasalArea = new StreamingMoments(years * species);
+		}
+
+		void merge(Summary other)
+		{
+			basalArea.merge(other.basalArea);
+			biomass.merge(other.biomass);
+			stems.merge(other.stems);
+			speciesBasalArea.merge(other.speciesBasalArea);
+		}
+
+		/** @return mean basal area of species s in a year, as a proportion of the mean basal area */
+		public double composition(int year, int s)
+		{
+			return speciesBasalArea.mean(year * species + s) / basalArea.mean(year);
+		}
+	}
+
+	/** Receives the final state of each plot.  
+	 *  Called from the worker threads, so implementations must be thread-safe. */
+	public interface PlotSink {
+		void plot(int index, GapPlot plot);
+	}
+
+	final GapModelEngine engine;
+	final GapPlot initial;
+	final int years;
+
+	double biomassA = FORET_BIOMASS_A, biomassB = FORET_BIOMASS_B;
+
+	/**
+	 * @param engine the engine
+	 * @param initial the starting plot, with its degree days; it is copied for each plot and not changed
+	 * @param years number of years in each plot
+	 */
+	public GapModelEnsemble(GapModelEngine engine, GapPlot initial, int years)
+	{
+		this.engine = engine;
+		this.initial = initial;
+		this.years = years;
+	}
+
+	/** Set the parameters of {@link GapModelCalculator#foretStandBiomassFortran(double, double, double)}. */
+	public void setBiomassParameters(double biomassA, double biomassB) { this.biomassA = biomassA; this.biomassB = biomassB; }
+
+	/** Run an ensemble on the common fork-join pool. */
+	public Summary run(int plots, long seed)
+	{
+		return run(plots, seed, null, ForkJoinPool.commonPool());
+	}
+
+	/** Run an ensemble.
+	 * @param plots number of plots
+	 * @param seed seed of the random streams
+	 * @param sink receives the final state of each plot; may be null
+	 * @param pool the pool to run on
+	 * @return moments of each year */
+	public Summary run(int plots, long seed, PlotSink sink, ForkJoinPool pool)
+	{
+		JumpableUniformRandomProvider root = 
+				(JumpableUniformRandomProvider) RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, seed);
+		UniformRandomProvider[] streams = new UniformRandomProvider[plots];
+		for(int p = 0; p < plots; p++) streams[p] = root.jump();
+		return pool.invoke(new PlotTask(streams, sink, 0, plots));
+	}
+
+	/** Run plots from (inclusive) to to (exclusive) through one reusable plot. */
+	Summary runPlots(UniformRandomProvider[] streams, PlotSink sink, int from, int to)
+	{
+		int species = engine.allometry().species();
+		Summary summary = new Summary(years, species);
+		GapPlot plot = new GapPlot(Math.max(64, initial.capacity()));
+		double[] speciesBasalArea = new double[species];
+		for(int p = from; p < to; p++){
+			plot.set(initial);
+			UniformRandomProvider random = streams[p];
+			for(int y = 0; y < years; y++){
+				engine.step(plot, random);
+				double basalArea = 0d, biomass = 0d;
+				Arrays.fill(speciesBasalArea, 0d);
+				for(int i = 0; i < plot.trees; i++){
+					double area = GapModelCalculator.basalArea(plot.dbh[i]);
+					basalArea += area;
+					speciesBasalArea[plot.species[i]] += area;
+					biomass += GapModelCalculator.foretStandBiomassFortran(plot.dbh[i], biomassA, biomassB);
+				}
+				summary.basalArea.add(y, basalArea);
+				summary.biomass.add(y, biomass);
+				summary.stems.add(y, plot.trees);
+				for(int s = 0; s < species; s++) summary.speciesBasalArea.add(y * species + s, speciesBasalArea[s]);
+			}
+			if(sink != null) sink.plot(p, plot);
+			streams[p] = null;
+		}
+		return summary;
+	}
+
+	private class PlotTask extends RecursiveTask<Summary> {
+		private static final long serialVersionUID = 1L;
+
+		final UniformRandomProvider[] streams;
+		final PlotSink sink;
+		final int from, to;
+
+		PlotTask(UniformRandomProvider[] streams, PlotSink sink, int from, int to)
+		{
+			this.streams = streams; this.sink = sink;
+			this.from = from; this.to = to;
+		}
+
+		@Override
+		protected Summary compute()
+		{
+			if(to - from <= PLOTS_PER_TASK) return runPlots(streams, sink, from, to);
+			int mid = (from + to) >>> 1;
+			PlotTask right = new PlotTask(streams, sink, mid, to);
+			right.fork();
+			Summary summary = new PlotTask(streams, sink, from, mid).compute();
+			summary.merge(right.join());
+			return summary;
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package gapModels;
+
+import java.util.Arrays;
+
+/** The trees of one gap-model plot, held in structure-of-arrays form: 
+ *  entry i of each array belongs to tree i, for i from 0 to {@link #trees} - 1. <br><br>
+ *  
+ *  Trees killed during a year are flagged in {@link #alive} and removed by {@link #compact()}, 
+ *  which keeps the surviving trees in their original order.  The arrays grow by doubling 
+ *  when a tree is added to a full plot, so a plot that has reached its usual size 
+ *  creates no objects from one year to the next.
+ * 
+ * @author michaelfrancenelson */
+public class GapPlot {
+
+	/** Number of trees. */
+	public int trees;
+
+	public int[] species;
+	/** Diameter at breast height, cm */
+	public double[] dbh;
+	/** Height, m */
+	public double[] height;
+	/** Projected leaf area, m<sup>2</sup> */
+	public double[] leafArea;
+	/** Available light from the most recent light pass, 0 to phi */
+	public double[] light;
+	/** Diameter increment in the most recent growth pass, cm */
+	public double[] increment;
+	public boolean[] alive;
+
+	/** Growing degree days at the plot. */
+	public double degreeDays;
+
+	/** Light reaching the ground in the most recent light pass. */
+	public double floorLight;
+
+	/** Sort buffers for the light pass, kept with the plot so that plots can run on separate threads. */
+	final CanopyLight canopy = new CanopyLight();
+
+	/** @param capacity initial number of trees the arrays can hold */
+	public GapPlot(int capacity)
+	{
+		capacity = Math.max(1, capacity);
+		species = new int[capacity];
+		dbh = new double[capacity];
+		height = new double[capacity];
+		leafArea = new double[capacity];
+		light = new double[capacity];
+		increment = new double[capacity];
+		alive = new boolean[capacity];
+	}
+
+	/** @return the number of trees the arrays can hold without growing */
+	public int capacity() { return species.length; }
+
+	/** Add a live tree.
+	 * @return the new tree's index */
+	public int add(int species, double dbh, double height, double leafArea)
+	{
+		if(trees == this.species.length) grow(2 * trees);
+		int i = trees++;
+		this.species[i] = species;
+		this.dbh[i] = dbh;
+		this.height[i] = height;
+		this.leafArea[i] = leafArea;
+		this.light[i] = 0d;
+		this.increment[i] = 0d;
+		this.alive[i] = true;
+		return i;
+	}
+
+	private void grow(int capacity)
+	{
+		species = Arrays.copyOf(species, capacity);
+		dbh = Arrays.copyOf(dbh, capacity);
+		height = Arrays.copyOf(height, capacity);
+		leafArea = Arrays.copyOf(leafArea, capacity);
+		light = Arrays.copyOf(light, capacity);
+		increment = Arrays.copyOf(increment, capacity);
+		alive = Arrays.copyOf(alive, capacity);
+	}
+
+	/** Remove the dead trees, keeping the order of the live ones.
+	 * @return the number of trees removed */
+	public int compact()
+	{
+		int live = 0;
+		for(int i = 0; i < trees; i++){
+			if(!alive[i]) continue;
+			if(live != i){
+				species[live] = species[i];
+				dbh[live] = dbh[i];
+				height[live] = height[i];
+				leafArea[live] = leafArea[i];
+				light[live] = light[i];
+				increment[live] = increment[i];
+				alive[live] = true;
+			}
+			live++;
+		}
+		int removed = trees - live;
+		trees = live;
+		return removed;
+	}
+
+	/** Remove every tree. */
+	public void clear() { trees = 0; }
+
+	/** Make this plot a copy of another, growing the arrays if needed. */
+	public void set(GapPlot other)
+	{
+		if(capacity() < other.trees) grow(other.trees);
+		int n = other.trees;
+		System.arraycopy(other.species, 0, species, 0, n);
+		System.arraycopy(other.dbh, 0, dbh, 0, n);
+		System.arraycopy(other.height, 0, height, 0, n);
+		System.arraycopy(other.leafArea, 0, leafArea, 0, n);
+		System.arraycopy(other.light, 0, light, 0, n);
+		System.arraycopy(other.increment, 0, increment, 0, n);
+		System.arraycopy(other.alive, 0, alive, 0, n);
+		trees = n;
+		degreeDays = other.degreeDays;
+		floorLight = other.floorLight;
+	}
+
+	/** @return the basal area of the live trees, m<sup>2</sup> */
+	public double basalArea()
+	{
+		double sum = 0d;
+		for(int i = 0; i < trees; i++) if(alive[i]) sum += GapModelCalculator.basalArea(dbh[i]);
+		return sum;
+	}
+
+	/** @return the leaf area of the live trees, m<sup>2</sup> */
+	public double totalLeafArea()
+	{
+		double sum = 0d;
+		for(int i = 0; i < trees; i++) if(alive[i]) sum += leafArea[i];
+		return sum;
+	}
+}
@@ -0,0 +1,278 @@
+package gapModels;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Site temperatures and growing degree days for every cell of an elevation raster. <br><br>
+ *
+ *  July and January mean temperatures at a base station are carried to each cell's elevation
+ *  with {@link GapModelCalculator#jaBoWaLapseTemperature(double, double, double)}, and the cell's
+ *  degree days come from {@link #degreeDays(double, double, double)}.  Three rasters are written:
+ *  July means, January means and degree days. <br><br>
+ *
+ *  Rasters are ESRI float grids: a little-endian .flt file of 32 bit floats in row-major order
+ *  with an optional text .hdr file beside it.  The elevation .hdr, if there is one, is copied
+ *  to the outputs, and cells holding its NODATA_value are written as no-data. <br><br>
+ *
+ *  The outputs are cached in a directory named by a SHA-256 hash of the climate parameters and the
+ *  path, length and modification time of the elevation raster, so a second run on the same landscape 
+ *  with the same parameters returns the cached rasters without reading the elevations.  A run writes 
+ *  into a temporary directory which is renamed when complete, and deleted if the run fails, so a failed 
+ *  run leaves no cache entry. <br><br>
+ *
+ *  Cells are run in parallel on a fork-join pool over memory-mapped windows of at most
+ *  {@link #WINDOW_BYTES} of elevations, so rasters larger than the heap are fine.
+ *
+ * @author michaelfrancenelson */
+public class SiteClimateProducer {
+
+	/** Largest window of elevations mapped at one time. */
+	public static final long WINDOW_BYTES = 1L << 26;
+
+	/** Cells per task. */
+	public static final int CELLS_PER_TASK = 1 << 16;
+
+	/** No-data value used when the elevation raster has no .hdr file. */
+	public static final float NODATA = -9999f;
+
+	/** Change when the outputs change for the same inputs, to retire old cache entries. */
+	static final int CACHE_VERSION = 1;
+
+	public static final String JULY_FILE = "julyMean.flt";
+	public static final String JANUARY_FILE = "januaryMean.flt";
+	public static final String DEGREE_DAYS_FILE = "degreeDays.flt";
+
+	final double stationElevation, julyMean, januaryMean, julyLapseRate, januaryLapseRate, baseTemperature;
+
+	/**
+	 * @param stationElevation elevation of the base station, m
+	 * @param julyMean July mean temperature at the base station
+	 * @param januaryMean January mean temperature at the base station
+	 * @param julyLapseRate decrease in July temperature per 1000 m increase in elevation
+	 * @param januaryLapseRate decrease in January temperature per 1000 m increase in elevation
+	 * @param baseTemperature temperature above which degree days accumulate,
+	 *  in the same units as the means (40 degrees F in JaBoWa) */
+	public SiteClimateProducer(double stationElevation, double julyMean, double januaryMean,
+			double julyLapseRate, double januaryLapseRate, double baseTemperature)
+	{
+		this.stationElevation = stationElevation;
+		this.julyMean = julyMean; this.januaryMean = januaryMean;
+		this.julyLapseRate = julyLapseRate; this.januaryLapseRate = januaryLapseRate;
+		this.baseTemperature = baseTemperature;
+	}
+
+	/** The rasters produced for one elevation raster. */
+	public static class SiteClimate {
+		public final File directory, july, january, degreeDays;
+		/** True if the rasters were found in the cache. */
+		public final boolean cached;
+
+		SiteClimate(File directory, boolean cached)
+		{
+			this.directory = directory; this.cached = cached;
+			july = new File(directory, JULY_FILE);
+			january = new File(directory, JANUARY_FILE);
+			degreeDays = new File(directory, DEGREE_DAYS_FILE);
+		}
+	}
+
+	/** {@link GapModelCalculator#jaBoWaDegreeDaysTwoPointEstimate(double, double, double)},
+	 *  which assumes the base temperature lies between the January and July means,
+	 *  extended to sites that are always below the base (0 degree days)
+	 *  or always above it (365 days of the mean's excess over the base). */
+	public static double degreeDays(double julyMean, double januaryMean, double baseTemperature)
+	{
+		if(julyMean <= baseTemperature) return 0d;
+		if(januaryMean >= baseTemperature) return 365d * ((julyMean + januaryMean) / 2d - baseTemperature);
+		return GapModelCalculator.jaBoWaDegreeDaysTwoPointEstimate(julyMean, januaryMean, baseTemperature);
+	}
+
+	/** Run on the common fork-join pool.
+	 *  See {@link #run(String, String, ForkJoinPool)}. */
+	public SiteClimate run(String elevationFile, String cacheDirectory) throws IOException
+	{
+		return run(elevationFile, cacheDirectory, ForkJoinPool.commonPool());
+	}
+
+	/** Find the site climate rasters for an elevation raster in the cache, or produce them.
+	 * @param elevationFile the .flt file of elevations, m
+	 * @param cacheDirectory directory holding one subdirectory per cached set of rasters
+	 * @param pool the pool to run the cells on
+	 * @return the rasters
+	 * @throws IOException */
+	public SiteClimate run(String elevationFile, String cacheDirectory, ForkJoinPool pool) throws IOException
+	{
+		File hdr = headerFile(elevationFile);
+		float nodata = hdr.isFile() ? readNodata(hdr) : NODATA;
+
+		File directory = new File(cacheDirectory, cacheKey(elevationFile));
+		if(directory.isDirectory()) return new SiteClimate(directory, true);
+
+		File temporary = Files.createTempDirectory(
+				Files.createDirectories(new File(cacheDirectory).toPath()), directory.getName()).toFile();
+		boolean complete = false;
+		try
+		{
+			try(RandomAccessFile elevation = new RandomAccessFile(elevationFile, "r");
+					RandomAccessFile july = new RandomAccessFile(new File(temporary, JULY_FILE), "rw");
+					RandomAccessFile january = new RandomAccessFile(new File(temporary, JANUARY_FILE), "rw");
+					RandomAccessFile degreeDays = new RandomAccessFile(new File(temporary, DEGREE_DAYS_FILE), "rw"))
+			{
+				long cells = elevation.length() / 4;
+				july.setLength(4 * cells);
+				january.setLength(4 * cells);
+				degreeDays.setLength(4 * cells);
+				pool.invoke(new CellTask(elevation.getChannel(), july.getChannel(), january.getChannel(),
+						degreeDays.getChannel(), nodata, 0, cells));
+			}
+			catch(UncheckedIOException e) { throw e.getCause(); }
+			if(hdr.isFile()){
+				for(String name : new String[] {JULY_FILE, JANUARY_FILE, DEGREE_DAYS_FILE})
+					Files.copy(hdr.toPath(), headerFile(new File(temporary, name).getPath()).toPath());
+			}
+
+			try { Files.move(temporary.toPath(), directory.toPath(), StandardCopyOption.ATOMIC_MOVE); }
+			catch(IOException e){
+				/* Another run may have finished the same rasters first. */
+				if(!directory.isDirectory()) throw e;
+				delete(temporary.toPath());
+			}
+			complete = true;
+		}
+		finally
+		{
+			/* Don't leave a partial run in the cache directory. */
+			if(!complete && temporary.isDirectory()){
+				try { delete(temporary.toPath()); }
+				catch(IOException e) { temporary.deleteOnExit(); }
+			}
+		}
+		return new SiteClimate(directory, false);
+	}
+
+	/** Calculate the rasters for cells from to to - 1, within one mapped window. */
+	void runCells(FileChannel elevationIn, FileChannel julyOut, FileChannel januaryOut, FileChannel degreeDaysOut,
+			float nodata, long from, long to) throws IOException
+	{
+		long position = 4 * from, size = 4 * (to - from);
+		FloatBuffer elevation = elevationIn.map(FileChannel.MapMode.READ_ONLY, position, size)
+				.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		FloatBuffer july = julyOut.map(FileChannel.MapMode.READ_WRITE, position, size)
+				.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		FloatBuffer january = januaryOut.map(FileChannel.MapMode.READ_WRITE, position, size)
+				.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		FloatBuffer degreeDays = degreeDaysOut.map(FileChannel.MapMode.READ_WRITE, position, size)
+				.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		while(elevation.hasRemaining()){
+			float z = elevation.get();
+			if(z == nodata || Float.isNaN(z)){
+				july.put(nodata); january.put(nodata); degreeDays.put(nodata);
+				continue;
+			}
+			double difference = z - stationElevation;
+			double tJuly = GapModelCalculator.jaBoWaLapseTemperature(julyMean, difference, julyLapseRate);
+			double tJanuary = GapModelCalculator.jaBoWaLapseTemperature(januaryMean, difference, januaryLapseRate);
+			july.put((float) tJuly);
+			january.put((float) tJanuary);
+			degreeDays.put((float) degreeDays(tJuly, tJanuary, baseTemperature));
+		}
+	}
+
+	/** @return the hex SHA-256 of the climate parameters, the cache version and the canonical path, 
+	 *  length and modification time of the elevation file and its .hdr.  Only the file metadata is read, 
+	 *  so finding a cached entry costs the same for any size of raster, and replacing or editing 
+	 *  the elevations makes a new entry. */
+	String cacheKey(String elevationFile) throws IOException
+	{
+		MessageDigest digest;
+		try { digest = MessageDigest.getInstance("SHA-256"); }
+		catch(NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+
+		ByteBuffer parameters = ByteBuffer.allocate(4 + 6 * 8);
+		parameters.putInt(CACHE_VERSION).putDouble(stationElevation).putDouble(julyMean).putDouble(januaryMean)
+				.putDouble(julyLapseRate).putDouble(januaryLapseRate).putDouble(baseTemperature).flip();
+		digest.update(parameters);
+
+		File elevation = new File(elevationFile);
+		if(!elevation.isFile()) throw new FileNotFoundException(elevationFile);
+		for(File file : new File[] {elevation, headerFile(elevationFile)}){
+			digest.update(file.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+			ByteBuffer metadata = ByteBuffer.allocate(2 * 8);
+			metadata.putLong(file.length()).putLong(file.lastModified()).flip();
+			digest.update(metadata);
+		}
+		StringBuilder key = new StringBuilder();
+		for(byte b : digest.digest()) key.append(String.format("%02x", b));
+		return key.toString();
+	}
+
+	/** @return the .hdr file beside a .flt file */
+	static File headerFile(String fltFile)
+	{
+		return new File((fltFile.endsWith(".flt") ? fltFile.substring(0, fltFile.length() - 4) : fltFile) + ".hdr");
+	}
+
+	/** @return the NODATA_value of an ESRI .hdr file, or {@link #NODATA} if it has none */
+	static float readNodata(File hdr) throws IOException
+	{
+		List<String> lines = Files.readAllLines(hdr.toPath(), StandardCharsets.US_ASCII);
+		for(String line : lines){
+			String[] fields = line.trim().split("\\s+");
+			if(fields.length == 2 && fields[0].equalsIgnoreCase("NODATA_value")) return Float.parseFloat(fields[1]);
+		}
+		return NODATA;
+	}
+
+	static void delete(Path directory) throws IOException
+	{
+		File[] files = directory.toFile().listFiles();
+		if(files == null) throw new FileNotFoundException(directory.toString());
+		for(File file : files) Files.delete(file.toPath());
+		Files.delete(directory);
+	}
+
+	/** Splits a range of cells until it fits one task and one mapped window. */
+	private class CellTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final FileChannel elevation, july, january, degreeDays;
+		final float nodata;
+		final long from, to;
+
+		CellTask(FileChannel elevation, FileChannel july, FileChannel january, FileChannel degreeDays,
+				float nodata, long from, long to)
+		{
+			this.elevation = elevation; this.july = july; this.january = january; this.degreeDays = degreeDays;
+			this.nodata = nodata; this.from = from; this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= Math.min(CELLS_PER_TASK, WINDOW_BYTES / 4)){
+				try { runCells(elevation, july, january, degreeDays, nodata, from, to); }
+				catch(IOException e) { throw new UncheckedIOException(e); }
+				return;
+			}
+			long mid = (from + to) >>> 1;
+			invokeAll(new CellTask(elevation, july, january, degreeDays, nodata, from, mid),
+					new CellTask(elevation, july, january, degreeDays, nodata, mid, to));
+		}
+	}
+}
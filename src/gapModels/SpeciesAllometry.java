@@ -0,0 +1,196 @@
+package gapModels;
+
+import java.util.Arrays;
+
+/** A registry of tree species for the JaBoWa and FORET gap models that computes every 
+ *  derived species constant once, when the species is registered, into primitive arrays 
+ *  indexed by species id. <br><br>
+ *  
+ *  Growth calls such as {@link #maxDiameterIncrement(int, double, double)} only read the 
+ *  cached constants, so per-tree updates never repeat the logarithms and powers of 
+ *  {@link GapModelCalculator#growthParameterG_Jabowa(int, double, double)} or 
+ *  {@link GapModelCalculator#allometricHeightParameterB2(double, double, double)}. <br>
+ *  Register every species before sharing the registry between threads; lookups do not change it.
+ * 
+ * @author michaelfrancenelson */
+public class SpeciesAllometry {
+
+	/** Breast height in meters used by JaBoWa. */
+	public static final double JABOWA_B1 = 1.37;
+
+	/** Ratio of leaf weight to projected leaf area used by JaBoWa (Botkin et al. 1972a). */
+	public static final double JABOWA_LEAF_AREA_K = 45d;
+
+	/** Proportion of trees that reach the maximum age, for the intrinsic mortality of Botkin et al. 1972 equation 12a. */
+	public static final double JABOWA_SURVIVAL_TO_AGE_MAX = 0.01;
+
+	/** Light response constants c1, c2, c3 of Botkin et al. 1972 equation 8 for 
+	 *  shade tolerant [0] and intolerant [1] species. */
+	public static final double[][] LIGHT_RESPONSE = new double[][] {{1d, 4.64, 0.05}, {2.24, 1.136, 0.08}};
+
+	private final double b1;
+
+	private int species = 0;
+	private String[] names = new String[0];
+
+	/* Species parameters */
+	private double[] dbhMax = new double[0];
+	private double[] heightMax = new double[0];
+	private int[] ageMax = new int[0];
+	private double[] g = new double[0];
+	private double[] leafWeightC = new double[0];
+	private double[] degreeDaysMin = new double[0];
+	private double[] degreeDaysMax = new double[0];
+	private boolean[] shadeTolerant = new boolean[0];
+
+	/* Derived constants */
+	private double[] b2 = new double[0];
+	private double[] b3 = new double[0];
+	private double[] gr = new double[0];
+	private double[] dbhHeightMaxInverse = new double[0];
+	private double[] mortality = new double[0];
+	private double[] leafAreaFactor = new double[0];
+	private double[] degreeDayScale = new double[0];
+	private double[] c1 = new double[0];
+	private double[] c2 = new double[0];
+	private double[] c3 = new double[0];
+
+	/** A registry with the JaBoWa breast height of 1.37 m. */
+	public SpeciesAllometry() { this(JABOWA_B1); }
+
+	/** @param b1 breast height in meters */
+	public SpeciesAllometry(double b1) { this.b1 = b1; }
+
+	/** Register a species and compute its constants.
+	 * @param name species name
+	 * @param dbhMax maximum dbh in cm
+	 * @param heightMax maximum height in m
+	 * @param ageMax maximum age in years
+	 * @param g growth parameter G; NaN to calculate it with Botkin et al. 1972b equation A4
+	 * @param leafWeightC leaf weight constant C, g / cm<sup>2</sup>
+	 * @param degreeDaysMin minimum degree days for growth
+	 * @param degreeDaysMax maximum degree days for growth
+	 * @param shadeTolerant selects the light response constants of equation 8
+	 * @return the species id */
+	public int register(String name, double dbhMax, double heightMax, int ageMax, double g,
+			double leafWeightC, double degreeDaysMin, double degreeDaysMax, boolean shadeTolerant)
+	{
+		int s = species;
+		grow(s + 1);
+		names[s] = name;
+		this.dbhMax[s] = dbhMax;
+		this.heightMax[s] = heightMax;
+		this.ageMax[s] = ageMax;
+		this.g[s] = Double.isNaN(g) ? GapModelCalculator.growthParameterG_Jabowa(ageMax, dbhMax, heightMax) : g;
+		this.leafWeightC[s] = leafWeightC;
+		this.degreeDaysMin[s] = degreeDaysMin;
+		this.degreeDaysMax[s] = degreeDaysMax;
+		this.shadeTolerant[s] = shadeTolerant;
+
+		b2[s] = GapModelCalculator.allometricHeightParameterB2(b1, heightMax, dbhMax);
+		b3[s] = GapModelCalculator.allometricHeightParameterB3(b1, heightMax, dbhMax);
+		gr[s] = GapModelCalculator.foretFortranGR(100d * b1, b2[s], b3[s]);
+		dbhHeightMaxInverse[s] = 1d / (dbhMax * heightMax);
+		mortality[s] = GapModelCalculator.yearlyExponentialMortalityRate(JABOWA_SURVIVAL_TO_AGE_MAX, ageMax);
+		leafAreaFactor[s] = leafWeightC / JABOWA_LEAF_AREA_K;
+		double ddRange = degreeDaysMax - degreeDaysMin;
+		degreeDayScale[s] = 4d / (ddRange * ddRange);
+		double[] light = LIGHT_RESPONSE[shadeTolerant ? 0 : 1];
+		c1[s] = light[0]; c2[s] = light[1]; c3[s] = light[2];
+
+		species++;
+		return s;
+	}
+
+	private void grow(int capacity)
+	{
+		if(capacity <= names.length) return;
+		int n = Math.max(capacity, 2 * names.length);
+		names = Arrays.copyOf(names, n);
+		dbhMax = Arrays.copyOf(dbhMax, n);
+		heightMax = Arrays.copyOf(heightMax, n);
+		ageMax = Arrays.copyOf(ageMax, n);
+		g = Arrays.copyOf(g, n);
+		leafWeightC = Arrays.copyOf(leafWeightC, n);
+		degreeDaysMin = Arrays.copyOf(degreeDaysMin, n);
+		degreeDaysMax = Arrays.copyOf(degreeDaysMax, n);
+		shadeTolerant = Arrays.copyOf(shadeTolerant, n);
+		b2 = Arrays.copyOf(b2, n);
+		b3 = Arrays.copyOf(b3, n);
+		gr = Arrays.copyOf(gr, n);
+		dbhHeightMaxInverse = Arrays.copyOf(dbhHeightMaxInverse, n);
+		mortality = Arrays.copyOf(mortality, n);
+		leafAreaFactor = Arrays.copyOf(leafAreaFactor, n);
+		degreeDayScale = Arrays.copyOf(degreeDayScale, n);
+		c1 = Arrays.copyOf(c1, n);
+		c2 = Arrays.copyOf(c2, n);
+		c3 = Arrays.copyOf(c3, n);
+	}
+
+	/** @return the number of registered species */
+	public int species() { return species; }
+
+	/** @return the id of the species with this name, or -1 */
+	public int id(String name)
+	{
+		for(int s = 0; s < species; s++) if(names[s].equals(name)) return s;
+		return -1;
+	}
+
+	public double b1() { return b1; }
+	public String name(int s) { return names[s]; }
+	public double dbhMax(int s) { return dbhMax[s]; }
+	public double heightMax(int s) { return heightMax[s]; }
+	public int ageMax(int s) { return ageMax[s]; }
+	public boolean shadeTolerant(int s) { return shadeTolerant[s]; }
+
+	/** @return growth parameter G */
+	public double g(int s) { return g[s]; }
+	/** @return allometric height parameter b2 (Botkin et al. 1972 equation 3a) */
+	public double b2(int s) { return b2[s]; }
+	/** @return allometric height parameter b3 (Botkin et al. 1972 equation 3b) */
+	public double b3(int s) { return b3[s]; }
+	/** @return the FORET growth intermediate {@link GapModelCalculator#foretFortranGR(double, double, double)} */
+	public double gr(int s) { return gr[s]; }
+	/** @return intrinsic annual mortality probability (Botkin et al. 1972 equation 12a) */
+	public double mortality(int s) { return mortality[s]; }
+	/** @return leaf area per cm<sup>2</sup> of dbh<sup>2</sup>, C / 45 */
+	public double leafAreaFactor(int s) { return leafAreaFactor[s]; }
+
+	/** Botkin et al. 1972 equation 2 with the cached b2 and b3.
+	 * @param dbh in cm
+	 * @return height in m */
+	public double height(int s, double dbh) { return b1 + dbh * (b2[s] - b3[s] * dbh) / 100d; }
+
+	/** Botkin et al. 1972 equation 5 with the cached constants, 
+	 *  same as {@link GapModelCalculator#allometricMaxDiameterIncrementDiskJabowa}.
+	 * @param dbh in cm
+	 * @param height in m
+	 * @return maximum dbh increment in cm */
+	public double maxDiameterIncrement(int s, double dbh, double height)
+	{
+		return (g[s] * dbh) * (1d - dbh * height * dbhHeightMaxInverse[s]) /
+				(20d * b1 + 3d * b2[s] * dbh - 4d * b3[s] * dbh * dbh);
+	}
+
+	/** The FORET maximum dbh increment, {@link GapModelCalculator#foretFortranMaxDBHIncrement}, with the cached GR. */
+	public double foretMaxDiameterIncrement(int s, double dbh)
+	{
+		return g[s] * dbh * GapModelCalculator.foretFortranSizePenalty(100d * b1, dbh, b2[s], b3[s], gr[s]);
+	}
+
+	/** JaBoWa projected leaf area, C &times; dbh<sup>2</sup> / 45, in m<sup>2</sup>. */
+	public double leafArea(int s, double dbh) { return leafAreaFactor[s] * dbh * dbh; }
+
+	/** Botkin et al. 1972 equation 10 with the cached scale. */
+	public double temperatureEffect(int s, double degreeDays)
+	{
+		return Math.max(0d, degreeDayScale[s] * (degreeDays - degreeDaysMin[s]) * (degreeDaysMax[s] - degreeDays));
+	}
+
+	/** Botkin et al. 1972 equation 8 with the species' light response constants. */
+	public double lightResponse(int s, double availableLight)
+	{
+		return GapModelCalculator.exponentialLightResponseCurve(availableLight, c1[s], c2[s], c3[s]);
+	}
+}
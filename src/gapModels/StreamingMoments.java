@@ -0,0 +1,73 @@
+package gapModels;
+
+import java.util.Arrays;
+
+/** Running counts, means and variances of several streams of values by Welford's method, 
+ *  with the pairwise merge of Chan et al. 1979 for combining partial results. <br><br>
+ *  
+ *  The streams are held in parallel arrays, so one accumulator can follow, for example, 
+ *  every year of a simulation without an object per year.  
+ *  Not thread-safe: give each thread its own and merge them at the end.
+ * 
+ * @author michaelfrancenelson */
+public class StreamingMoments {
+
+	final long[] count;
+	final double[] mean, m2;
+
+	/** @param streams number of separate streams */
+	public StreamingMoments(int streams)
+	{
+		count = new long[streams];
+		mean = new double[streams];
+		m2 = new double[streams];
+	}
+
+	public int streams() { return count.length; }
+
+	/** Add a value to stream i. */
+	public void add(int i, double value)
+	{
+		long n = ++count[i];
+		double delta = value - mean[i];
+		mean[i] += delta / n;
+		m2[i] += delta * (value - mean[i]);
+	}
+
+	/** Add all the values seen by another accumulator with the same number of streams. */
+	public void merge(StreamingMoments other)
+	{
+		for(int i = 0; i < count.length; i++){
+			long nb = other.count[i];
+			if(nb == 0) continue;
+			long na = count[i];
+			if(na == 0){ count[i] = nb; mean[i] = other.mean[i]; m2[i] = other.m2[i]; continue; }
+			long n = na + nb;
+			double delta = other.mean[i] - mean[i];
+			mean[i] += delta * nb / n;
+			m2[i] += other.m2[i] + delta * delta * ((double) na * nb / n);
+			count[i] = n;
+		}
+	}
+
+	/** Forget all values. */
+	public void clear()
+	{
+		Arrays.fill(count, 0L);
+		Arrays.fill(mean, 0d);
+		Arrays.fill(m2, 0d);
+	}
+
+	public long count(int i) { return count[i]; }
+
+	/** @return the mean of stream i, or NaN if it has no values */
+	public double mean(int i) { return count[i] > 0 ? mean[i] : Double.NaN; }
+
+	/** @return the sample variance of stream i, or NaN if it has fewer than two values */
+	public double variance(int i) { return count[i] > 1 ? m2[i] / (count[i] - 1) : Double.NaN; }
+
+	public double standardDeviation(int i) { return Math.sqrt(variance(i)); }
+
+	/** @return the standard error of the mean of stream i */
+	public double standardError(int i) { return Math.sqrt(variance(i) / count[i]); }
+}
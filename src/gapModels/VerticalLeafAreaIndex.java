@@ -0,0 +1,189 @@
+package gapModels;
+
+import java.util.Arrays;
+
+/** Foliage area of a patch by height, for light models that need the leaf area above a height:
+ *  {@link GapModelCalculator#diskLightAvailability(double, double, double)},
+ *  {@link gapModels.forClim.ForClimPlantCalculator#lightAvailablilty(double, double)} and the
+ *  FORSKA layers of {@link ForskaCanopy}. <br><br>
+ *
+ *  Heights from 0 to {@link #top()} are divided into buckets of equal height.  A crown is either
+ *  a disk, with all its foliage at the tree's height as in JaBoWa and ForClim, or a cylinder, with
+ *  its foliage spread evenly from the bole height to the tree's height as in FORSKA.  Heights outside
+ *  the buckets are clamped to the lowest or highest bucket. <br><br>
+ *
+ *  The foliage of the buckets is held in a pair of Fenwick trees that support adding a constant to
+ *  a range of buckets, so adding, removing or resizing a crown of any depth takes O(log buckets) time, 
+ *  and so does each query, with no rebuild between changes and queries.  A patch's light is therefore 
+ *  O(log buckets) per tree rather than a comparison of every pair of cohorts, even when trees are 
+ *  grown and queried one at a time.  {@link #suffixSums(double[])} reads every bucket in one O(buckets) 
+ *  pass, for models such as FORSKA that need the light at every layer boundary.
+ *
+ * @author michaelfrancenelson */
+public class VerticalLeafAreaIndex {
+
+	final int buckets;
+	final double bucketHeight, top, area;
+
+	/** Fenwick trees for range updates, 1-based: prefix(i) = sum(b1, i) * i - sum(b2, i) */
+	final double[] b1, b2;
+
+	/** Scratch copies of the trees for {@link #suffixSums(double[])} */
+	final double[] d1, d2;
+
+	/**
+	 * @param buckets number of height buckets
+	 * @param bucketHeight height of each bucket, m
+	 * @param area area of the patch, m<sup>2</sup>, for leaf area indices */
+	public VerticalLeafAreaIndex(int buckets, double bucketHeight, double area)
+	{
+		this.buckets = buckets;
+		this.bucketHeight = bucketHeight;
+		this.top = buckets * bucketHeight;
+		this.area = area;
+		b1 = new double[buckets + 1];
+		b2 = new double[buckets + 1];
+		d1 = new double[buckets + 1];
+		d2 = new double[buckets + 1];
+	}
+
+	public int buckets() { return buckets; }
+	public double bucketHeight() { return bucketHeight; }
+	public double top() { return top; }
+	public double area() { return area; }
+
+	/** @return the bucket holding a height: 0 at the ground */
+	public int bucket(double height)
+	{
+		int i = (int) (height / bucketHeight);
+		return Math.min(buckets - 1, Math.max(0, i));
+	}
+
+	/** Remove all foliage. */
+	public void clear()
+	{
+		Arrays.fill(b1, 0d);
+		Arrays.fill(b2, 0d);
+	}
+
+	/** Add a disk crown: all its foliage at the tree's height. */
+	public void add(double height, double foliage) { addToBuckets(bucket(height), bucket(height), foliage); }
+
+	/** Remove a disk crown added with the same arguments. */
+	public void remove(double height, double foliage) { add(height, -foliage); }
+
+	/** Move or resize a disk crown. */
+	public void resize(double oldHeight, double oldFoliage, double height, double foliage)
+	{
+		remove(oldHeight, oldFoliage);
+		add(height, foliage);
+	}
+
+	/** Add a cylinder crown: foliage spread evenly from boleHeight up to height. */
+	public void add(double height, double boleHeight, double foliage)
+	{
+		height = Math.min(top, Math.max(0d, height));
+		boleHeight = Math.min(height, Math.max(0d, boleHeight));
+		int lo = bucket(boleHeight), hi = bucket(height);
+		if(lo == hi || height <= boleHeight){
+			addToBuckets(hi, hi, foliage);
+			return;
+		}
+		double density = foliage / (height - boleHeight);
+		addToBuckets(lo, lo, density * ((lo + 1) * bucketHeight - boleHeight));
+		addToBuckets(hi, hi, density * (height - hi * bucketHeight));
+		if(hi - lo > 1) addToBuckets(lo + 1, hi - 1, density * bucketHeight);
+	}
+
+	/** Remove a cylinder crown added with the same arguments. */
+	public void remove(double height, double boleHeight, double foliage) { add(height, boleHeight, -foliage); }
+
+	/** Move or resize a cylinder crown. */
+	public void resize(double oldHeight, double oldBoleHeight, double oldFoliage,
+			double height, double boleHeight, double foliage)
+	{
+		remove(oldHeight, oldBoleHeight, oldFoliage);
+		add(height, boleHeight, foliage);
+	}
+
+	/** Add the same foliage to each bucket from first to last. */
+	void addToBuckets(int first, int last, double foliage)
+	{
+		int l = first + 1, r = last + 2;
+		update(b1, l, foliage);
+		update(b2, l, foliage * (l - 1));
+		if(r <= buckets){
+			update(b1, r, -foliage);
+			update(b2, r, -foliage * (r - 1));
+		}
+	}
+
+	static void update(double[] tree, int i, double value)
+	{
+		for(; i < tree.length; i += i & -i) tree[i] += value;
+	}
+
+	static double sum(double[] tree, int i)
+	{
+		double s = 0d;
+		for(; i > 0; i -= i & -i) s += tree[i];
+		return s;
+	}
+
+	/** @return the foliage in buckets 0 to i - 1 */
+	double prefix(int i) { return sum(b1, i) * i - sum(b2, i); }
+
+	/** @return the foliage in one bucket */
+	public double foliageInBucket(int bucket) { return prefix(bucket + 1) - prefix(bucket); }
+
+	/** @return the foliage in the buckets above a bucket; -1 gives all the foliage */
+	public double foliageAboveBucket(int bucket) { return prefix(buckets) - prefix(bucket + 1); }
+
+	/** Read the foliage in and above every bucket in one pass.
+	 * @param out receives, at i, the foliage in buckets i and higher, for i from 0 to {@link #buckets()}: 
+	 *  out[buckets] is 0 */
+	public void suffixSums(double[] out)
+	{
+		/* Undo the Fenwick sums to recover the two difference arrays, then run their prefix sums. */
+		System.arraycopy(b1, 0, d1, 0, buckets + 1);
+		System.arraycopy(b2, 0, d2, 0, buckets + 1);
+		for(int i = buckets; i > 0; i--){
+			int parent = i + (i & -i);
+			if(parent <= buckets){
+				d1[parent] -= d1[i];
+				d2[parent] -= d2[i];
+			}
+		}
+		double s1 = 0d, s2 = 0d;
+		out[0] = 0d;
+		for(int i = 1; i <= buckets; i++){
+			s1 += d1[i];
+			s2 += d2[i];
+			/* prefix(i), held in out[i] until the suffix sums are taken */
+			out[i] = s1 * i - s2;
+		}
+		double total = out[buckets];
+		for(int i = 0; i <= buckets; i++) out[i] = total - out[i];
+	}
+
+	/** The foliage above a disk crown at this height: the foliage in the buckets above the bucket
+	 *  holding the height.  Crowns in the same bucket do not shade each other. */
+	public double foliageAboveDisk(double height) { return foliageAboveBucket(bucket(height)); }
+
+	/** The foliage above a height, taking the foliage in each bucket to be spread evenly through it. */
+	public double foliageAbove(double height)
+	{
+		height = Math.min(top, Math.max(0d, height));
+		int i = bucket(height);
+		return foliageAboveBucket(i) + foliageInBucket(i) * ((i + 1) * bucketHeight - height) / bucketHeight;
+	}
+
+	/** @return the total foliage */
+	public double foliage() { return foliageAboveBucket(-1); }
+
+	/** @return the leaf area index above a disk crown at this height: see {@link #foliageAboveDisk(double)} */
+	public double leafAreaIndexAboveDisk(double height) { return foliageAboveDisk(height) / area; }
+
+	/** @return the leaf area index above a height: see {@link #foliageAbove(double)} */
+	public double leafAreaIndexAbove(double height) { return foliageAbove(height) / area; }
+}
@@ -5,6 +5,8 @@ package gapModels.forClim;
 
 import org.apache.commons.rng.UniformRandomProvider;
 
+import gapModels.VerticalLeafAreaIndex;
+
 /**
  * @author michaelfrancenelson
  *
@@ -553,6 +555,20 @@ public class ForClimPlantCalculator {
 		
 	}
 
+	/** Light availability at a height, with the cumulative foliage area above it read
+	 *  from a {@link VerticalLeafAreaIndex} of the patch's cohorts
+	 * 
+	 * Plant.cs LightAvailability() lines 579 - 582 and LeafAreaIndex() line 672
+	 * 
+	 * @param gFoliage foliage area of the patch's cohorts, each added at its height
+	 * @param height height of the cohort
+	 * @param kLAtt Light attenuation coefficient
+	 * @return light availability, as {@link #lightAvailablilty(double, double)}
+	 */
+	public static double lightAvailablilty(VerticalLeafAreaIndex gFoliage, double height, double kLAtt){
+		return lightAvailablilty(leafAreaIndex(gFoliage.foliageAboveDisk(height), gFoliage.area()), kLAtt);
+	}
+
 
 	/** Leaf area index
 	 * 
@@ -0,0 +1,178 @@
+package mountainPineBeetle;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+
+/** Reads daily temperatures from a compact binary file through memory-mapped buffers. <br><br>
+ * 
+ *  File layout (little-endian): <br>
+ *  a 32 byte header: int magic "MPBW", int version, int number of stations, int number of days, 
+ *  long epoch day of the first day, 8 reserved bytes, <br>
+ *  followed by one record per day: a float minimum temperature for each station, 
+ *  then a float maximum temperature for each station. <br><br>
+ * 
+ *  The file is mapped a window of days at a time, so memory use does not depend on the 
+ *  length of the series.  Use {@link #write(DailyWeatherReader, String)} to convert 
+ *  another source, such as a {@link CSVDailyWeatherReader}, to this format.
+ *  
+ * @author michaelfrancenelson */
+public class BinaryDailyWeatherReader implements DailyWeatherReader {
+
+	public static final int MAGIC = 0x4D504257;
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 32;
+
+	/** Approximate size of each mapped window. */
+	public static final long WINDOW_BYTES = 64L << 20;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final int stations;
+	private final int days;
+	private final LocalDate start;
+	private final long dayBytes;
+	private final int daysPerWindow;
+
+	private FloatBuffer window;
+	private int windowStart = 0;
+	private int windowDays = 0;
+
+	/** Index of the next day to read. */
+	private int day = 0;
+
+	public BinaryDailyWeatherReader(String fileName) throws IOException
+	{
+		file = new RandomAccessFile(fileName, "r");
+		channel = file.getChannel();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		while(header.hasRemaining()){
+			if(channel.read(header, header.position()) < 0) {
+				close();
+				throw new IOException(fileName + " is too short for a weather file header");
+			}
+		}
+		header.flip();
+		if(header.getInt() != MAGIC || header.getInt() != VERSION){
+			close();
+			throw new IOException(fileName + " is not a version " + VERSION + " binary weather file");
+		}
+		stations = header.getInt();
+		days = header.getInt();
+		start = LocalDate.ofEpochDay(header.getLong());
+
+		dayBytes = 8L * stations;
+		if(channel.size() < HEADER_BYTES + dayBytes * days){
+			close();
+			throw new IOException(fileName + " is truncated: expected " + days + " days of " + stations + " stations");
+		}
+		daysPerWindow = (int) Math.max(1, Math.min(Integer.MAX_VALUE / dayBytes, WINDOW_BYTES / Math.max(1, dayBytes)));
+	}
+
+	@Override
+	public int stations() { return stations; }
+
+	/** @return the number of days in the file */
+	public int days() { return days; }
+
+	/** @return the date of the first day in the file */
+	public LocalDate startDate() { return start; }
+
+	@Override
+	public LocalDate date() { return day == 0 ? null : start.plusDays(day - 1); }
+
+	/** Position the reader so the next call to {@link #nextDay(double[], double[])} reads the given day.
+	 * @param dayIndex index of the day, 0 for the first day in the file */
+	public void seek(int dayIndex)
+	{
+		if(dayIndex < 0 || dayIndex > days) throw new IndexOutOfBoundsException("Day " + dayIndex + " of " + days);
+		day = dayIndex;
+	}
+
+	/** Position the reader so the next call to {@link #nextDay(double[], double[])} reads the given date. */
+	public void seek(LocalDate date)
+	{
+		seek((int) (date.toEpochDay() - start.toEpochDay()));
+	}
+
+	@Override
+	public boolean nextDay(double[] tMin, double[] tMax) throws IOException
+	{
+		if(day >= days) return false;
+		if(window == null || day < windowStart || day >= windowStart + windowDays) map(day);
+
+		int offset = (day - windowStart) * 2 * stations;
+		for(int i = 0; i < stations; i++) tMin[i] = window.get(offset + i);
+		offset += stations;
+		for(int i = 0; i < stations; i++) tMax[i] = window.get(offset + i);
+		day++;
+		return true;
+	}
+
+	/** Map the window of days starting at firstDay. */
+	private void map(int firstDay) throws IOException
+	{
+		windowStart = firstDay;
+		windowDays = Math.min(daysPerWindow, days - firstDay);
+		MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 
+				HEADER_BYTES + firstDay * dayBytes, windowDays * dayBytes);
+		window = mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		window = null;
+		file.close();
+	}
+
+	/** Write all of the remaining days of a weather source to a binary weather file.
+	 *  The days must be consecutive; the source is read one day at a time.
+	 * @param source the weather to convert.  It is not closed.
+	 * @param fileName the binary file to create
+	 * @return the number of days written
+	 * @throws IOException */
+	public static int write(DailyWeatherReader source, String fileName) throws IOException
+	{
+		int stations = source.stations();
+		double[] tMin = new double[stations];
+		double[] tMax = new double[stations];
+		ByteBuffer record = ByteBuffer.allocateDirect(8 * stations).order(ByteOrder.LITTLE_ENDIAN);
+
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			file.setLength(0);
+			channel.position(HEADER_BYTES);
+
+			LocalDate first = null;
+			int days = 0;
+			while(source.nextDay(tMin, tMax)){
+				if(first == null){
+					first = source.date();
+				} else if(!source.date().equals(first.plusDays(days))){
+					throw new IOException("Days must be consecutive: expected " + first.plusDays(days) + ", got " + source.date());
+				}
+				record.clear();
+				for(int i = 0; i < stations; i++) record.putFloat((float) tMin[i]);
+				for(int i = 0; i < stations; i++) record.putFloat((float) tMax[i]);
+				record.flip();
+				while(record.hasRemaining()) channel.write(record);
+				days++;
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(stations).putInt(days)
+				.putLong(first == null ? 0L : first.toEpochDay()).putLong(0L);
+			header.flip();
+			while(header.hasRemaining()) channel.write(header, header.position());
+			return days;
+		} finally { file.close(); }
+	}
+}
@@ -0,0 +1,119 @@
+package mountainPineBeetle;
+
+/** A precomputed table of infested bole surface area (Safranyik et al. 1999 equations 4 and 5) 
+ *  for a fixed set of DBH classes, interpolated over tree height and the infested 
+ *  proportion of the height. <br><br>
+ *  
+ *  For each class the table holds {@link SafranyikMPBCalculator#infestedBoleSurfaceArea(double, double, double)}
+ *  on a grid of heights from 0 to maxHeight and infested proportions from 0 to 1, and a lookup is a 
+ *  bilinear interpolation in that grid, so it costs the same for any height.  
+ *  The area is linear in height, so the only interpolation error comes from the infested 
+ *  proportion: at most {@link #maxRelativeError()} of the tree's total bole area. <br>
+ *  The table is immutable once built and may be shared between threads.
+ * 
+ * @author michaelfrancenelson */
+public class BoleAreaTable {
+
+	/** Second derivative of the proportion polynomial f2, 2 &times; 0.6657. */
+	private static final double F2_CURVATURE = 2d * 0.6657;
+
+	/** Slope of f2 where it reaches 1 and is cut off, just below the top of the tree. */
+	private static final double F2_KINK_SLOPE;
+	static {
+		/* 0.0059 + 1.6761 p - 0.6657 p^2 = 1 */
+		double kink = (1.6761 - Math.sqrt(1.6761 * 1.6761 - 4d * 0.6657 * (1d - 0.0059))) / (2d * 0.6657);
+		F2_KINK_SLOPE = 1.6761 - F2_CURVATURE * kink;
+	}
+
+	private final double[] dbh;
+	private final double maxHeight;
+	private final int heightSteps;
+	private final int proportionSteps;
+	private final double heightScale;
+
+	/** [class][height][proportion], flattened */
+	private final double[] area;
+
+	/**
+	 * @param dbh the DBH of each class, in meters
+	 * @param maxHeight tallest tree height to tabulate, in meters; taller trees are clamped to it
+	 * @param heightSteps number of height intervals
+	 * @param proportionSteps number of infested proportion intervals
+	 */
+	public BoleAreaTable(double[] dbh, double maxHeight, int heightSteps, int proportionSteps)
+	{
+		if(maxHeight <= 0d || heightSteps < 1 || proportionSteps < 1){
+			throw new IllegalArgumentException("The table needs a positive height and at least one step on each axis");
+		}
+		this.dbh = dbh.clone();
+		this.maxHeight = maxHeight;
+		this.heightSteps = heightSteps;
+		this.proportionSteps = proportionSteps;
+		this.heightScale = heightSteps / maxHeight;
+
+		int h1 = heightSteps + 1, p1 = proportionSteps + 1;
+		area = new double[dbh.length * h1 * p1];
+		for(int c = 0; c < dbh.length; c++){
+			for(int h = 0; h < h1; h++){
+				double total = SafranyikMPBCalculator.totalBoleSurfaceArea(dbh[c], maxHeight * h / heightSteps);
+				/* Equation 4 by proportion rather than infested height, so that the zero height row is defined. */
+				for(int p = 0; p < p1; p++){
+					area[(c * h1 + h) * p1 + p] = 
+							total * SafranyikMPBCalculator.proportionBoleAreaBelow((double) p / proportionSteps, 1d);
+				}
+			}
+		}
+	}
+
+	/** A table for the DBH classes of a stand, whose DBH is in cm. */
+	public static BoleAreaTable forStand(SafranyikStand stand, double maxHeight, int heightSteps, int proportionSteps)
+	{
+		double[] dbh = new double[stand.classes];
+		for(int i = 0; i < dbh.length; i++) dbh[i] = stand.dbh[i] / 100d;
+		return new BoleAreaTable(dbh, maxHeight, heightSteps, proportionSteps);
+	}
+
+	/** @return the number of DBH classes */
+	public int classes() { return dbh.length; }
+
+	/** @return the largest interpolation error as a proportion of the total bole area: 
+	 *  (step<sup>2</sup> / 8) &times; |f2''| for the curvature, plus step / 4 &times; f2' 
+	 *  for the interval where f2 is cut off at 1 */
+	public double maxRelativeError()
+	{
+		double step = 1d / proportionSteps;
+		return step * step / 8d * F2_CURVATURE + step / 4d * F2_KINK_SLOPE;
+	}
+
+	/** Look up the infested bole area of a tree.
+	 * @param dbhClass the DBH class
+	 * @param height tree height in meters
+	 * @param infestedHeight infested height in meters (equation 5)
+	 * @return infested bole surface area in square meters */
+	public double area(int dbhClass, double height, double infestedHeight)
+	{
+		double proportion = height > 0d ? infestedHeight / height : 0d;
+		proportion = Math.max(0d, Math.min(1d, proportion));
+		double h = Math.max(0d, Math.min(maxHeight, height)) * heightScale;
+		double p = proportion * proportionSteps;
+
+		int hi = Math.min((int) h, heightSteps - 1);
+		int pi = Math.min((int) p, proportionSteps - 1);
+		double hf = h - hi, pf = p - pi;
+
+		int p1 = proportionSteps + 1;
+		int i00 = (dbhClass * (heightSteps + 1) + hi) * p1 + pi;
+		int i10 = i00 + p1;
+		double lower = area[i00] + pf * (area[i00 + 1] - area[i00]);
+		double upper = area[i10] + pf * (area[i10 + 1] - area[i10]);
+		return lower + hf * (upper - lower);
+	}
+
+	/** Set the bark area of every class of a stand from its heights. 
+	 * @param stand a stand with the DBH classes of this table
+	 * @param infestedHeight the infested height of each class, in meters */
+	public void fillBarkArea(SafranyikStand stand, double[] infestedHeight)
+	{
+		for(int i = 0; i < stand.classes; i++) stand.barkArea[i] = area(i, stand.height[i], infestedHeight[i]);
+	}
+}
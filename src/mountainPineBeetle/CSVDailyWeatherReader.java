@@ -0,0 +1,128 @@
+package mountainPineBeetle;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** Reads daily temperatures from a csv file with a header line followed by lines of <br>
+ *  date,station,tmin,tmax <br>
+ *  where date is in ISO format (2001-08-01).  The lines must be sorted by date; within a 
+ *  date the stations may be in any order.  Stations with no line for a date, or with an 
+ *  empty or NA temperature, are reported as missing, and a date between the first and last 
+ *  dates of the file with no lines at all is reported as a day with every station missing. <br><br>
+ *  
+ *  Only the current line is held in memory, so files of any length can be read.
+ *  
+ * @author michaelfrancenelson */
+public class CSVDailyWeatherReader implements DailyWeatherReader {
+
+	private final BufferedReader reader;
+	private final HashMap<String, Integer> stationIndex;
+	private final String fileName;
+
+	/** The first line of the next day, already read. */
+	private String pending;
+	private LocalDate pendingDate;
+	private LocalDate date;
+
+	/**
+	 * @param fileName the csv file
+	 * @param stationIds the station ids in the order the temperatures are reported
+	 * @throws IOException */
+	public CSVDailyWeatherReader(String fileName, List<String> stationIds) throws IOException
+	{
+		this.fileName = fileName;
+		stationIndex = new HashMap<String, Integer>(stationIds.size() * 2);
+		for(int i = 0; i < stationIds.size(); i++) stationIndex.put(stationIds.get(i), i);
+
+		reader = new BufferedReader(new FileReader(fileName), 1 << 16);
+		try
+		{
+			/* The first line of the file is the column headings, we can ignore it. */
+			reader.readLine();
+			advance();
+		}
+		catch(IOException | RuntimeException e)
+		{
+			/* The caller gets no reader to close. */
+			reader.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int stations() { return stationIndex.size(); }
+
+	@Override
+	public LocalDate date() { return date; }
+
+	@Override
+	public boolean nextDay(double[] tMin, double[] tMax) throws IOException
+	{
+		if(pending == null) return false;
+
+		Arrays.fill(tMin, 0, stations(), MISSING);
+		Arrays.fill(tMax, 0, stations(), MISSING);
+		date = date == null ? pendingDate : date.plusDays(1);
+
+		/* A date with no lines: every station is missing. */
+		if(pendingDate.isAfter(date)) return true;
+
+		while(pending != null && pendingDate.equals(date)){
+			parseInto(pending, tMin, tMax);
+			advance();
+		}
+		if(pendingDate != null && pendingDate.isBefore(date)){
+			throw new IOException(fileName + " is not sorted by date: " + pendingDate + " follows " + date);
+		}
+		return true;
+	}
+
+	/** Read the next non-empty line and its date. */
+	private void advance() throws IOException
+	{
+		String line;
+		while((line = reader.readLine()) != null && line.trim().isEmpty());
+		pending = line;
+		if(line == null){
+			pendingDate = null;
+		} else {
+			int comma = line.indexOf(',');
+			if(comma < 0) throw new IOException("Malformed line in " + fileName + ": " + line);
+			try { pendingDate = LocalDate.parse(line.substring(0, comma).trim()); }
+			catch(DateTimeParseException e) { throw new IOException("Malformed line in " + fileName + ": " + line, e); }
+		}
+	}
+
+	private void parseInto(String line, double[] tMin, double[] tMax) throws IOException
+	{
+		int c1 = line.indexOf(',');
+		int c2 = line.indexOf(',', c1 + 1);
+		int c3 = c2 < 0 ? -1 : line.indexOf(',', c2 + 1);
+		if(c3 < 0) throw new IOException("Malformed line in " + fileName + ": " + line);
+		int c4 = line.indexOf(',', c3 + 1);
+		if(c4 < 0) c4 = line.length();
+
+		Integer station = stationIndex.get(line.substring(c1 + 1, c2).trim());
+		if(station == null) throw new IOException("Unknown station in " + fileName + ": " + line);
+
+		tMin[station] = parseTemperature(line.substring(c2 + 1, c3), line);
+		tMax[station] = parseTemperature(line.substring(c3 + 1, c4), line);
+	}
+
+	private double parseTemperature(String s, String line) throws IOException
+	{
+		s = s.trim();
+		if(s.isEmpty() || s.equalsIgnoreCase("NA")) return MISSING;
+		try { return Double.parseDouble(s); }
+		catch(NumberFormatException e) { throw new IOException("Malformed line in " + fileName + ": " + line, e); }
+	}
+
+	@Override
+	public void close() throws IOException { reader.close(); }
+}
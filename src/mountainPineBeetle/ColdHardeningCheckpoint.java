@@ -0,0 +1,184 @@
+package mountainPineBeetle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+
+/** A compact binary checkpoint of the batched Regniere and Bentz model state, 
+ *  so that long runs can restart from the last completed day. <br><br>
+ *  
+ *  For each cell the file holds the cold hardening, gain, loss, survival, the season's 
+ *  minimum median lethal temperature and the epoch day of the cell's last completed update. <br><br>
+ *  
+ *  The file is memory-mapped once and has two slots that are written alternately.  A write 
+ *  copies the arrays into the older slot and only then marks that slot as current, so a 
+ *  crash during a write leaves the previous checkpoint intact.  Each write is a bulk copy 
+ *  into the mapping with no allocation or reopening of the file. <br><br>
+ *  
+ *  File layout (little-endian): <br>
+ *  a 64 byte header: int magic "MPBC", int version, int number of cells, int reserved, 
+ *  then for each slot a long sequence number (0 = empty) and a long epoch day, <br>
+ *  followed by the two slots, each holding the double arrays cold hardening, gain, loss, 
+ *  survival, minimum lethal temperature, then the int array of epoch days.
+ * 
+ * @author michaelfrancenelson */
+public class ColdHardeningCheckpoint implements Closeable {
+
+	public static final int MAGIC = 0x4D504243;
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 64;
+
+	private static final int SLOT_DESCRIPTOR_OFFSET = 16;
+	private static final int DOUBLE_ARRAYS = 5;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final int cells;
+	private final long slotBytes;
+
+	/** Whether each write is forced to the storage device before it is marked as current. */
+	private boolean force = true;
+
+	/** Open a checkpoint file for the given number of cells, creating it if it does not exist.
+	 * @param fileName the checkpoint file
+	 * @param cells the number of cells
+	 * @throws IOException if the file exists but is not a checkpoint for this number of cells */
+	public ColdHardeningCheckpoint(String fileName, int cells) throws IOException
+	{
+		this.cells = cells;
+		slotBytes = (DOUBLE_ARRAYS * 8L + 4L) * cells;
+		long size = HEADER_BYTES + 2 * slotBytes;
+		if(size > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Too many cells for one checkpoint file: " + cells);
+		}
+
+		file = new RandomAccessFile(fileName, "rw");
+		boolean isNew = file.length() == 0;
+		if(!isNew && file.length() != size){
+			file.close();
+			throw new IOException(fileName + " is not a checkpoint for " + cells + " cells");
+		}
+		file.setLength(size);
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		if(isNew){
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putInt(8, cells);
+			buffer.force();
+		} else if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != cells){
+			file.close();
+			throw new IOException(fileName + " is not a version " + VERSION + " checkpoint for " + cells + " cells");
+		}
+	}
+
+	/** @param force force each write to the storage device (the default).  Turning this off 
+	 *  makes writes cheaper but a crash of the machine, rather than the JVM, may lose them. */
+	public void setForce(boolean force) { this.force = force; }
+
+	/** @return the number of cells */
+	public int cells() { return cells; }
+
+	/** @return the day of the most recent checkpoint, or null if none has been written */
+	public LocalDate lastDay()
+	{
+		int slot = currentSlot();
+		return slot < 0 ? null : LocalDate.ofEpochDay(buffer.getLong(SLOT_DESCRIPTOR_OFFSET + 16 * slot + 8));
+	}
+
+	/** Write a checkpoint in which every cell has completed the given day. */
+	public void write(LocalDate day, double[] coldHardening, double[] gain, double[] loss, 
+			double[] survival, double[] minLethalTemperature)
+	{
+		write(day, null, coldHardening, gain, loss, survival, minLethalTemperature);
+	}
+
+	/** Write a checkpoint.
+	 * @param day the last completed day of the run
+	 * @param cellDays the epoch day of each cell's last update, or null if all cells completed day
+	 * @param coldHardening
+	 * @param gain
+	 * @param loss
+	 * @param survival
+	 * @param minLethalTemperature */
+	public void write(LocalDate day, int[] cellDays, double[] coldHardening, double[] gain, double[] loss, 
+			double[] survival, double[] minLethalTemperature)
+	{
+		int current = currentSlot();
+		int slot = current == 0 ? 1 : 0;
+		long sequence = current < 0 ? 1 : buffer.getLong(SLOT_DESCRIPTOR_OFFSET + 16 * current) + 1;
+
+		int offset = (int) (HEADER_BYTES + slot * slotBytes);
+		putDoubles(offset, coldHardening);
+		putDoubles(offset += 8 * cells, gain);
+		putDoubles(offset += 8 * cells, loss);
+		putDoubles(offset += 8 * cells, survival);
+		putDoubles(offset += 8 * cells, minLethalTemperature);
+		offset += 8 * cells;
+		if(cellDays == null){
+			int epochDay = (int) day.toEpochDay();
+			for(int i = 0; i < cells; i++) buffer.putInt(offset + 4 * i, epochDay);
+		} else {
+			buffer.position(offset);
+			buffer.asIntBuffer().put(cellDays, 0, cells);
+		}
+		if(force) buffer.force();
+
+		/* Mark the slot as current only after its data are written. */
+		buffer.putLong(SLOT_DESCRIPTOR_OFFSET + 16 * slot + 8, day.toEpochDay());
+		buffer.putLong(SLOT_DESCRIPTOR_OFFSET + 16 * slot, sequence);
+		if(force) buffer.force();
+	}
+
+	/** Copy the most recent checkpoint into the given arrays.
+	 * @param cellDays receives each cell's epoch day, may be null
+	 * @return the day of the checkpoint, or null if none has been written (the arrays are untouched) */
+	public LocalDate read(int[] cellDays, double[] coldHardening, double[] gain, double[] loss, 
+			double[] survival, double[] minLethalTemperature)
+	{
+		int slot = currentSlot();
+		if(slot < 0) return null;
+
+		int offset = (int) (HEADER_BYTES + slot * slotBytes);
+		getDoubles(offset, coldHardening);
+		getDoubles(offset += 8 * cells, gain);
+		getDoubles(offset += 8 * cells, loss);
+		getDoubles(offset += 8 * cells, survival);
+		getDoubles(offset += 8 * cells, minLethalTemperature);
+		offset += 8 * cells;
+		if(cellDays != null){
+			buffer.position(offset);
+			buffer.asIntBuffer().get(cellDays, 0, cells);
+		}
+		return lastDay();
+	}
+
+	/** @return the slot with the highest sequence number, or -1 if both are empty */
+	private int currentSlot()
+	{
+		long s0 = buffer.getLong(SLOT_DESCRIPTOR_OFFSET);
+		long s1 = buffer.getLong(SLOT_DESCRIPTOR_OFFSET + 16);
+		if(s0 == 0 && s1 == 0) return -1;
+		return s1 > s0 ? 1 : 0;
+	}
+
+	private void putDoubles(int offset, double[] values)
+	{
+		buffer.position(offset);
+		buffer.asDoubleBuffer().put(values, 0, cells);
+	}
+
+	private void getDoubles(int offset, double[] values)
+	{
+		buffer.position(offset);
+		buffer.asDoubleBuffer().get(values, 0, cells);
+	}
+
+	@Override
+	public void close() throws IOException { file.close(); }
+}
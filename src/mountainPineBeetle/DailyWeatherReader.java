@@ -0,0 +1,31 @@
+package mountainPineBeetle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/** A source of daily minimum and maximum temperatures for a fixed set of 
+ *  stations or grid cells, read one day at a time so that long series 
+ *  never have to be held in memory. <br>
+ *  Missing values are reported as -999, the missing-data value used by 
+ *  {@link RegniereBentzMPBCalculator#updateState(double[], LocalDate, double[])}.
+ *  
+ * @author michaelfrancenelson */
+public interface DailyWeatherReader extends Closeable {
+
+	/** Value reported for missing temperatures. */
+	public static final double MISSING = -999d;
+
+	/** @return the number of stations or cells in each day's record */
+	int stations();
+
+	/** Read the next day's temperatures.
+	 * @param tMin filled with each station's minimum temperature, length at least {@link #stations()}
+	 * @param tMax filled with each station's maximum temperature, length at least {@link #stations()}
+	 * @return false if there are no more days
+	 * @throws IOException */
+	boolean nextDay(double[] tMin, double[] tMax) throws IOException;
+
+	/** @return the date of the day most recently read by {@link #nextDay(double[], double[])} */
+	LocalDate date();
+}
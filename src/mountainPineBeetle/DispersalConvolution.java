@@ -0,0 +1,191 @@
+package mountainPineBeetle;
+
+import java.util.Arrays;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Spreads a raster of dispersing beetles over the landscape with a {@link DispersalKernel}: <br>
+ *  out[r][c] = &Sigma; source[r - dy][c - dx] &times; kernel(dy, dx). <br><br>
+ *  
+ *  Cells outside the raster hold no beetles, and beetles that disperse out of the 
+ *  raster are lost.  Small kernels are applied by direct convolution and large ones by 
+ *  FFT convolution of overlapping tiles (overlap-save), so memory use stays proportional 
+ *  to the raster plus one tile per thread.  Both split the output rows across a fork-join pool. <br>
+ *  Rasters are row-major arrays of rows &times; cols cells.
+ * 
+ * @author michaelfrancenelson */
+public class DispersalConvolution {
+
+	/** Widest kernel applied by direct convolution by {@link #convolve}; wider kernels use the FFT. */
+	public static final int DIRECT_MAX_WIDTH = 17;
+
+	/** Number of output rows a direct convolution task computes without splitting further. */
+	public static final int ROWS_PER_TASK = 16;
+
+	/** Smallest FFT tile size. */
+	public static final int MIN_FFT_SIZE = 128;
+
+	/** Convolve on the common fork-join pool, choosing the method from the kernel width. */
+	public static void convolve(double[] source, int rows, int cols, DispersalKernel kernel, double[] out)
+	{
+		convolve(source, rows, cols, kernel, out, ForkJoinPool.commonPool());
+	}
+
+	/** Convolve, choosing direct convolution for kernels up to {@link #DIRECT_MAX_WIDTH} cells wide 
+	 *  and FFT convolution for wider ones.
+	 * @param source the beetles leaving each cell
+	 * @param rows number of raster rows
+	 * @param cols number of raster columns
+	 * @param kernel the dispersal kernel
+	 * @param out receives the beetles arriving in each cell; must not be the source array
+	 * @param pool the pool to run on */
+	public static void convolve(double[] source, int rows, int cols, DispersalKernel kernel, double[] out, ForkJoinPool pool)
+	{
+		if(kernel.width <= DIRECT_MAX_WIDTH) convolveDirect(source, rows, cols, kernel, out, pool);
+		else convolveFFT(source, rows, cols, kernel, out, pool);
+	}
+
+	/** Direct convolution, O(cells &times; kernel cells). */
+	public static void convolveDirect(double[] source, int rows, int cols, DispersalKernel kernel, double[] out, ForkJoinPool pool)
+	{
+		check(source, rows, cols, out);
+		pool.invoke(new DirectTask(source, rows, cols, kernel, out, 0, rows));
+	}
+
+	/** FFT convolution of overlapping tiles, O(cells &times; log(tile size)). */
+	public static void convolveFFT(double[] source, int rows, int cols, DispersalKernel kernel, double[] out, ForkJoinPool pool)
+	{
+		check(source, rows, cols, out);
+		int n = FFT.size(Math.max(MIN_FFT_SIZE, 4 * kernel.radius + 2));
+		int tile = n - 2 * kernel.radius;
+		double[][] spectrum = kernel.spectrum(n);
+		int tilesDown = (rows + tile - 1) / tile;
+		pool.invoke(new FFTTask(source, rows, cols, kernel, out, new FFT(n), spectrum, tile, 0, tilesDown));
+	}
+
+	private static void check(double[] source, int rows, int cols, double[] out)
+	{
+		if(source.length != rows * cols || out.length != rows * cols){
+			throw new IllegalArgumentException("The source and output must have rows x cols cells");
+		}
+		if(source == out) throw new IllegalArgumentException("The output must not be the source array");
+	}
+
+	/** Direct convolution of output rows from (inclusive) to to (exclusive). */
+	static void directRows(double[] source, int rows, int cols, DispersalKernel kernel, double[] out, int from, int to)
+	{
+		int radius = kernel.radius, width = kernel.width;
+		double[] weights = kernel.weights;
+		for(int r = from; r < to; r++){
+			int outRow = r * cols;
+			for(int c = 0; c < cols; c++) out[outRow + c] = 0d;
+			for(int dy = -radius; dy <= radius; dy++){
+				int sourceRow = r - dy;
+				if(sourceRow < 0 || sourceRow >= rows) continue;
+				int sourceOffset = sourceRow * cols;
+				int kernelRow = (dy + radius) * width + radius;
+				for(int dx = -radius; dx <= radius; dx++){
+					double w = weights[kernelRow + dx];
+					if(w == 0d) continue;
+					/* out[c] += w * source[c - dx] for the columns where c - dx is inside the raster */
+					int c0 = Math.max(0, dx), c1 = Math.min(cols, cols + dx);
+					int shift = sourceOffset - dx;
+					for(int c = c0; c < c1; c++) out[outRow + c] += w * source[shift + c];
+				}
+			}
+		}
+	}
+
+	/** FFT convolution of one band of tiles: output rows [band &times; tile, (band + 1) &times; tile). */
+	static void fftBand(double[] source, int rows, int cols, DispersalKernel kernel, double[] out,
+			FFT fft, double[][] spectrum, int tile, int band, double[] re, double[] im, double[] columnRe, double[] columnIm)
+	{
+		int n = fft.n, radius = kernel.radius;
+		double[] kre = spectrum[0], kim = spectrum[1];
+		int row0 = band * tile, rowEnd = Math.min(rows, row0 + tile);
+		for(int col0 = 0; col0 < cols; col0 += tile){
+			int colEnd = Math.min(cols, col0 + tile);
+
+			/* The input region reaches radius cells beyond the tile on each side. */
+			Arrays.fill(re, 0d);
+			Arrays.fill(im, 0d);
+			for(int i = 0; i < n; i++){
+				int r = row0 - radius + i;
+				if(r < 0 || r >= rows) continue;
+				int cFrom = Math.max(0, col0 - radius), cTo = Math.min(cols, col0 - radius + n);
+				System.arraycopy(source, r * cols + cFrom, re, i * n + cFrom - (col0 - radius), cTo - cFrom);
+			}
+			fft.transform2D(re, im, false, columnRe, columnIm);
+			for(int k = 0; k < re.length; k++){
+				double a = re[k], b = im[k];
+				re[k] = a * kre[k] - b * kim[k];
+				im[k] = a * kim[k] + b * kre[k];
+			}
+			fft.transform2D(re, im, true, columnRe, columnIm);
+
+			/* Keep the central part, which the circular wrap-around does not reach. */
+			for(int r = row0; r < rowEnd; r++){
+				System.arraycopy(re, (r - row0 + radius) * n + radius, out, r * cols + col0, colEnd - col0);
+			}
+		}
+	}
+
+	private static class DirectTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final double[] source, out;
+		final int rows, cols, from, to;
+		final DispersalKernel kernel;
+
+		DirectTask(double[] source, int rows, int cols, DispersalKernel kernel, double[] out, int from, int to)
+		{
+			this.source = source; this.rows = rows; this.cols = cols;
+			this.kernel = kernel; this.out = out; this.from = from; this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= ROWS_PER_TASK){
+				directRows(source, rows, cols, kernel, out, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new DirectTask(source, rows, cols, kernel, out, from, mid),
+					new DirectTask(source, rows, cols, kernel, out, mid, to));
+		}
+	}
+
+	private static class FFTTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final double[] source, out;
+		final int rows, cols, tile, from, to;
+		final DispersalKernel kernel;
+		final FFT fft;
+		final double[][] spectrum;
+
+		FFTTask(double[] source, int rows, int cols, DispersalKernel kernel, double[] out, 
+				FFT fft, double[][] spectrum, int tile, int from, int to)
+		{
+			this.source = source; this.rows = rows; this.cols = cols;
+			this.kernel = kernel; this.out = out; this.fft = fft; this.spectrum = spectrum;
+			this.tile = tile; this.from = from; this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from == 1){
+				int n = fft.n;
+				fftBand(source, rows, cols, kernel, out, fft, spectrum, tile, from, 
+						new double[n * n], new double[n * n], new double[n], new double[n]);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new FFTTask(source, rows, cols, kernel, out, fft, spectrum, tile, from, mid),
+					new FFTTask(source, rows, cols, kernel, out, fft, spectrum, tile, mid, to));
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package mountainPineBeetle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/** A truncated raster of the dispersal attractiveness score 
+ *  {@link MPBCalculations#exponentialDistanceScore(double, double, double)} 
+ *  around a source cell. <br><br>
+ *  
+ *  The score falls below epsilon beyond the cutoff distance ln(A / epsilon) / B, 
+ *  so the kernel covers (2 &times; radius + 1)<sup>2</sup> cells with 
+ *  radius = ceil(cutoff / cellSize), and cells whose centres are farther than the cutoff are 0. <br>
+ *  Kernels are immutable.  {@link #of(double, double, double, double, boolean)} caches the 
+ *  {@link #CACHED_KERNELS} most recently used, so a run that reuses a few combinations of 
+ *  parameters, cell size and epsilon computes each of them once, and a sweep over many 
+ *  combinations does not hold on to all of them.
+ * 
+ * @author michaelfrancenelson */
+public class DispersalKernel {
+
+	/** Number of kernels kept by {@link #of(double, double, double, double, boolean)}. */
+	public static final int CACHED_KERNELS = 16;
+
+	/** Number of FFT sizes whose spectra each kernel keeps. */
+	public static final int CACHED_SPECTRA = 2;
+
+	private static final LeastRecentlyUsed<Key, DispersalKernel> CACHE = new LeastRecentlyUsed<>(CACHED_KERNELS);
+
+	public final double paramA;
+	public final double paramB;
+	public final double cellSize;
+	public final double epsilon;
+	public final boolean normalized;
+
+	/** Kernel radius in cells. */
+	public final int radius;
+	/** Kernel width in cells, 2 &times; radius + 1. */
+	public final int width;
+
+	/** Weights in row-major order; the source cell is at (radius, radius). */
+	final double[] weights;
+
+	/** Spectra of the kernel for the most recently used FFT sizes, computed when first needed. */
+	private final LeastRecentlyUsed<Integer, double[][]> spectra = new LeastRecentlyUsed<>(CACHED_SPECTRA);
+
+	/**
+	 * @param paramA dispersal distance parameter A
+	 * @param paramB dispersal distance parameter B, per meter
+	 * @param cellSize cell size in meters
+	 * @param epsilon scores below this are dropped
+	 * @param normalize scale the weights to sum to 1, so that convolution conserves beetles 
+	 */
+	public DispersalKernel(double paramA, double paramB, double cellSize, double epsilon, boolean normalize)
+	{
+		if(!(paramB > 0d && cellSize > 0d && epsilon > 0d)){
+			throw new IllegalArgumentException("paramB, cellSize and epsilon must be positive");
+		}
+		this.paramA = paramA;
+		this.paramB = paramB;
+		this.cellSize = cellSize;
+		this.epsilon = epsilon;
+		this.normalized = normalize;
+
+		double cutoff = cutoffDistance(paramA, paramB, epsilon);
+		radius = (int) Math.ceil(cutoff / cellSize);
+		width = 2 * radius + 1;
+		weights = new double[width * width];
+		double sum = 0d;
+		for(int dy = -radius; dy <= radius; dy++){
+			for(int dx = -radius; dx <= radius; dx++){
+				double distance = cellSize * Math.sqrt(dx * dx + dy * dy);
+				if(distance > cutoff) continue;
+				double w = MPBCalculations.exponentialDistanceScore(distance, paramA, paramB);
+				weights[(dy + radius) * width + dx + radius] = w;
+				sum += w;
+			}
+		}
+		if(normalize && sum > 0d) for(int i = 0; i < weights.length; i++) weights[i] /= sum;
+	}
+
+	/** @return the cached kernel for these parameters, computing it if needed */
+	public static DispersalKernel of(double paramA, double paramB, double cellSize, double epsilon, boolean normalize)
+	{
+		return CACHE.get(new Key(paramA, paramB, cellSize, epsilon, normalize), 
+				k -> new DispersalKernel(paramA, paramB, cellSize, epsilon, normalize));
+	}
+
+	/** @return the distance beyond which the score A &times; e<sup>-B &times; distance</sup> is below epsilon; 
+	 *  0 if it is below epsilon everywhere */
+	public static double cutoffDistance(double paramA, double paramB, double epsilon)
+	{
+		return paramA > epsilon ? Math.log(paramA / epsilon) / paramB : 0d;
+	}
+
+	/** @return the weight dy rows and dx columns from the source, 0 outside the kernel */
+	public double weight(int dy, int dx)
+	{
+		if(Math.abs(dy) > radius || Math.abs(dx) > radius) return 0d;
+		return weights[(dy + radius) * width + dx + radius];
+	}
+
+	/** @return the sum of the weights */
+	public double sum()
+	{
+		double sum = 0d;
+		for(double w : weights) sum += w;
+		return sum;
+	}
+
+	/** The kernel's discrete Fourier transform on an n &times; n grid, with the 
+	 *  source cell at (0, 0) and negative offsets wrapped around.
+	 * @return {real, imaginary} parts in row-major order */
+	double[][] spectrum(int n)
+	{
+		return spectra.get(n, size -> {
+			double[] re = new double[size * size], im = new double[size * size];
+			for(int dy = -radius; dy <= radius; dy++){
+				int row = (dy + size) % size;
+				for(int dx = -radius; dx <= radius; dx++){
+					re[row * size + (dx + size) % size] = weights[(dy + radius) * width + dx + radius];
+				}
+			}
+			FFT fft = new FFT(size);
+			fft.transform2D(re, im, false);
+			return new double[][] {re, im};
+		});
+	}
+
+	/** The arguments of {@link DispersalKernel#of(double, double, double, double, boolean)}. */
+	private static final class Key {
+		final double paramA, paramB, cellSize, epsilon;
+		final boolean normalize;
+
+		Key(double paramA, double paramB, double cellSize, double epsilon, boolean normalize)
+		{
+			this.paramA = paramA; this.paramB = paramB; this.cellSize = cellSize; this.epsilon = epsilon;
+			this.normalize = normalize;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof Key)) return false;
+			Key k = (Key) o;
+			return Double.compare(paramA, k.paramA) == 0 && Double.compare(paramB, k.paramB) == 0 &&
+					Double.compare(cellSize, k.cellSize) == 0 && Double.compare(epsilon, k.epsilon) == 0 &&
+					normalize == k.normalize;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int h = Double.hashCode(paramA);
+			h = 31 * h + Double.hashCode(paramB);
+			h = 31 * h + Double.hashCode(cellSize);
+			h = 31 * h + Double.hashCode(epsilon);
+			return 31 * h + Boolean.hashCode(normalize);
+		}
+	}
+
+	/** A map that keeps only its most recently used entries.  Values are computed 
+	 *  outside the lock, so two threads may both compute a missing value; the first one stored wins. */
+	private static final class LeastRecentlyUsed<K, V> {
+		private final LinkedHashMap<K, V> map;
+
+		LeastRecentlyUsed(final int capacity)
+		{
+			map = new LinkedHashMap<K, V>(2 * capacity, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<K, V> eldest) { return size() > capacity; }
+			};
+		}
+
+		V get(K key, Function<? super K, ? extends V> compute)
+		{
+			synchronized(map){
+				V value = map.get(key);
+				if(value != null) return value;
+			}
+			V value = compute.apply(key);
+			synchronized(map){
+				V existing = map.putIfAbsent(key, value);
+				return existing != null ? existing : value;
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package mountainPineBeetle;
+
+/** Radix-2 complex fast Fourier transform of a fixed power-of-two size, 
+ *  on separate real and imaginary arrays. <br>
+ *  A plan holds only its twiddle factors and bit-reversal table, 
+ *  so one plan may be shared between threads as long as each thread supplies its own 
+ *  column buffers to {@link #transform2D(double[], double[], boolean, double[], double[])}.
+ * 
+ * @author michaelfrancenelson */
+class FFT {
+
+	final int n;
+	private final double[] cos;
+	private final double[] sin;
+	private final int[] reversed;
+
+	FFT(int n)
+	{
+		if(n < 1 || Integer.bitCount(n) != 1) throw new IllegalArgumentException("FFT size must be a power of 2, got " + n);
+		this.n = n;
+		cos = new double[n / 2];
+		sin = new double[n / 2];
+		for(int i = 0; i < n / 2; i++){
+			cos[i] = Math.cos(2d * Math.PI * i / n);
+			sin[i] = Math.sin(2d * Math.PI * i / n);
+		}
+		reversed = new int[n];
+		int bits = Integer.numberOfTrailingZeros(n);
+		for(int i = 0; i < n; i++) reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+	}
+
+	/** @return the smallest power of 2 that is at least n */
+	static int size(int n)
+	{
+		return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+	}
+
+	/** Transform n values starting at offset, in place.  
+	 *  The inverse transform is not scaled by 1 / n. */
+	void transform(double[] re, double[] im, int offset, boolean inverse)
+	{
+		for(int i = 0; i < n; i++){
+			int j = reversed[i];
+			if(j > i){
+				double t = re[offset + i]; re[offset + i] = re[offset + j]; re[offset + j] = t;
+				t = im[offset + i]; im[offset + i] = im[offset + j]; im[offset + j] = t;
+			}
+		}
+		double sign = inverse ? 1d : -1d;
+		for(int half = 1; half < n; half <<= 1){
+			int step = n / (2 * half);
+			for(int start = 0; start < n; start += 2 * half){
+				for(int k = 0; k < half; k++){
+					double wr = cos[k * step], wi = sign * sin[k * step];
+					int a = offset + start + k, b = a + half;
+					double tr = wr * re[b] - wi * im[b];
+					double ti = wr * im[b] + wi * re[b];
+					re[b] = re[a] - tr; im[b] = im[a] - ti;
+					re[a] += tr; im[a] += ti;
+				}
+			}
+		}
+	}
+
+	/** Transform an n &times; n row-major grid in place. */
+	void transform2D(double[] re, double[] im, boolean inverse)
+	{
+		transform2D(re, im, inverse, new double[n], new double[n]);
+	}
+
+	/** Transform an n &times; n row-major grid in place, using the given column buffers of length n.  
+	 *  The inverse transform is scaled by 1 / n<sup>2</sup>. */
+	void transform2D(double[] re, double[] im, boolean inverse, double[] columnRe, double[] columnIm)
+	{
+		for(int row = 0; row < n; row++) transform(re, im, row * n, inverse);
+		for(int col = 0; col < n; col++){
+			for(int row = 0; row < n; row++){ columnRe[row] = re[row * n + col]; columnIm[row] = im[row * n + col]; }
+			transform(columnRe, columnIm, 0, inverse);
+			for(int row = 0; row < n; row++){ re[row * n + col] = columnRe[row]; im[row * n + col] = columnIm[row]; }
+		}
+		if(inverse){
+			double scale = 1d / ((double) n * n);
+			for(int i = 0; i < re.length; i++){ re[i] *= scale; im[i] *= scale; }
+		}
+	}
+}
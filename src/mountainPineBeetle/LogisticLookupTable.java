@@ -0,0 +1,80 @@
+package mountainPineBeetle;
+
+/** Tabulated approximations of the logistic functions in the Regniere and Bentz model, 
+ *  for runs that can trade a small, bounded error for throughput. <br><br>
+ *  
+ *  Both functions are tabulated on the standardized scale z = (x - alpha) / beta,
+ *  for 0 &le; z &lt; {@link #Z_MAX} in steps of {@link #STEP}, and linearly interpolated.  
+ *  Negative z uses the symmetry of the logistic distribution. <br><br>
+ *  
+ *  Error bounds: linear interpolation with step h has error at most h<sup>2</sup>/8 &times; max|f''|. <ul>
+ *  <li> The standard logistic density f(z) = e<sup>-z</sup> / (1 + e<sup>-z</sup>)<sup>2</sup> has max|f''| = 1/8,
+ *  		so the error of {@link #density(double)} is below {@link #DENSITY_MAX_ERROR}.
+ *  		{@link #logistic(double, double, double)} divides by beta, so its error is below DENSITY_MAX_ERROR / beta. </li>
+ *  <li> The standard logistic cdf 1 / (1 + e<sup>-z</sup>) has max|f''| = 1 / (6 &radic;3),
+ *  		so the error of {@link #cdf(double)} is below {@link #CDF_MAX_ERROR}.
+ *  		The survival sum in equation 10 weights the cdf by proportions that sum to 1, 
+ *  		so its error is below CDF_MAX_ERROR too. </li></ul>
+ *  Beyond Z_MAX the tails are truncated, which adds less than 5E-18.
+ * 
+ * @author michaelfrancenelson */
+public final class LogisticLookupTable {
+
+	/** Upper end of the tabulated range of |z| */
+	public static final double Z_MAX = 40d;
+	/** Spacing of the table */
+	public static final double STEP = 1d / 256d;
+
+	/** Maximum absolute error of {@link #density(double)}: STEP<sup>2</sup> / 64, rounded up. */
+	public static final double DENSITY_MAX_ERROR = 2.5E-7;
+	/** Maximum absolute error of {@link #cdf(double)}: STEP<sup>2</sup> / (48 &radic;3), rounded up. */
+	public static final double CDF_MAX_ERROR = 2.0E-7;
+
+	private static final double INV_STEP = 1d / STEP;
+	private static final double[] DENSITY;
+	private static final double[] CDF;
+
+	static {
+		int n = (int) Math.round(Z_MAX * INV_STEP) + 1;
+		DENSITY = new double[n];
+		CDF = new double[n];
+		for(int i = 0; i < n; i++){
+			double z = i * STEP;
+			double e = Math.exp(-z);
+			DENSITY[i] = e / ((1d + e) * (1d + e));
+			CDF[i] = 1d / (1d + e);
+		}
+	}
+
+	private LogisticLookupTable() {}
+
+	/** Tabulated standard logistic density e<sup>-z</sup> / (1 + e<sup>-z</sup>)<sup>2</sup> */
+	public static double density(double z)
+	{
+		double a = Math.abs(z);
+		if(a >= Z_MAX) return 0d;
+		double pos = a * INV_STEP;
+		int i = (int) pos;
+		double frac = pos - i;
+		return DENSITY[i] + frac * (DENSITY[i + 1] - DENSITY[i]);
+	}
+
+	/** Tabulated standard logistic cdf 1 / (1 + e<sup>-z</sup>) */
+	public static double cdf(double z)
+	{
+		double a = Math.abs(z);
+		if(a >= Z_MAX) return z > 0 ? 1d : 0d;
+		double pos = a * INV_STEP;
+		int i = (int) pos;
+		double frac = pos - i;
+		double value = CDF[i] + frac * (CDF[i + 1] - CDF[i]);
+		return z >= 0 ? value : 1d - value;
+	}
+
+	/** Tabulated form of {@link RegniereBentzMPBCalculator#logistic(double, double, double)}.
+	 *  The absolute error is below {@link #DENSITY_MAX_ERROR} / beta. */
+	public static double logistic(double x, double alpha, double beta)
+	{
+		return density((x - alpha) / beta) / beta;
+	}
+}
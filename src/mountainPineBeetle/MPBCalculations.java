@@ -1,6 +1,10 @@
 package mountainPineBeetle;
 
-import sequeuces.Sequences;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
 
 public class MPBCalculations {
 
@@ -15,14 +19,126 @@ public class MPBCalculations {
 		return 1d - weight + weight * score;
 		}
 	
+	/** Rescale scores to the range 0 to 1 by their minimum and maximum, then weight them 
+	 *  with {@link #weightedScore(double, double)}.  If every score is the same, they all normalize to 1.
+	 * @param score the raw scores
+	 * @param weight the weight
+	 * @return a new array of weighted scores */
 	public static double[] weightedScore(double[] score, double weight)
 	{
-		/* Normalize the scores: */
-		double[] scores = Sequences.recenterAndNormalize(score, 0d, 1d);
-		for(int i = 0; i < scores.length; i++)
-			scores[i] = weightedScore(scores[i], weight);
-		
-		return scores;
+		return weightedScore(score, weight, new double[score.length]);
+	}
+
+	/** Normalize and weight scores in one fused pass after finding their range, 
+	 *  see {@link #weightedScore(double[], double)}.
+	 * @param score the raw scores
+	 * @param weight the weight
+	 * @param out receives the weighted scores; may be the score array to work in place
+	 * @return out */
+	public static double[] weightedScore(double[] score, double weight, double[] out)
+	{
+		double[] range = scoreRange(score, 0, score.length, newScoreRange());
+		weightedScore(score, 0, score.length, range, weight, out, 0);
+		return out;
+	}
+
+	/** @return a {min, max} accumulator for {@link #scoreRange(double[], int, int, double[])}, initially empty */
+	public static double[] newScoreRange()
+	{
+		return new double[] {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+	}
+
+	/** First pass of a chunked weighting: widen a {min, max} range to include the scores 
+	 *  from (inclusive) to to (exclusive).  Call it once per chunk with the same range.
+	 * @return range */
+	public static double[] scoreRange(double[] score, int from, int to, double[] range)
+	{
+		double min = range[0], max = range[1];
+		for(int i = from; i < to; i++){
+			min = Math.min(min, score[i]);
+			max = Math.max(max, score[i]);
+		}
+		range[0] = min; range[1] = max;
+		return range;
+	}
+
+	/** Second pass of a chunked weighting: normalize the scores from (inclusive) to to (exclusive) 
+	 *  by the range of all the chunks and weight them.  Normalizing and weighting 
+	 *  fold into a single multiply and add per score. 
+	 * @param score the raw scores
+	 * @param from first score (inclusive)
+	 * @param to last score (exclusive)
+	 * @param range {min, max} of all the scores
+	 * @param weight the weight
+	 * @param out receives the weighted scores; may be the score array
+	 * @param outOffset index in out of the score at from */
+	public static void weightedScore(double[] score, int from, int to, double[] range, 
+			double weight, double[] out, int outOffset)
+	{
+		double slope = scoreSlope(range, weight), intercept = scoreIntercept(range, weight);
+		for(int i = from; i < to; i++) out[outOffset + i - from] = intercept + slope * score[i];
+	}
+
+	/** Normalize and weight a raster of 32 bit little-endian floats (such as an ESRI .flt file) 
+	 *  that may be larger than the heap, in two passes over memory-mapped windows. <br>
+	 *  Cells holding the nodata value or NaN are left out of the range and written as nodata.
+	 * @param inFile the raw scores
+	 * @param outFile receives the weighted scores; it is created or replaced
+	 * @param weight the weight
+	 * @param nodata the NODATA_value of the raster, as in its .hdr file
+	 * @return the {min, max} range of the raw scores
+	 * @throws IOException */
+	public static double[] weightedScoreFile(String inFile, String outFile, double weight, float nodata) throws IOException
+	{
+		final long window = 1L << 26;
+		try(RandomAccessFile in = new RandomAccessFile(inFile, "r"); 
+				RandomAccessFile out = new RandomAccessFile(outFile, "rw"))
+		{
+			FileChannel inChannel = in.getChannel(), outChannel = out.getChannel();
+			long length = in.length() - in.length() % 4;
+			out.setLength(0);
+			out.setLength(length);
+
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+			for(long position = 0; position < length; position += window){
+				FloatBuffer values = inChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, length - position))
+						.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+				while(values.hasRemaining()){
+					float v = values.get();
+					if(v == nodata || Float.isNaN(v)) continue;
+					min = Math.min(min, v);
+					max = Math.max(max, v);
+				}
+			}
+			double[] range = new double[] {min, max};
+			double slope = scoreSlope(range, weight), intercept = scoreIntercept(range, weight);
+			for(long position = 0; position < length; position += window){
+				long size = Math.min(window, length - position);
+				FloatBuffer values = inChannel.map(FileChannel.MapMode.READ_ONLY, position, size)
+						.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+				FloatBuffer scores = outChannel.map(FileChannel.MapMode.READ_WRITE, position, size)
+						.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+				while(values.hasRemaining()){
+					float v = values.get();
+					scores.put(v == nodata || Float.isNaN(v) ? nodata : (float) (intercept + slope * v));
+				}
+			}
+			return range;
+		}
+	}
+
+	/** weightedScore((x - min) / (max - min), weight) = intercept + slope * x */
+	private static double scoreSlope(double[] range, double weight)
+	{
+		double span = range[1] - range[0];
+		return span > 0d ? weight / span : 0d;
+	}
+
+	private static double scoreIntercept(double[] range, double weight)
+	{
+		double span = range[1] - range[0];
+		/* Equal scores all normalize to 1, for a weighted score of 1. */
+		return span > 0d ? 1d - weight - weight * range[0] / span : 1d;
 	}
 	
 	
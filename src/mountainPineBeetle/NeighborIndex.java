@@ -0,0 +1,211 @@
+package mountainPineBeetle;
+
+import java.util.Arrays;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** A uniform grid hash over point coordinates that finds the points within a cutoff distance, 
+ *  for dispersal among irregularly spaced stands. <br><br>
+ *  
+ *  The grid cells are at least the cutoff wide, so the neighbours of a point are in its own 
+ *  cell and the 8 around it.  {@link #build(double[], double[], int)} sorts the points by cell 
+ *  with a counting sort into primitive arrays, in O(n), and reuses the arrays when it is called 
+ *  again with no more points, so the index is cheap to rebuild when the stands change. <br>
+ *  Queries do not change the index, so they may run on several threads once it is built.
+ * 
+ * @author michaelfrancenelson */
+public class NeighborIndex {
+
+	/** Number of receiving points a fork-join task scores without splitting further. */
+	public static final int POINTS_PER_TASK = 1024;
+
+	/** Receives each point found by a query. */
+	public interface NeighborVisitor {
+		/**
+		 * @param index the point's index in the arrays given to {@link NeighborIndex#build(double[], double[], int)}
+		 * @param distance its distance from the query location
+		 */
+		void visit(int index, double distance);
+	}
+
+	private final double cutoff;
+
+	private int n;
+	private double minX, minY, cellSize;
+	private int cellsX, cellsY;
+
+	/** Point coordinates and original indices, sorted by cell */
+	private double[] xs = new double[0], ys = new double[0];
+	private int[] order = new int[0];
+	/** Points in cell k are at sorted positions cellStart[k] to cellStart[k + 1] - 1 */
+	private int[] cellStart = new int[1];
+	private int[] cellOf = new int[0];
+
+	/** @param cutoff the largest distance a query searches */
+	public NeighborIndex(double cutoff)
+	{
+		if(!(cutoff > 0d)) throw new IllegalArgumentException("The cutoff distance must be positive");
+		this.cutoff = cutoff;
+	}
+
+	/** @return an index whose cutoff is the distance where 
+	 *  {@link MPBCalculations#exponentialDistanceScore(double, double, double)} falls below epsilon */
+	public static NeighborIndex forScore(double paramA, double paramB, double epsilon)
+	{
+		return new NeighborIndex(DispersalKernel.cutoffDistance(paramA, paramB, epsilon));
+	}
+
+	public double cutoff() { return cutoff; }
+
+	/** @return the number of indexed points */
+	public int size() { return n; }
+
+	/** Index the first n points of the coordinate arrays, replacing any earlier points.  
+	 *  The arrays are copied, so they may be changed afterwards. */
+	public void build(double[] x, double[] y, int n)
+	{
+		this.n = n;
+		if(xs.length < n){
+			xs = new double[n]; ys = new double[n];
+			order = new int[n]; cellOf = new int[n];
+		}
+		minX = Double.POSITIVE_INFINITY; minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < n; i++){
+			minX = Math.min(minX, x[i]); maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]); maxY = Math.max(maxY, y[i]);
+		}
+		if(n == 0){ minX = 0d; minY = 0d; maxX = 0d; maxY = 0d; }
+
+		/* Cells of the cutoff size, made larger if there would be many more cells than points. */
+		double width = maxX - minX, height = maxY - minY;
+		cellSize = Math.max(cutoff, Math.sqrt(width * height / Math.max(1, 2 * n)));
+		cellsX = (int) Math.min(Integer.MAX_VALUE / 4, (long) Math.floor(width / cellSize) + 1);
+		cellsY = (int) Math.min(Integer.MAX_VALUE / 4, (long) Math.floor(height / cellSize) + 1);
+		while((long) cellsX * cellsY > 4L * n + 16){
+			cellSize *= 2d;
+			cellsX = (int) Math.floor(width / cellSize) + 1;
+			cellsY = (int) Math.floor(height / cellSize) + 1;
+		}
+		int cells = cellsX * cellsY;
+		if(cellStart.length < cells + 1) cellStart = new int[cells + 1];
+		else Arrays.fill(cellStart, 0, cells + 1, 0);
+
+		/* Counting sort by cell. */
+		for(int i = 0; i < n; i++){
+			int cell = cellIndex(x[i], y[i]);
+			cellOf[i] = cell;
+			cellStart[cell + 1]++;
+		}
+		for(int k = 0; k < cells; k++) cellStart[k + 1] += cellStart[k];
+		for(int i = 0; i < n; i++){
+			int position = cellStart[cellOf[i]]++;
+			xs[position] = x[i]; ys[position] = y[i]; order[position] = i;
+		}
+		/* The fill pass moved each start to the next cell's start; shift back. */
+		for(int k = cells; k > 0; k--) cellStart[k] = cellStart[k - 1];
+		cellStart[0] = 0;
+	}
+
+	private int cellX(double x) { return Math.max(0, Math.min(cellsX - 1, (int) Math.floor((x - minX) / cellSize))); }
+
+	private int cellY(double y) { return Math.max(0, Math.min(cellsY - 1, (int) Math.floor((y - minY) / cellSize))); }
+
+	private int cellIndex(double x, double y) { return cellY(y) * cellsX + cellX(x); }
+
+	/** Visit every indexed point within the cutoff distance of a location, 
+	 *  in a fixed order that depends only on the indexed points. */
+	public void forEachNeighbor(double x, double y, NeighborVisitor visitor)
+	{
+		if(n == 0) return;
+		double cutoffSq = cutoff * cutoff;
+		int cx0 = cellX(x - cutoff), cx1 = cellX(x + cutoff);
+		int cy0 = cellY(y - cutoff), cy1 = cellY(y + cutoff);
+		for(int cy = cy0; cy <= cy1; cy++){
+			for(int cx = cx0; cx <= cx1; cx++){
+				int cell = cy * cellsX + cx;
+				for(int p = cellStart[cell], end = cellStart[cell + 1]; p < end; p++){
+					double dx = xs[p] - x, dy = ys[p] - y;
+					double dSq = dx * dx + dy * dy;
+					if(dSq <= cutoffSq) visitor.visit(order[p], Math.sqrt(dSq));
+				}
+			}
+		}
+	}
+
+	/** Write the indices of the points within the cutoff distance of a location into a buffer.
+	 * @return the number of neighbours found; if it is more than buffer.length, only the first buffer.length were written */
+	public int neighbors(double x, double y, int[] buffer)
+	{
+		int[] count = new int[1];
+		forEachNeighbor(x, y, (index, distance) -> {
+			if(count[0] < buffer.length) buffer[count[0]] = index;
+			count[0]++;
+		});
+		return count[0];
+	}
+
+	/** Score every indexed point as a destination for dispersing beetles: <br>
+	 *  out[i] = &Sigma; source[j] &times; A &times; e<sup>-B &times; d(i, j)</sup> over the points j 
+	 *  within the cutoff of point i, including i itself. <br>
+	 *  The cost is the number of points times the average number of neighbours.
+	 * @param source the beetles leaving each point, by original index
+	 * @param paramA dispersal parameter A
+	 * @param paramB dispersal parameter B
+	 * @param out receives the score of each point, by original index
+	 * @param pool the pool to run on */
+	public void dispersalScores(double[] source, double paramA, double paramB, double[] out, ForkJoinPool pool)
+	{
+		pool.invoke(new ScoreTask(source, paramA, paramB, out, 0, n));
+	}
+
+	/** Score the points at sorted positions from (inclusive) to to (exclusive). */
+	void scoreRange(double[] source, double paramA, double paramB, double[] out, int from, int to)
+	{
+		double cutoffSq = cutoff * cutoff;
+		for(int q = from; q < to; q++){
+			double x = xs[q], y = ys[q], sum = 0d;
+			int cx0 = cellX(x - cutoff), cx1 = cellX(x + cutoff);
+			int cy0 = cellY(y - cutoff), cy1 = cellY(y + cutoff);
+			for(int cy = cy0; cy <= cy1; cy++){
+				for(int cx = cx0; cx <= cx1; cx++){
+					int cell = cy * cellsX + cx;
+					for(int p = cellStart[cell], end = cellStart[cell + 1]; p < end; p++){
+						double dx = xs[p] - x, dy = ys[p] - y;
+						double dSq = dx * dx + dy * dy;
+						if(dSq <= cutoffSq) sum += source[order[p]] * 
+								MPBCalculations.exponentialDistanceScore(Math.sqrt(dSq), paramA, paramB);
+					}
+				}
+			}
+			out[order[q]] = sum;
+		}
+	}
+
+	private class ScoreTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final double[] source, out;
+		final double paramA, paramB;
+		final int from, to;
+
+		ScoreTask(double[] source, double paramA, double paramB, double[] out, int from, int to)
+		{
+			this.source = source; this.paramA = paramA; this.paramB = paramB;
+			this.out = out; this.from = from; this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= POINTS_PER_TASK){
+				scoreRange(source, paramA, paramB, out, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ScoreTask(source, paramA, paramB, out, from, mid),
+					new ScoreTask(source, paramA, paramB, out, mid, to));
+		}
+	}
+}
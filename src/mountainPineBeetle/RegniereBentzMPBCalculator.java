@@ -24,13 +24,13 @@ public class RegniereBentzMPBCalculator {
 	}
 
 	public static double sCPDistributionState1(double supercoolingTemperature)
-	{ return logistic(supercoolingTemperature, ModelParameters.meanSCPAlpha1, ModelParameters.spreadSCPBeta1); }
+	{ return sCPDistributionState1(ModelParameters.current(), supercoolingTemperature); }
 
 	public static double sCPDistributionState2(double supercoolingTemperature)
-	{ return logistic(supercoolingTemperature, ModelParameters.meanSCPAlpha2, ModelParameters.spreadSCPBeta2); }
+	{ return sCPDistributionState2(ModelParameters.current(), supercoolingTemperature); }
 
 	public static double sCPDistributionState3(double supercoolingTemperature)
-	{ return logistic(supercoolingTemperature, ModelParameters.meanSCPAlpha3, ModelParameters.spreadSCPBeta3); }
+	{ return sCPDistributionState3(ModelParameters.current(), supercoolingTemperature); }
 
 
 	/** Equation 2 */
@@ -44,8 +44,7 @@ public class RegniereBentzMPBCalculator {
 			double dailyPhloemTempMeanTau, 
 			double tempOptimumGainTG)
 	{ 
-		return dailyPhloemTempRangeR * ModelParameters.maxGainRateRhoG * 
-			logistic(dailyPhloemTempMeanTau, tempOptimumGainTG, ModelParameters.spreadGainSigmaG);
+		return gain(ModelParameters.current(), dailyPhloemTempRangeR, dailyPhloemTempMeanTau, tempOptimumGainTG);
 	}
 
 
@@ -55,22 +54,21 @@ public class RegniereBentzMPBCalculator {
 			double dailyPhloemTempMeanTau, 
 			double tempOptimumLossTL)
 	{
-		return dailyPhloemTempRangeR * ModelParameters.maxLossRateRhoL * 
-				logistic(dailyPhloemTempMeanTau, tempOptimumLossTL, ModelParameters.spreadLossSigmaL);	
+		return loss(ModelParameters.current(), dailyPhloemTempRangeR, dailyPhloemTempMeanTau, tempOptimumLossTL);
 	}
 
 
 	/** Equation 5 */
 	public static double supercoolingTempGain(double coldHardeningState)
 	{
-		return ModelParameters.optimalGainTempMuG + ModelParameters.optimalGainTempSlopeKappaG * coldHardeningState;
+		return supercoolingTempGain(ModelParameters.current(), coldHardeningState);
 	}
 
 	/** Equation 6 */
 	public static double supercoolingTempLoss(double coldHardeningState)
-	{ 
-		return ModelParameters.optimalLossTempMuL + ModelParameters.optimalLossSlopeKappaL * coldHardeningState;
-		}
+	{
+		return supercoolingTempLoss(ModelParameters.current(), coldHardeningState);
+	}
 
 
 	/** Equation 7 */
@@ -93,12 +91,7 @@ public class RegniereBentzMPBCalculator {
 	/** Equation 8 */
 	public static double medianLethalTemperature(double coldHardeningState)
 	{
-		double p1 = proportion1(coldHardeningState);
-		double p3 = proportion3(coldHardeningState);
-		double p2 = proportion2(p1, p3);
-
-		return ModelParameters.meanSCPAlpha1 * p1 + ModelParameters.meanSCPAlpha2 * p2 + 
-				ModelParameters.meanSCPAlpha3 * p3;
+		return medianLethalTemperature(ModelParameters.current(), coldHardeningState);
 	}
 
 	/** Equation 9a: Proportion in summer state. 
@@ -107,14 +100,7 @@ public class RegniereBentzMPBCalculator {
 	 *  	The denominator for p1 should be 0.5 - lambda0
 	 *  	The denominator for p3 should be lambda1 - 0.5  */
 	public static double proportion1(double coldHardeningState){
-		return 
-				Math.max(
-						0, 
-						Math.min(
-								1,
-								(0.5 - coldHardeningState) / (0.5 - ModelParameters.thresholdLambda0)
-								)
-						);
+		return proportion1(ModelParameters.current(), coldHardeningState);
 	}
 
 	/** Equation 9b: proportion in winter state. 
@@ -123,14 +109,7 @@ public class RegniereBentzMPBCalculator {
 	 *  	The denominator for p1 should be 0.5 - lambda0
 	 *  	The denominator for p3 should be lambda1 - 0.5 */
 	public static double proportion3(double coldHardeningState){
-		return 
-				Math.max(
-						0,
-						Math.min(
-								1, 
-								(coldHardeningState - 0.5) / (ModelParameters.thresholdLambda1 - 0.5)
-								)
-						);
+		return proportion3(ModelParameters.current(), coldHardeningState);
 	}
 
 	/** Equation 9c: proportion in fall/spring state. */
@@ -139,19 +118,13 @@ public class RegniereBentzMPBCalculator {
 	/** Equation 9c: proportion in fall/spring state. */
 	public static double proportion2(double coldHardeningState)
 	{
-		return 1d - 
-				proportion1(coldHardeningState) -
-				proportion3(coldHardeningState);
+		return proportion2(ModelParameters.current(), coldHardeningState);
 	}
 
 	/** Equation 9 combined */
 	public static double[] allProportions(double coldHardeningState)
 	{
-		//			, double thresholdLambda0, double thresholdLambda1){
-		double p1 = proportion1(coldHardeningState);
-		double p3 = proportion3(coldHardeningState);
-		double p2 = proportion2(p1, p3);
-		return new double[] {p1, p2, p3};
+		return allProportions(ModelParameters.current(), coldHardeningState);
 	}
 
 	/** Equation 10 */
@@ -160,25 +133,25 @@ public class RegniereBentzMPBCalculator {
 			double dailyMinimumTemperature,
 			double[] proportions)
 	{
-
-		double[] alpha = new double[] {ModelParameters.meanSCPAlpha1, ModelParameters.meanSCPAlpha2, ModelParameters.meanSCPAlpha3};
-		double[] beta = new double[] {ModelParameters.spreadSCPBeta1, ModelParameters.spreadSCPBeta2, ModelParameters.spreadSCPBeta3};
 		/* If there is missing data, the minimum temperature will be a super low number.
 		 * In that case, don't calculate survival for today, just return yesterday's value */
-		if(dailyMinimumTemperature < -300){
-			return previousProb;
-		} else
-		{
-			if(alpha.length != 3 | beta.length != 3 | proportions.length != 3){
-				throw new IllegalArgumentException("");
-			}
-			double newProb = 0d;
+		return probSurvival(ModelParameters.current(), previousProb, dailyMinimumTemperature, proportions);
+	}
 
-			for(int i = 0; i < 3; i++){
-				newProb += proportions[i] / (1d + Math.exp(-(dailyMinimumTemperature - alpha[i]) / beta[i]));
-			}
-			return Math.min(previousProb, newProb);
-		}
+	/** Equation 10, with the state proportions (equation 9) given as scalars. <br>
+	 *  Gives the same result as {@link #probSurvival(double, double, double[])}. 
+	 * @param previousProb yesterday's survival probability
+	 * @param dailyMinimumTemperature today's minimum temperature
+	 * @param p1 proportion in summer state
+	 * @param p2 proportion in fall/spring state
+	 * @param p3 proportion in winter state
+	 * @return today's survival probability */
+	public static double probSurvival(
+			double previousProb,
+			double dailyMinimumTemperature,
+			double p1, double p2, double p3)
+	{
+		return probSurvival(ModelParameters.current(), previousProb, dailyMinimumTemperature, p1, p2, p3);
 	}
 
 	/** Equation 11: Average phloem maximum temperature (north/south sides) from
@@ -216,46 +189,475 @@ public class RegniereBentzMPBCalculator {
 	 */
 	public static double[] updateState(double[] temps, LocalDate today, double[] state)
 	{
-		
-		/* state[0] = cold hardening
-		 * state[1] = gain
-		 * state[2] = loss
-		 * state[3] = survival
-		 */
-		/* If there is missing data for today, skip the update. */
-		if(!(temps[0] <= -999 || temps[1] <= -999)){
-	
+		return updateState(temps, SeasonCalendar.isGainOnly(today), state);
+	}
+
+	/**  Update the beetle survival score given today's min and max temperature,
+	 *   with the gain-only switch resolved by the caller, for example from a {@link SeasonCalendar}. <br>
+	 *   See {@link #updateState(double[], LocalDate, double[])}.
+	 * 
+	 * @param temps today's temperatures [0] = low, [1] = high
+	 * @param gainOnly true from August onward, when cold hardening can only be gained
+	 * @param state [0] = cold hardening, [1] = gain, [2] = loss, [3] = survival
+	 * @return the updated state array
+	 */
+	public static double[] updateState(double[] temps, boolean gainOnly, double[] state)
+	{
+		return updateState(ModelParameters.current(), temps, gainOnly, state);
+	}
+
+	/** Update the beetle survival state of many cells by one day. <br>
+	 *  This is the batched form of {@link #updateState(double[], LocalDate, double[])}:
+	 *  the state of cell i is held in coldHardening[i], gain[i], loss[i] and survival[i],
+	 *  and today's temperatures are in tMin[i] and tMax[i]. <br>
+	 *  Cells with missing temperature data (-999) are skipped and keep yesterday's state. <br><br>
+	 *  
+	 *  The state arrays are updated in place.
+	 * 
+	 * @param tMin today's minimum temperature for each cell
+	 * @param tMax today's maximum temperature for each cell
+	 * @param today today's date
+	 * @param coldHardening cold hardening for each cell
+	 * @param gain gain for each cell
+	 * @param loss loss for each cell
+	 * @param survival survival for each cell
+	 */
+	public static void updateStates(
+			double[] tMin, double[] tMax, LocalDate today,
+			double[] coldHardening, double[] gain, double[] loss, double[] survival)
+	{
+		updateStates(tMin, tMax, SeasonCalendar.isGainOnly(today), 
+				coldHardening, gain, loss, survival, 0, tMin.length);
+	}
+
+	/** Update the beetle survival state of many cells by one day, 
+	 *  taking the gain-only switch for the day from a precomputed calendar. <br>
+	 *  See {@link #updateStates(double[], double[], LocalDate, double[], double[], double[], double[])}.
+	 * @param calendar the run's calendar
+	 * @param day index of today in the calendar */
+	public static void updateStates(
+			SeasonCalendar calendar, int day, double[] tMin, double[] tMax,
+			double[] coldHardening, double[] gain, double[] loss, double[] survival)
+	{
+		updateStates(tMin, tMax, calendar.gainOnly(day), 
+				coldHardening, gain, loss, survival, 0, tMin.length);
+	}
 
-			boolean gainOnly = false;
-			if(today.getMonthValue() >= 8) {gainOnly = true;}
-			
-			/* Calculate today's phloem temperatures: */
-			double phloemMaxTemp = RegniereBentzMPBCalculator.phloemTempTauMax(temps[0], temps[1]);
-			double phloemMinTemp = RegniereBentzMPBCalculator.phloemTempTauMin(temps[0]);
-			
-			/* Update the gain and loss: */
-			double supercoolingTempGain = RegniereBentzMPBCalculator.supercoolingTempGain(state[0]);
-			double supercoolingTempLoss = RegniereBentzMPBCalculator.supercoolingTempLoss(state[0]);
-			
-			state[1] = RegniereBentzMPBCalculator.gain(
-					phloemMaxTemp - phloemMinTemp, 
-					0.5 * (phloemMaxTemp + phloemMinTemp), 
-					supercoolingTempGain);
-			state[2] = RegniereBentzMPBCalculator.loss(
-					phloemMaxTemp - phloemMinTemp, 
-					0.5 * (phloemMaxTemp + phloemMinTemp), 
-					supercoolingTempLoss);
-			
-			state[0] = RegniereBentzMPBCalculator.currentColdHardening( state[0], state[1], state[2], gainOnly);
-			
-			state[3] = 	RegniereBentzMPBCalculator.probSurvival(
-				state[3], temps[0], RegniereBentzMPBCalculator.allProportions(state[0]));
-			return state;
+	/** Update the beetle survival state of cells from (inclusive) to to (exclusive) by one day. <br>
+	 *  See {@link #updateStates(double[], double[], LocalDate, double[], double[], double[], double[])}. <br>
+	 *  The update creates no objects,
+	 *  so disjoint ranges of the same arrays may be updated from different threads.
+	 * 
+	 * @param tMin today's minimum temperature for each cell
+	 * @param tMax today's maximum temperature for each cell
+	 * @param gainOnly true from August onward, when cold hardening can only be gained
+	 * @param coldHardening cold hardening for each cell
+	 * @param gain gain for each cell
+	 * @param loss loss for each cell
+	 * @param survival survival for each cell
+	 * @param from index of the first cell to update
+	 * @param to index after the last cell to update
+	 */
+	public static void updateStates(
+			double[] tMin, double[] tMax, boolean gainOnly,
+			double[] coldHardening, double[] gain, double[] loss, double[] survival,
+			int from, int to)
+	{
+		updateStates(ModelParameters.current(), tMin, tMax, gainOnly, 
+				coldHardening, gain, loss, survival, from, to);
+	}
+
+
+	//================================================================================
+	//
+	// The following methods are the equations above with the coefficients taken
+	// from an immutable ParameterSet.  The methods above pass them a snapshot of
+	// the static ModelParameters, so each equation is written once.
+	// They are safe to call from many threads with different parameter sets.
+	//
+	// ================================================================================
+
+	public static double sCPDistributionState1(ParameterSet params, double supercoolingTemperature)
+	{ return logistic(supercoolingTemperature, params.meanSCPAlpha1, params.spreadSCPBeta1); }
+
+	public static double sCPDistributionState2(ParameterSet params, double supercoolingTemperature)
+	{ return logistic(supercoolingTemperature, params.meanSCPAlpha2, params.spreadSCPBeta2); }
+
+	public static double sCPDistributionState3(ParameterSet params, double supercoolingTemperature)
+	{ return logistic(supercoolingTemperature, params.meanSCPAlpha3, params.spreadSCPBeta3); }
+
+	/** Equation 3 */
+	public static double gain(
+			ParameterSet params,
+			double dailyPhloemTempRangeR,
+			double dailyPhloemTempMeanTau, 
+			double tempOptimumGainTG)
+	{ 
+		return dailyPhloemTempRangeR * params.maxGainRateRhoG * 
+			logistic(dailyPhloemTempMeanTau, tempOptimumGainTG, params.spreadGainSigmaG);
+	}
+
+	/** Equation 4 */
+	public static double loss(
+			ParameterSet params,
+			double dailyPhloemTempRangeR,
+			double dailyPhloemTempMeanTau, 
+			double tempOptimumLossTL)
+	{
+		return dailyPhloemTempRangeR * params.maxLossRateRhoL * 
+				logistic(dailyPhloemTempMeanTau, tempOptimumLossTL, params.spreadLossSigmaL);	
+	}
+
+	/** Equation 5 */
+	public static double supercoolingTempGain(ParameterSet params, double coldHardeningState)
+	{ return params.optimalGainTempMuG + params.optimalGainTempSlopeKappaG * coldHardeningState; }
+
+	/** Equation 6 */
+	public static double supercoolingTempLoss(ParameterSet params, double coldHardeningState)
+	{ return params.optimalLossTempMuL + params.optimalLossSlopeKappaL * coldHardeningState; }
+
+	/** Equation 8 */
+	public static double medianLethalTemperature(ParameterSet params, double coldHardeningState)
+	{
+		double p1 = proportion1(params, coldHardeningState);
+		double p3 = proportion3(params, coldHardeningState);
+		double p2 = proportion2(p1, p3);
+
+		return params.meanSCPAlpha1 * p1 + params.meanSCPAlpha2 * p2 + 
+				params.meanSCPAlpha3 * p3;
+	}
+
+	/** Equation 9a: Proportion in summer state. See {@link #proportion1(double)} */
+	public static double proportion1(ParameterSet params, double coldHardeningState)
+	{ return Math.max(0, Math.min(1, (0.5 - coldHardeningState) / (0.5 - params.thresholdLambda0))); }
+
+	/** Equation 9b: proportion in winter state. See {@link #proportion3(double)} */
+	public static double proportion3(ParameterSet params, double coldHardeningState)
+	{ return Math.max(0, Math.min(1, (coldHardeningState - 0.5) / (params.thresholdLambda1 - 0.5))); }
+
+	/** Equation 9c: proportion in fall/spring state. */
+	public static double proportion2(ParameterSet params, double coldHardeningState)
+	{ return 1d - proportion1(params, coldHardeningState) - proportion3(params, coldHardeningState); }
+
+	/** Equation 9 combined */
+	public static double[] allProportions(ParameterSet params, double coldHardeningState)
+	{
+		double p1 = proportion1(params, coldHardeningState);
+		double p3 = proportion3(params, coldHardeningState);
+		return new double[] {p1, proportion2(p1, p3), p3};
+	}
+
+	/** Equation 10 */
+	public static double probSurvival(
+			ParameterSet params,
+			double previousProb,
+			double dailyMinimumTemperature,
+			double[] proportions)
+	{
+		if(dailyMinimumTemperature < -300) return previousProb;
+		if(proportions.length != 3){
+			throw new IllegalArgumentException("Expected 3 state proportions, got " + proportions.length);
 		}
+		return probSurvival(params, previousProb, dailyMinimumTemperature, proportions[0], proportions[1], proportions[2]);
+	}
+
+	/** Equation 10, with the state proportions (equation 9) given as scalars. */
+	public static double probSurvival(
+			ParameterSet params,
+			double previousProb,
+			double dailyMinimumTemperature,
+			double p1, double p2, double p3)
+	{
+		/* Missing data: keep yesterday's value. */
+		if(dailyMinimumTemperature < -300) return previousProb;
+
+		double newProb = 0d;
+		newProb += p1 / (1d + Math.exp(-(dailyMinimumTemperature - params.meanSCPAlpha1) / params.spreadSCPBeta1));
+		newProb += p2 / (1d + Math.exp(-(dailyMinimumTemperature - params.meanSCPAlpha2) / params.spreadSCPBeta2));
+		newProb += p3 / (1d + Math.exp(-(dailyMinimumTemperature - params.meanSCPAlpha3) / params.spreadSCPBeta3));
+		return Math.min(previousProb, newProb);
+	}
+
+	/** Update the beetle survival score given today's min and max temperature.<br>
+	 *  See {@link #updateState(double[], LocalDate, double[])}.
+	 * @param params model coefficients
+	 * @param temps today's temperatures [0] = low, [1] = high
+	 * @param today today's date
+	 * @param state [0] = cold hardening, [1] = gain, [2] = loss, [3] = survival
+	 * @return the updated state array */
+	public static double[] updateState(ParameterSet params, double[] temps, LocalDate today, double[] state)
+	{
+		return updateState(params, temps, SeasonCalendar.isGainOnly(today), state);
+	}
+
+	/** Update the beetle survival score given today's min and max temperature.<br>
+	 *  See {@link #updateState(double[], boolean, double[])}. */
+	public static double[] updateState(ParameterSet params, double[] temps, boolean gainOnly, double[] state)
+	{
+		updateCell(params, false, temps[0], temps[1], gainOnly, state, 0, state, 1, state, 2, state, 3);
 		return state;
 	}
-	
 
+	/** Update the beetle survival state of many cells by one day.<br>
+	 *  See {@link #updateStates(double[], double[], LocalDate, double[], double[], double[], double[])}. */
+	public static void updateStates(
+			ParameterSet params,
+			double[] tMin, double[] tMax, LocalDate today,
+			double[] coldHardening, double[] gain, double[] loss, double[] survival)
+	{
+		updateStates(params, tMin, tMax, SeasonCalendar.isGainOnly(today), 
+				coldHardening, gain, loss, survival, 0, tMin.length);
+	}
+
+	/** Update the beetle survival state of many cells by one day, 
+	 *  taking the gain-only switch for the day from a precomputed calendar.<br>
+	 *  See {@link #updateStates(SeasonCalendar, int, double[], double[], double[], double[], double[], double[])}. */
+	public static void updateStates(
+			ParameterSet params,
+			SeasonCalendar calendar, int day, double[] tMin, double[] tMax,
+			double[] coldHardening, double[] gain, double[] loss, double[] survival)
+	{
+		updateStates(params, tMin, tMax, calendar.gainOnly(day), 
+				coldHardening, gain, loss, survival, 0, tMin.length);
+	}
+
+	/** Update the beetle survival state of cells from (inclusive) to to (exclusive) by one day.<br>
+	 *  See {@link #updateStates(double[], double[], boolean, double[], double[], double[], double[], int, int)}. */
+	public static void updateStates(
+			ParameterSet params,
+			double[] tMin, double[] tMax, boolean gainOnly,
+			double[] coldHardening, double[] gain, double[] loss, double[] survival,
+			int from, int to)
+	{
+		for(int i = from; i < to; i++)
+			updateCell(params, false, tMin[i], tMax[i], gainOnly, coldHardening, i, gain, i, loss, i, survival, i);
+	}
+
+	/** Approximate form of 
+	 *  {@link #updateStates(ParameterSet, double[], double[], boolean, double[], double[], double[], double[], int, int)}
+	 *  that evaluates the logistic functions of equations 3, 4 and 10 with {@link LogisticLookupTable}. <br><br>
+	 *  
+	 *  For each day, gain and loss are within LogisticLookupTable.DENSITY_MAX_ERROR &times; range &times; rho / sigma 
+	 *  of the exact values and the survival sum is within LogisticLookupTable.CDF_MAX_ERROR. 
+	 *  The errors carry over from day to day through cold hardening, so compare a full season
+	 *  against the exact update before relying on it for a new parameter set. */
+	public static void updateStatesTabulated(
+			ParameterSet params,
+			double[] tMin, double[] tMax, boolean gainOnly,
+			double[] coldHardening, double[] gain, double[] loss, double[] survival,
+			int from, int to)
+	{
+		for(int i = from; i < to; i++)
+			updateCell(params, true, tMin[i], tMax[i], gainOnly, coldHardening, i, gain, i, loss, i, survival, i);
+	}
+
+	/** One day of the model for one cell: the update behind all of the updateState and 
+	 *  updateStates methods and {@link RegniereBentzParameterSweep}. <br>
+	 *  Each state variable is read from and written to its own array and index, so the state may be 
+	 *  one array of four values or one entry of four parallel arrays.  
+	 *  Days with missing temperature data (-999) are skipped and the state is left unchanged.
+	 * 
+	 * @param params model coefficients
+	 * @param tabulated evaluate the logistic functions of equations 3, 4 and 10 with {@link LogisticLookupTable}
+	 * @param low today's minimum temperature
+	 * @param high today's maximum temperature
+	 * @param gainOnly true from August onward, when cold hardening can only be gained
+	 * @return false if today's temperatures were missing */
+	static boolean updateCell(ParameterSet params, boolean tabulated, double low, double high, boolean gainOnly,
+			double[] coldHardening, int ci, double[] gain, int gi, double[] loss, int li, double[] survival, int si)
+	{
+		if(low <= -999 || high <= -999) return false;
+
+		double phloemMaxTemp = phloemTempTauMax(low, high);
+		double phloemMinTemp = phloemTempTauMin(low);
+		double range = phloemMaxTemp - phloemMinTemp;
+		double mean = 0.5 * (phloemMaxTemp + phloemMinTemp);
+
+		double c = coldHardening[ci];
+		double g, l;
+		if(tabulated){
+			g = range * params.maxGainRateRhoG * 
+					LogisticLookupTable.logistic(mean, supercoolingTempGain(params, c), params.spreadGainSigmaG);
+			l = range * params.maxLossRateRhoL * 
+					LogisticLookupTable.logistic(mean, supercoolingTempLoss(params, c), params.spreadLossSigmaL);
+		} else {
+			g = gain(params, range, mean, supercoolingTempGain(params, c));
+			l = loss(params, range, mean, supercoolingTempLoss(params, c));
+		}
+		c = currentColdHardening(c, g, l, gainOnly);
+
+		gain[gi] = g;
+		loss[li] = l;
+		coldHardening[ci] = c;
+
+		/* Equation 10; a very low minimum also means missing data. */
+		if(low < -300) return true;
+		double p1 = proportion1(params, c);
+		double p3 = proportion3(params, c);
+		double p2 = proportion2(p1, p3);
+		if(tabulated){
+			/* 1 / (1 + e^-z) from the table: */
+			double newProb = 
+					p1 * LogisticLookupTable.cdf((low - params.meanSCPAlpha1) / params.spreadSCPBeta1) +
+					p2 * LogisticLookupTable.cdf((low - params.meanSCPAlpha2) / params.spreadSCPBeta2) +
+					p3 * LogisticLookupTable.cdf((low - params.meanSCPAlpha3) / params.spreadSCPBeta3);
+			survival[si] = Math.min(survival[si], newProb);
+		} else {
+			survival[si] = probSurvival(params, survival[si], low, p1, p2, p3);
+		}
+		return true;
+	}
+
+
+
+	/** An immutable set of the model coefficients. <br>
+	 *  Unlike the static fields of {@link ModelParameters}, a ParameterSet 
+	 *  can be shared freely between threads, and runs with different 
+	 *  parameter sets can share one JVM.  */
+	public static final class ParameterSet {
+
+		/** Parameter names as they appear in parameter csv files, 
+		 *  in the order used by {@link #ParameterSet(double[])} and {@link #toArray()}. */
+		public static final String[] NAMES = new String[] {
+				"alpha1", "beta1", "alpha2", "beta2", "alpha3", "beta3",
+				"rhoG", "sigmaG", "muG", "kappaG",
+				"rhoL", "sigmaL", "muL", "kappaL",
+				"lambda0", "lambda1" };
+
+		/** The default coefficients: the initial values of the {@link ModelParameters} fields. */
+		public static final ParameterSet DEFAULT = new ParameterSet(ModelParameters.INITIAL_VALUES);
+
+		/** Mean SCP in State 1  */
+		public final double meanSCPAlpha1;
+		/** Spread of SCP in State 1  */
+		public final double spreadSCPBeta1;
+		/** Mean SCP in State 2  */
+		public final double meanSCPAlpha2;
+		/** Spread of SCP in State 2  */
+		public final double spreadSCPBeta2;
+		/** Mean SCP in State 3  */
+		public final double meanSCPAlpha3;
+		/** Spread of SCP in State 3  */
+		public final double spreadSCPBeta3;
+		/** Maximum gain rate  */
+		public final double maxGainRateRhoG;
+		/** Spread of the gain temperature response  */
+		public final double spreadGainSigmaG;
+		/** Optimum gain temperature at C = 0  */
+		public final double optimalGainTempMuG;
+		/** Optimal gain temperature vs. C  */
+		public final double optimalGainTempSlopeKappaG;
+		/** Maximum loss rate  */
+		public final double maxLossRateRhoL;
+		/** Spread of the loss temperature response  */
+		public final double spreadLossSigmaL;
+		/** Optimum loss temperature at C = 0 kL  */
+		public final double optimalLossTempMuL;
+		/** Optimal loss temperature vs C  */
+		public final double optimalLossSlopeKappaL;
+		/** Threshold C for State 1-2 transition  */
+		public final double thresholdLambda0;
+		/** Threshold C for State 2-3 transition  */
+		public final double thresholdLambda1;
+
+		/** @param values the 16 coefficients, in the order of {@link #NAMES} */
+		public ParameterSet(double[] values)
+		{
+			if(values.length != NAMES.length){
+				throw new IllegalArgumentException("Expected " + NAMES.length + " parameter values, got " + values.length);
+			}
+			meanSCPAlpha1 = values[0];
+			spreadSCPBeta1 = values[1];
+			meanSCPAlpha2 = values[2];
+			spreadSCPBeta2 = values[3];
+			meanSCPAlpha3 = values[4];
+			spreadSCPBeta3 = values[5];
+			maxGainRateRhoG = values[6];
+			spreadGainSigmaG = values[7];
+			optimalGainTempMuG = values[8];
+			optimalGainTempSlopeKappaG = values[9];
+			maxLossRateRhoL = values[10];
+			spreadLossSigmaL = values[11];
+			optimalLossTempMuL = values[12];
+			optimalLossSlopeKappaL = values[13];
+			thresholdLambda0 = values[14];
+			thresholdLambda1 = values[15];
+		}
+
+		/** @return a new array of the coefficients, in the order of {@link #NAMES} */
+		public double[] toArray()
+		{
+			return new double[] {
+					meanSCPAlpha1, spreadSCPBeta1, meanSCPAlpha2, spreadSCPBeta2, meanSCPAlpha3, spreadSCPBeta3,
+					maxGainRateRhoG, spreadGainSigmaG, optimalGainTempMuG, optimalGainTempSlopeKappaG,
+					maxLossRateRhoL, spreadLossSigmaL, optimalLossTempMuL, optimalLossSlopeKappaL,
+					thresholdLambda0, thresholdLambda1 };
+		}
+
+		/** @param name one of {@link #NAMES}
+		 *  @return the index of the parameter in {@link #toArray()} */
+		public static int indexOf(String name)
+		{
+			for(int i = 0; i < NAMES.length; i++) if(NAMES[i].equals(name)) return i;
+			throw new IllegalArgumentException("Unknown parameter name: " + name);
+		}
+
+		/** @return a copy of this parameter set with one coefficient changed. */
+		public ParameterSet with(String name, double value)
+		{
+			double[] values = toArray();
+			values[indexOf(name)] = value;
+			return new ParameterSet(values);
+		}
+
+		/** Read a parameter set from a csv file with a header line 
+		 *  followed by one name,value line per parameter.
+		 * @param fileName
+		 * @return a new parameter set
+		 * @throws IOException */
+		public static ParameterSet readFromCSV(String fileName) throws IOException
+		{
+			BufferedReader reader = new BufferedReader(new FileReader(fileName));
+
+			ArrayList<String> paramNames = new ArrayList<String>();
+			ArrayList<Double> paramVals = new ArrayList<Double>();
+
+			try {
+				/* The first line of the file is the column headings, we can ignore it. */
+				String line = reader.readLine();
+				String[] entries;
+
+				while((line = reader.readLine()) != null){
+					entries = line.split(",");
+					paramNames.add(entries[0].trim());
+					paramVals.add(Double.parseDouble(entries[1]));
+				}
+			} finally { reader.close(); }
+
+			double[] values = new double[NAMES.length];
+			for(int i = 0; i < NAMES.length; i++){
+				int index = paramNames.indexOf(NAMES[i]);
+				if(index < 0) throw new IOException("Parameter " + NAMES[i] + " is missing from " + fileName);
+				values[i] = paramVals.get(index);
+			}
+			return new ParameterSet(values);
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder("ParameterSet{");
+			double[] values = toArray();
+			for(int i = 0; i < NAMES.length; i++){
+				if(i > 0) sb.append(", ");
+				sb.append(NAMES[i]).append('=').append(values[i]);
+			}
+			return sb.append('}').toString();
+		}
+	}
+
+	/** The coefficients used by the equations that do not take a {@link ParameterSet}. <br>
+	 *  These are global: use {@link ParameterSet} to run several calibrations in one JVM. */
 	public static class ModelParameters {
 
 		/** Mean SCP in State 1  */
@@ -299,48 +701,79 @@ public class RegniereBentzMPBCalculator {
 		public static double thresholdLambda1 = 0.764;
 
 
+		/** The initial values of the fields above, in the order of {@link ParameterSet#NAMES}, 
+		 *  taken before any of them can be changed: the source of {@link ParameterSet#DEFAULT}. */
+		static final double[] INITIAL_VALUES = values();
+
+		/** The last snapshot returned by {@link #current()} */
+		private static volatile ParameterSet snapshot;
+
 		//		public static ModelParameters(String fileName) throws IOException{
 		//			readFromCSV(fileName);
 		//		}
 
+		/** Read the coefficients from a csv file and assign them to the static fields. 
+		 *  See {@link ParameterSet#readFromCSV(String)}. */
 		public static void readFromCSV(String fileName) throws IOException{
+			set(ParameterSet.readFromCSV(fileName));
+		}
 
-			BufferedReader reader;
-			reader = new BufferedReader(new FileReader(fileName));
-
-			ArrayList<String> paramNames = new ArrayList<String>();
-			ArrayList<Double> paramVals = new ArrayList<Double>();
+		/** @return an immutable snapshot of the current static coefficients. */
+		public static ParameterSet toParameterSet() { return new ParameterSet(values()); }
 
-			/* The first line of the file is the column headings, we can ignor it. */
-			String line = reader.readLine();
-			String[] entries = line.split(",");
+		/** @return a snapshot of the current static coefficients, reused until one of them changes, 
+		 *  so the equations that read the static coefficients create no objects. */
+		public static ParameterSet current()
+		{
+			ParameterSet params = snapshot;
+			if(params == null || !matches(params)) snapshot = params = toParameterSet();
+			return params;
+		}
 
-			while((line = reader.readLine()) != null){
-				entries = line.split(",");
-				paramNames.add(entries[0]);
-				paramVals.add(Double.parseDouble(entries[1]));
-			}
+		/** @return the current static coefficients, in the order of {@link ParameterSet#NAMES} */
+		static double[] values()
+		{
+			return new double[] {
+					meanSCPAlpha1, spreadSCPBeta1, meanSCPAlpha2, spreadSCPBeta2, meanSCPAlpha3, spreadSCPBeta3,
+					maxGainRateRhoG, spreadGainSigmaG, optimalGainTempMuG, optimalGainTempSlopeKappaG,
+					maxLossRateRhoL, spreadLossSigmaL, optimalLossTempMuL, optimalLossSlopeKappaL,
+					thresholdLambda0, thresholdLambda1 };
+		}
 
-			reader.close();
-
-			/* Assign the values. */
-			meanSCPAlpha1 = paramVals.get(paramNames.indexOf("alpha1"));
-			spreadSCPBeta1  = paramVals.get(paramNames.indexOf("beta1"));
-			meanSCPAlpha2 = paramVals.get(paramNames.indexOf("alpha2"));
-			spreadSCPBeta2  = paramVals.get(paramNames.indexOf("beta2"));
-			meanSCPAlpha3 = paramVals.get(paramNames.indexOf("alpha3"));
-			spreadSCPBeta3 = paramVals.get(paramNames.indexOf("beta3"));
-			maxGainRateRhoG = paramVals.get(paramNames.indexOf("rhoG"));
-			spreadGainSigmaG = paramVals.get(paramNames.indexOf("sigmaG"));
-			optimalGainTempMuG = paramVals.get(paramNames.indexOf("muG"));
-			optimalGainTempSlopeKappaG = paramVals.get(paramNames.indexOf("kappaG"));
-			maxLossRateRhoL = paramVals.get(paramNames.indexOf("rhoL"));
-			spreadLossSigmaL = paramVals.get(paramNames.indexOf("sigmaL"));
-			optimalLossTempMuL = paramVals.get(paramNames.indexOf("muL"));
-			optimalLossSlopeKappaL = paramVals.get(paramNames.indexOf("kappaL"));
-			thresholdLambda0 = paramVals.get(paramNames.indexOf("lambda0"));
-			thresholdLambda1 = paramVals.get(paramNames.indexOf("lambda1"));
+		/** @return true if a parameter set holds the current static coefficients */
+		static boolean matches(ParameterSet params)
+		{
+			return params.meanSCPAlpha1 == meanSCPAlpha1 && params.spreadSCPBeta1 == spreadSCPBeta1 &&
+					params.meanSCPAlpha2 == meanSCPAlpha2 && params.spreadSCPBeta2 == spreadSCPBeta2 &&
+					params.meanSCPAlpha3 == meanSCPAlpha3 && params.spreadSCPBeta3 == spreadSCPBeta3 &&
+					params.maxGainRateRhoG == maxGainRateRhoG && params.spreadGainSigmaG == spreadGainSigmaG &&
+					params.optimalGainTempMuG == optimalGainTempMuG && 
+					params.optimalGainTempSlopeKappaG == optimalGainTempSlopeKappaG &&
+					params.maxLossRateRhoL == maxLossRateRhoL && params.spreadLossSigmaL == spreadLossSigmaL &&
+					params.optimalLossTempMuL == optimalLossTempMuL && 
+					params.optimalLossSlopeKappaL == optimalLossSlopeKappaL &&
+					params.thresholdLambda0 == thresholdLambda0 && params.thresholdLambda1 == thresholdLambda1;
+		}
 
+		/** Assign the static coefficients from a parameter set. */
+		public static void set(ParameterSet params)
+		{
+			meanSCPAlpha1 = params.meanSCPAlpha1;
+			spreadSCPBeta1  = params.spreadSCPBeta1;
+			meanSCPAlpha2 = params.meanSCPAlpha2;
+			spreadSCPBeta2  = params.spreadSCPBeta2;
+			meanSCPAlpha3 = params.meanSCPAlpha3;
+			spreadSCPBeta3 = params.spreadSCPBeta3;
+			maxGainRateRhoG = params.maxGainRateRhoG;
+			spreadGainSigmaG = params.spreadGainSigmaG;
+			optimalGainTempMuG = params.optimalGainTempMuG;
+			optimalGainTempSlopeKappaG = params.optimalGainTempSlopeKappaG;
+			maxLossRateRhoL = params.maxLossRateRhoL;
+			spreadLossSigmaL = params.spreadLossSigmaL;
+			optimalLossTempMuL = params.optimalLossTempMuL;
+			optimalLossSlopeKappaL = params.optimalLossSlopeKappaL;
+			thresholdLambda0 = params.thresholdLambda0;
+			thresholdLambda1 = params.thresholdLambda1;
 		}
 	}
 }
@@ -0,0 +1,359 @@
+package mountainPineBeetle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+
+import mountainPineBeetle.RegniereBentzMPBCalculator.ParameterSet;
+
+/** Parameter-sensitivity sweeps for the Regniere and Bentz winter survival model. <br><br>
+ *
+ *  A {@link Design} generates parameter sets on demand from an index, so a sweep
+ *  never holds more than one parameter set per worker in memory.  Each parameter set is run
+ *  over a whole daily temperature series on a fork-join pool and its result is passed
+ *  to a {@link ResultSink} as soon as it is finished. <br><br>
+ *
+ *  Parameter bounds are given as arrays in the order of {@link ParameterSet#NAMES}.
+ *  A parameter with equal lower and upper bounds is held constant.
+ *
+ * @author michaelfrancenelson */
+public class RegniereBentzParameterSweep {
+
+	/** Number of parameter sets a fork-join task runs without splitting further. */
+	public static final int TASK_SIZE = 16;
+
+	/** A sweep design: an indexed collection of parameter sets. <br>
+	 *  Implementations must be safe to call from several threads. */
+	public interface Design {
+		/** @return the number of parameter sets in the design */
+		long size();
+		/** @return the parameter set with the given index, 0 &le; index &lt; size() */
+		ParameterSet parameters(long index);
+	}
+
+	/** Receives the result of each parameter set. <br>
+	 *  Results arrive from the worker threads in no particular order,
+	 *  so implementations must be thread-safe. */
+	public interface ResultSink {
+		/**
+		 * @param index index of the parameter set in the design
+		 * @param params the parameter set
+		 * @param finalSurvival survival probability at the end of the series
+		 * @param minLethalTemperature the lowest median lethal temperature (equation 8) reached during the series
+		 */
+		void accept(long index, ParameterSet params, double finalSurvival, double minLethalTemperature);
+	}
+
+	/** Run every parameter set of a design on the common fork-join pool.
+	 *  See {@link #run(Design, double[], double[], LocalDate, ResultSink, ForkJoinPool)}. */
+	public static void run(Design design, double[] tMin, double[] tMax, LocalDate start, ResultSink sink)
+	{
+		run(design, tMin, tMax, start, sink, ForkJoinPool.commonPool());
+	}
+
+	/** Run every parameter set of a design over a daily temperature series. <br>
+	 *  Each run starts with no cold hardening, gain or loss and a survival of 1.
+	 *
+	 * @param design the parameter sets to run
+	 * @param tMin daily minimum temperatures, -999 for missing data
+	 * @param tMax daily maximum temperatures, -999 for missing data
+	 * @param start date of the first day in the series, usually the 1st of August
+	 * @param sink receives the result of each parameter set
+	 * @param pool the pool to run on
+	 */
+	public static void run(Design design, double[] tMin, double[] tMax, LocalDate start,
+			ResultSink sink, ForkJoinPool pool)
+	{
+		if(tMin.length != tMax.length){
+			throw new IllegalArgumentException("tMin and tMax must have the same length");
+		}
+		/* Resolve the season once instead of once per parameter set. */
+		boolean[] gainOnly = new SeasonCalendar(start, tMin.length).gainOnlyFlags();
+
+		pool.invoke(new SweepTask(design, tMin, tMax, gainOnly, sink, 0, design.size()));
+	}
+
+	/** Run a single parameter set over a daily temperature series.
+	 * @param params the model coefficients
+	 * @param tMin daily minimum temperatures, -999 for missing data
+	 * @param tMax daily maximum temperatures, -999 for missing data
+	 * @param gainOnly for each day, is it in the gain-only part of the season (August onward)?  
+	 * 			See {@link SeasonCalendar#gainOnlyFlags()}.
+	 * @return {final survival, minimum median lethal temperature} */
+	public static double[] runSeries(ParameterSet params, double[] tMin, double[] tMax, boolean[] gainOnly)
+	{
+		double[] result = new double[2];
+		runSeries(params, tMin, tMax, gainOnly, new double[4], result);
+		return result;
+	}
+
+	/** Run a single parameter set, writing {final survival, minimum median lethal temperature}
+	 *  into the result array.  The state array holds {cold hardening, gain, loss, survival} 
+	 *  between days, as in {@link RegniereBentzMPBCalculator#updateState(ParameterSet, double[], boolean, double[])}. */
+	private static void runSeries(ParameterSet params, double[] tMin, double[] tMax, boolean[] gainOnly, 
+			double[] state, double[] result)
+	{
+		state[0] = 0d; state[1] = 0d; state[2] = 0d; state[3] = 1d;
+		double minLethal = RegniereBentzMPBCalculator.medianLethalTemperature(params, state[0]);
+
+		for(int day = 0; day < tMin.length; day++){
+			if(RegniereBentzMPBCalculator.updateCell(params, false, tMin[day], tMax[day], gainOnly[day], 
+					state, 0, state, 1, state, 2, state, 3)){
+				minLethal = Math.min(minLethal, RegniereBentzMPBCalculator.medianLethalTemperature(params, state[0]));
+			}
+		}
+		result[0] = state[3];
+		result[1] = minLethal;
+	}
+
+	private static class SweepTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final Design design;
+		final double[] tMin, tMax;
+		final boolean[] gainOnly;
+		final ResultSink sink;
+		final long from, to;
+
+		SweepTask(Design design, double[] tMin, double[] tMax, boolean[] gainOnly, ResultSink sink, long from, long to)
+		{
+			this.design = design; this.tMin = tMin; this.tMax = tMax; this.gainOnly = gainOnly;
+			this.sink = sink; this.from = from; this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= TASK_SIZE){
+				double[] state = new double[4], result = new double[2];
+				for(long i = from; i < to; i++){
+					ParameterSet params = design.parameters(i);
+					runSeries(params, tMin, tMax, gainOnly, state, result);
+					sink.accept(i, params, result[0], result[1]);
+				}
+			} else {
+				long mid = (from + to) >>> 1;
+				invokeAll(
+						new SweepTask(design, tMin, tMax, gainOnly, sink, from, mid),
+						new SweepTask(design, tMin, tMax, gainOnly, sink, mid, to));
+			}
+		}
+	}
+
+	/** A sink that writes one csv line per parameter set: the index,
+	 *  the parameters in the order of {@link ParameterSet#NAMES}, the final survival and
+	 *  the minimum lethal temperature.  The header line is written immediately. <br>
+	 *  Writes are synchronized on the writer; the caller closes it after the sweep. */
+	public static ResultSink csvSink(final Writer writer) throws IOException
+	{
+		StringBuilder header = new StringBuilder("index");
+		for(String name : ParameterSet.NAMES) header.append(',').append(name);
+		writer.write(header.append(",survival,minLethalTemperature\n").toString());
+
+		return new ResultSink() {
+			@Override
+			public void accept(long index, ParameterSet params, double finalSurvival, double minLethalTemperature)
+			{
+				StringBuilder line = new StringBuilder().append(index);
+				for(double value : params.toArray()) line.append(',').append(value);
+				line.append(',').append(finalSurvival).append(',').append(minLethalTemperature).append('\n');
+				try {
+					synchronized(writer) { writer.write(line.toString()); }
+				} catch (IOException e) { throw new UncheckedIOException(e); }
+			}
+		};
+	}
+
+
+	//================================================================================
+	//
+	// Designs
+	//
+	// ================================================================================
+
+	/** A full factorial grid design.
+	 * @param lower lower bound of each parameter
+	 * @param upper upper bound of each parameter
+	 * @param levels number of evenly spaced levels, including both bounds, for each parameter.
+	 * 			A parameter with 1 level is held at its lower bound.
+	 * @return a design with the product of the levels as its size */
+	public static Design grid(double[] lower, double[] upper, int[] levels)
+	{
+		checkBounds(lower, upper);
+		if(levels.length != lower.length) throw new IllegalArgumentException("Expected " + lower.length + " levels");
+		final double[] lo = lower.clone(), hi = upper.clone();
+		final int[] lv = levels.clone();
+		long size = 1;
+		for(int level : lv){
+			if(level < 1) throw new IllegalArgumentException("Each parameter needs at least 1 level");
+			size = Math.multiplyExact(size, level);
+		}
+		final long gridSize = size;
+
+		return new Design() {
+			@Override public long size() { return gridSize; }
+
+			@Override public ParameterSet parameters(long index)
+			{
+				double[] values = new double[lo.length];
+				long rest = index;
+				for(int j = 0; j < values.length; j++){
+					int k = (int)(rest % lv[j]);
+					rest /= lv[j];
+					values[j] = lv[j] == 1 ? lo[j] : lo[j] + (hi[j] - lo[j]) * k / (lv[j] - 1);
+				}
+				return new ParameterSet(values);
+			}
+		};
+	}
+
+	/** A Latin hypercube design: each parameter's range is cut into n equal strata and
+	 *  every stratum is sampled exactly once, with the strata paired at random across parameters.
+	 * @param lower lower bound of each parameter
+	 * @param upper upper bound of each parameter
+	 * @param n number of parameter sets
+	 * @param seed seed for the stratum permutations and the positions within strata
+	 * @return a design of size n */
+	public static Design latinHypercube(double[] lower, double[] upper, final int n, final long seed)
+	{
+		checkBounds(lower, upper);
+		final double[] lo = lower.clone(), hi = upper.clone();
+
+		/* One random permutation of the strata per parameter. */
+		UniformRandomProvider rng = RandomSource.create(RandomSource.SPLIT_MIX_64, seed);
+		final int[][] strata = new int[lo.length][n];
+		for(int j = 0; j < lo.length; j++){
+			int[] perm = strata[j];
+			for(int i = 0; i < n; i++) perm[i] = i;
+			for(int i = n - 1; i > 0; i--){
+				int k = rng.nextInt(i + 1);
+				int tmp = perm[i]; perm[i] = perm[k]; perm[k] = tmp;
+			}
+		}
+
+		return new Design() {
+			@Override public long size() { return n; }
+
+			@Override public ParameterSet parameters(long index)
+			{
+				double[] values = new double[lo.length];
+				for(int j = 0; j < values.length; j++){
+					/* The position within the stratum is a hash of the seed, parameter and index,
+					 * so any parameter set can be generated independently of the others. */
+					double u = (strata[j][(int) index] + unitHash(seed, j * (long) n + index)) / n;
+					values[j] = lo[j] + (hi[j] - lo[j]) * u;
+				}
+				return new ParameterSet(values);
+			}
+		};
+	}
+
+	/** A Sobol' low-discrepancy sequence design. <br>
+	 *  Uses the primitive polynomials and initial direction numbers of
+	 *  Joe and Kuo (2008) for the first 16 dimensions.  The all-zero first point of
+	 *  the sequence is skipped.
+	 * @param lower lower bound of each parameter
+	 * @param upper upper bound of each parameter
+	 * @param n number of parameter sets
+	 * @return a design of size n */
+	public static Design sobol(double[] lower, double[] upper, final long n)
+	{
+		checkBounds(lower, upper);
+		if(lower.length > SOBOL_POLYNOMIALS.length + 1){
+			throw new IllegalArgumentException("Sobol' designs support at most " + (SOBOL_POLYNOMIALS.length + 1) + " parameters");
+		}
+		final double[] lo = lower.clone(), hi = upper.clone();
+		final long[][] directions = sobolDirections(lo.length);
+
+		return new Design() {
+			@Override public long size() { return n; }
+
+			@Override public ParameterSet parameters(long index)
+			{
+				long i = index + 1;
+				long gray = i ^ (i >>> 1);
+				double[] values = new double[lo.length];
+				for(int j = 0; j < values.length; j++){
+					long x = 0;
+					for(int bit = 0; bit < SOBOL_BITS && (gray >>> bit) != 0; bit++){
+						if(((gray >>> bit) & 1L) != 0) x ^= directions[j][bit];
+					}
+					values[j] = lo[j] + (hi[j] - lo[j]) * (x / SOBOL_SCALE);
+				}
+				return new ParameterSet(values);
+			}
+		};
+	}
+
+	private static final int SOBOL_BITS = 52;
+	private static final double SOBOL_SCALE = Math.pow(2d, SOBOL_BITS);
+
+	/** Joe and Kuo (2008) primitive polynomials for dimensions 2 - 16:
+	 *  {degree s, coefficients a, initial direction numbers m1..ms} */
+	private static final int[][] SOBOL_POLYNOMIALS = new int[][] {
+		{1, 0, 1},
+		{2, 1, 1, 3},
+		{3, 1, 1, 3, 1},
+		{3, 2, 1, 1, 1},
+		{4, 1, 1, 1, 3, 3},
+		{4, 4, 1, 3, 5, 13},
+		{5, 2, 1, 1, 5, 5, 17},
+		{5, 4, 1, 1, 5, 5, 5},
+		{5, 7, 1, 1, 7, 11, 19},
+		{5, 11, 1, 1, 5, 1, 1},
+		{5, 13, 1, 1, 1, 3, 11},
+		{5, 14, 1, 3, 5, 5, 31},
+		{6, 1, 1, 3, 3, 9, 7, 49},
+		{6, 13, 1, 1, 1, 15, 21, 21},
+		{6, 16, 1, 3, 1, 13, 27, 49}
+	};
+
+	/** Direction numbers v[j][k], scaled to SOBOL_BITS bits. */
+	private static long[][] sobolDirections(int dims)
+	{
+		long[][] v = new long[dims][SOBOL_BITS];
+		for(int k = 0; k < SOBOL_BITS; k++) v[0][k] = 1L << (SOBOL_BITS - 1 - k);
+
+		for(int j = 1; j < dims; j++){
+			int[] poly = SOBOL_POLYNOMIALS[j - 1];
+			int s = poly[0], a = poly[1];
+			for(int k = 0; k < s && k < SOBOL_BITS; k++) v[j][k] = ((long) poly[2 + k]) << (SOBOL_BITS - 1 - k);
+			for(int k = s; k < SOBOL_BITS; k++){
+				long value = v[j][k - s] ^ (v[j][k - s] >>> s);
+				for(int b = 1; b < s; b++){
+					if(((a >>> (s - 1 - b)) & 1) != 0) value ^= v[j][k - b];
+				}
+				v[j][k] = value;
+			}
+		}
+		return v;
+	}
+
+	/** A uniform number in [0, 1) from the SplitMix64 finalizer of seed + key. */
+	private static double unitHash(long seed, long key)
+	{
+		long z = seed + (key + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+
+	private static void checkBounds(double[] lower, double[] upper)
+	{
+		if(lower.length != ParameterSet.NAMES.length || upper.length != ParameterSet.NAMES.length){
+			throw new IllegalArgumentException("Expected bounds for " + ParameterSet.NAMES.length + " parameters");
+		}
+		for(int j = 0; j < lower.length; j++){
+			if(upper[j] < lower[j]){
+				throw new IllegalArgumentException("Upper bound is below lower bound for " + ParameterSet.NAMES[j]);
+			}
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package mountainPineBeetle;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import mountainPineBeetle.RegniereBentzMPBCalculator.ParameterSet;
+
+/** Drives the Regniere and Bentz winter survival model for many stations or cells 
+ *  from a {@link DailyWeatherReader}, one day at a time. <br><br>
+ *  
+ *  Memory use is a fixed number of arrays with one entry per station, 
+ *  independent of the length of the weather series. <br>
+ *  A beetle generation's winter runs from the 1st of August to the following 31st of July. 
+ *  At the first day read in each season, whether or not it is the 1st of August, 
+ *  the survival of every station is reset to 1 after the 
+ *  previous season's results are passed to a {@link SeasonSink}.  Cold hardening, gain and 
+ *  loss carry over from one season to the next.
+ * 
+ * @author michaelfrancenelson */
+public class RegniereBentzSeasonRunner {
+
+	/** Receives the state of every station at the end of each season. */
+	public interface SeasonSink {
+		/**
+		 * @param lastDay the last day of the season that was read
+		 * @param survival each station's survival at the end of the season
+		 * @param minLethalTemperature each station's lowest median lethal temperature during the season
+		 */
+		void season(LocalDate lastDay, double[] survival, double[] minLethalTemperature);
+	}
+
+	final ParameterSet params;
+	final int stations;
+
+	final double[] coldHardening;
+	final double[] gain;
+	final double[] loss;
+	final double[] survival;
+	final double[] minLethalTemperature;
+
+	final double[] tMin;
+	final double[] tMax;
+
+	/** The last day processed, null before the first day. */
+	LocalDate date;
+
+	/** Use the tabulated logistic functions? */
+	boolean tabulated = false;
+
+	/** @param params the model coefficients
+	 *  @param stations the number of stations or cells */
+	public RegniereBentzSeasonRunner(ParameterSet params, int stations)
+	{
+		this.params = params;
+		this.stations = stations;
+		coldHardening = new double[stations];
+		gain = new double[stations];
+		loss = new double[stations];
+		survival = new double[stations];
+		minLethalTemperature = new double[stations];
+		tMin = new double[stations];
+		tMax = new double[stations];
+		resetSeason();
+	}
+
+	/** Read every remaining day from the weather source and update the model.
+	 * @param weather the weather source.  It is not closed.
+	 * @param sink receives each completed season, including the last partial one; may be null
+	 * @return the number of days read
+	 * @throws IOException */
+	public int run(DailyWeatherReader weather, SeasonSink sink) throws IOException
+	{
+		return run(weather, sink, null, 0);
+	}
+
+	/** Read every remaining day from the weather source and update the model,
+	 *  writing a checkpoint after every checkpointInterval days and after the last day. <br>
+	 *  To restart a failed run, {@link #restore(ColdHardeningCheckpoint)} the runner and 
+	 *  position the weather source on the day after the checkpoint.
+	 * @param weather the weather source.  It is not closed.
+	 * @param sink receives each completed season, including the last partial one; may be null
+	 * @param checkpoint the checkpoint to write, may be null
+	 * @param checkpointInterval number of days between checkpoints
+	 * @return the number of days read
+	 * @throws IOException */
+	public int run(DailyWeatherReader weather, SeasonSink sink, 
+			ColdHardeningCheckpoint checkpoint, int checkpointInterval) throws IOException
+	{
+		if(weather.stations() != stations){
+			throw new IllegalArgumentException("Weather has " + weather.stations() + " stations, expected " + stations);
+		}
+		int days = 0;
+		while(weather.nextDay(tMin, tMax)){
+			LocalDate today = weather.date();
+			/* Compare seasons rather than look for the 1st of August, which may be missing from the weather. */
+			if(date != null && SeasonCalendar.seasonYear(today) != SeasonCalendar.seasonYear(date)){
+				if(sink != null) sink.season(date, survival, minLethalTemperature);
+				resetSeason();
+			}
+			step(today);
+			days++;
+			if(checkpoint != null && days % checkpointInterval == 0) checkpoint(checkpoint);
+		}
+		if(checkpoint != null && days > 0 && days % checkpointInterval != 0) checkpoint(checkpoint);
+		if(sink != null && days > 0) sink.season(date, survival, minLethalTemperature);
+		return days;
+	}
+
+	/** Write the current state to a checkpoint. */
+	public void checkpoint(ColdHardeningCheckpoint checkpoint)
+	{
+		checkpoint.write(date, coldHardening, gain, loss, survival, minLethalTemperature);
+	}
+
+	/** Replace the current state with the most recent checkpoint.
+	 * @return the last day completed in the checkpoint, or null if it is empty */
+	public LocalDate restore(ColdHardeningCheckpoint checkpoint)
+	{
+		if(checkpoint.cells() != stations){
+			throw new IllegalArgumentException("Checkpoint has " + checkpoint.cells() + " cells, expected " + stations);
+		}
+		LocalDate day = checkpoint.read(null, coldHardening, gain, loss, survival, minLethalTemperature);
+		if(day != null) date = day;
+		return day;
+	}
+
+	/** Advance every station by one day using the temperatures in {@link #tMin} and {@link #tMax}. */
+	void step(LocalDate today)
+	{
+		if(tabulated){
+			RegniereBentzMPBCalculator.updateStatesTabulated(params, tMin, tMax, SeasonCalendar.isGainOnly(today),
+					coldHardening, gain, loss, survival, 0, stations);
+		} else {
+			RegniereBentzMPBCalculator.updateStates(params, tMin, tMax, SeasonCalendar.isGainOnly(today),
+					coldHardening, gain, loss, survival, 0, stations);
+		}
+		for(int i = 0; i < stations; i++){
+			minLethalTemperature[i] = Math.min(minLethalTemperature[i], 
+					RegniereBentzMPBCalculator.medianLethalTemperature(params, coldHardening[i]));
+		}
+		date = today;
+	}
+
+	/** Start a new season: survival 1 and no minimum lethal temperature yet. */
+	void resetSeason()
+	{
+		Arrays.fill(survival, 1d);
+		Arrays.fill(minLethalTemperature, Double.POSITIVE_INFINITY);
+	}
+
+	/** Opt in to the faster, approximate update that evaluates the logistic functions from
+	 *  a lookup table.  See {@link RegniereBentzMPBCalculator#updateStatesTabulated}. */
+	public void setTabulated(boolean tabulated) { this.tabulated = tabulated; }
+
+	/** @return the last day processed, or null */
+	public LocalDate date() { return date; }
+
+	/** @return the cold hardening of each station.  This is the live state, not a copy. */
+	public double[] coldHardening() { return coldHardening; }
+
+	/** @return the current season's survival of each station.  This is the live state, not a copy. */
+	public double[] survival() { return survival; }
+
+	/** @return the current season's lowest median lethal temperature of each station.  This is the live state, not a copy. */
+	public double[] minLethalTemperature() { return minLethalTemperature; }
+}
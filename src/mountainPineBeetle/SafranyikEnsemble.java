@@ -0,0 +1,149 @@
+package mountainPineBeetle;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.rng.JumpableUniformRandomProvider;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+
+/** Monte Carlo ensembles of the stochastic Safranyik et al. 1999 model for one stand. <br><br>
+ *  
+ *  Every replicate starts from the same stand and is run with 
+ *  {@link SafranyikStepEngine#step(SafranyikStand, UniformRandomProvider)}.  
+ *  Replicate r draws from its own stream: the stream of a {@link RandomSource#XO_RO_SHI_RO_128_PP} 
+ *  generator seeded with the ensemble seed, jumped ahead r times by 2<sup>64</sup> steps.  
+ *  The streams are created in order before the replicates are run, so each replicate gives 
+ *  the same trajectory however the replicates are scheduled on the pool. <br><br>
+ *  
+ *  Trajectories are not kept: each year's emerging beetles and live trees are added to 
+ *  {@link StreamingQuantiles} histograms, which give the same quantiles in any order.
+ * 
+ * @author michaelfrancenelson */
+public class SafranyikEnsemble {
+
+	/** Number of replicates a fork-join task runs without splitting further. */
+	public static final int TASK_SIZE = 8;
+
+	/** Quantile summaries of an ensemble, one per year. */
+	public static class Summary {
+		/** Emerging beetles per hectare after each year */
+		public final StreamingQuantiles[] beetles;
+		/** Live trees per hectare after each year */
+		public final StreamingQuantiles[] liveTrees;
+
+		Summary(int years)
+		{
+			beetles = new StreamingQuantiles[years];
+			liveTrees = new StreamingQuantiles[years];
+			for(int y = 0; y < years; y++){
+				beetles[y] = new StreamingQuantiles(1d, 1e12, 20);
+				liveTrees[y] = new StreamingQuantiles(0.1, 1e5, 20);
+			}
+		}
+
+		/** @return for each year, the given quantile of the emerging beetles */
+		public double[] beetleQuantile(double probability)
+		{
+			double[] out = new double[beetles.length];
+			for(int y = 0; y < out.length; y++) out[y] = beetles[y].quantile(probability);
+			return out;
+		}
+
+		/** @return for each year, the given quantile of the live trees */
+		public double[] liveTreeQuantile(double probability)
+		{
+			double[] out = new double[liveTrees.length];
+			for(int y = 0; y < out.length; y++) out[y] = liveTrees[y].quantile(probability);
+			return out;
+		}
+	}
+
+	/** Receives the final state of each replicate.  
+	 *  Called from the worker threads, so implementations must be thread-safe. */
+	public interface ReplicateSink {
+		void replicate(int index, SafranyikStand stand);
+	}
+
+	final SafranyikStepEngine engine;
+	final SafranyikStand initial;
+	final int years;
+
+	/**
+	 * @param engine the step engine
+	 * @param initial the starting stand; it is copied for each replicate and not changed
+	 * @param years number of beetle generations in each replicate
+	 */
+	public SafranyikEnsemble(SafranyikStepEngine engine, SafranyikStand initial, int years)
+	{
+		this.engine = engine;
+		this.initial = initial;
+		this.years = years;
+	}
+
+	/** Run an ensemble on the common fork-join pool. */
+	public Summary run(int replicates, long seed)
+	{
+		return run(replicates, seed, null, ForkJoinPool.commonPool());
+	}
+
+	/** Run an ensemble.
+	 * @param replicates number of replicates
+	 * @param seed seed of the random streams
+	 * @param sink receives the final stand of each replicate; may be null
+	 * @param pool the pool to run on
+	 * @return quantile summaries of each year */
+	public Summary run(int replicates, long seed, ReplicateSink sink, ForkJoinPool pool)
+	{
+		JumpableUniformRandomProvider root = 
+				(JumpableUniformRandomProvider) RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, seed);
+		UniformRandomProvider[] streams = new UniformRandomProvider[replicates];
+		for(int r = 0; r < replicates; r++) streams[r] = root.jump();
+		Summary summary = new Summary(years);
+		pool.invoke(new ReplicateTask(streams, summary, sink, 0, replicates));
+		return summary;
+	}
+
+	/** Run replicates from (inclusive) to to (exclusive) through one reusable stand. */
+	void runReplicates(UniformRandomProvider[] streams, Summary summary, ReplicateSink sink, int from, int to)
+	{
+		SafranyikStand stand = new SafranyikStand(initial.classes);
+		for(int r = from; r < to; r++){
+			stand.set(initial);
+			UniformRandomProvider random = streams[r];
+			for(int y = 0; y < years; y++){
+				summary.beetles[y].add(engine.step(stand, random));
+				summary.liveTrees[y].add(stand.totalLiveTrees());
+			}
+			if(sink != null) sink.replicate(r, stand);
+			streams[r] = null;
+		}
+	}
+
+	private class ReplicateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final UniformRandomProvider[] streams;
+		final Summary summary;
+		final ReplicateSink sink;
+		final int from, to;
+
+		ReplicateTask(UniformRandomProvider[] streams, Summary summary, ReplicateSink sink, int from, int to)
+		{
+			this.streams = streams; this.summary = summary; this.sink = sink;
+			this.from = from; this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= TASK_SIZE){
+				runReplicates(streams, summary, sink, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ReplicateTask(streams, summary, sink, from, mid),
+					new ReplicateTask(streams, summary, sink, mid, to));
+		}
+	}
+}
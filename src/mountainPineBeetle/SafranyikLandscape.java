@@ -0,0 +1,108 @@
+package mountainPineBeetle;
+
+import java.util.Arrays;
+
+/** The state of many stands for the Safranyik et al. 1999 population model, 
+ *  held in contiguous primitive arrays. <br><br>
+ *  
+ *  Per-class arrays hold the classes of stand s at indices s &times; classes to 
+ *  (s + 1) &times; classes - 1; per-stand arrays have one entry per stand.  
+ *  The field meanings are the same as in {@link SafranyikStand}.  
+ *  Because Java arrays are indexed by int, stands &times; classes must be less than 
+ *  {@link #MAX_ELEMENTS}; larger inventories should be split into several landscapes. <br><br>
+ *  
+ *  Stands are stepped by copying them into a {@link SafranyikStand} with 
+ *  {@link #load(int, SafranyikStand)} and back with {@link #store(SafranyikStand, int)}.
+ * 
+ * @author michaelfrancenelson */
+public class SafranyikLandscape {
+
+	/** Largest number of elements in one per-class array. */
+	public static final long MAX_ELEMENTS = Integer.MAX_VALUE - 8;
+
+	public final int stands;
+	public final int classes;
+
+	//==========================================================================
+	// Per-class arrays, stands x classes
+	//==========================================================================
+
+	public final double[] dbh;
+	public final double[] height;
+	public final double[] barkArea;
+	public final double[] survival;
+	public final double[] liveTrees;
+	public final double[] attackedTrees;
+	public final double[] galleryDensity;
+
+	//==========================================================================
+	// Per-stand arrays
+	//==========================================================================
+
+	public final double[] beetles;
+	public final double[] standAge;
+	public final double[] neighbourDistance;
+	public final double[] relativeHostResistance;
+	public final double[] meanDailyTemperature;
+
+	/** Climatic suitability of each stand for brood survival, from 0 to 1.  
+	 *  It is weighted with {@link MPBCalculations#weightedScore(double, double)} 
+	 *  and multiplies the class survival.  Initially 1. */
+	public final double[] climateScore;
+
+	public SafranyikLandscape(int stands, int classes)
+	{
+		if((long) stands * classes > MAX_ELEMENTS){
+			throw new IllegalArgumentException(stands + " stands of " + classes + 
+					" classes is too many for one landscape; split the inventory into several landscapes");
+		}
+		this.stands = stands;
+		this.classes = classes;
+		int n = stands * classes;
+		dbh = new double[n];
+		height = new double[n];
+		barkArea = new double[n];
+		survival = new double[n];
+		liveTrees = new double[n];
+		attackedTrees = new double[n];
+		galleryDensity = new double[n];
+		beetles = new double[stands];
+		standAge = new double[stands];
+		neighbourDistance = new double[stands];
+		relativeHostResistance = new double[stands];
+		meanDailyTemperature = new double[stands];
+		climateScore = new double[stands];
+		Arrays.fill(climateScore, 1d);
+	}
+
+	/** Copy one stand into a stand object.
+	 * @param s the stand index
+	 * @param stand a stand with the same number of classes as this landscape */
+	public void load(int s, SafranyikStand stand)
+	{
+		int offset = s * classes;
+		System.arraycopy(dbh, offset, stand.dbh, 0, classes);
+		System.arraycopy(height, offset, stand.height, 0, classes);
+		System.arraycopy(barkArea, offset, stand.barkArea, 0, classes);
+		System.arraycopy(survival, offset, stand.survival, 0, classes);
+		System.arraycopy(liveTrees, offset, stand.liveTrees, 0, classes);
+		System.arraycopy(attackedTrees, offset, stand.attackedTrees, 0, classes);
+		System.arraycopy(galleryDensity, offset, stand.galleryDensity, 0, classes);
+		stand.beetles = beetles[s];
+		stand.standAge = standAge[s];
+		stand.neighbourDistance = neighbourDistance[s];
+		stand.relativeHostResistance = relativeHostResistance[s];
+		stand.meanDailyTemperature = meanDailyTemperature[s];
+	}
+
+	/** Copy the state of a stand object back into one stand.  The per-class inputs are not copied. */
+	public void store(SafranyikStand stand, int s)
+	{
+		int offset = s * classes;
+		System.arraycopy(stand.liveTrees, 0, liveTrees, offset, classes);
+		System.arraycopy(stand.attackedTrees, 0, attackedTrees, offset, classes);
+		System.arraycopy(stand.galleryDensity, 0, galleryDensity, offset, classes);
+		beetles[s] = stand.beetles;
+		standAge[s] = stand.standAge;
+	}
+}
@@ -0,0 +1,131 @@
+package mountainPineBeetle;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Runs the Safranyik et al. 1999 population model for every stand of a 
+ *  {@link SafranyikLandscape} on a fork-join pool. <br><br>
+ *  
+ *  The stands are cut into fixed chunks of {@link #chunkSize()} stands.  Each chunk is 
+ *  stepped by one thread through a single reusable {@link SafranyikStand}, and the 
+ *  landscape totals are summed per chunk and then over the chunks in order, so the 
+ *  results are the same for any number of threads. <br><br>
+ *  
+ *  Before each stand is stepped, its class survival is multiplied by the stand's 
+ *  {@link SafranyikLandscape#climateScore} weighted with 
+ *  {@link MPBCalculations#weightedScore(double, double)}.
+ * 
+ * @author michaelfrancenelson */
+public class SafranyikLandscapeRunner {
+
+	/** Default number of stands per work chunk. */
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+	/** Receives the landscape after every year.  Called on the thread that started the run. */
+	public interface YearSink {
+		/**
+		 * @param year the year just completed, starting at 0
+		 * @param landscape the landscape; its arrays must not be kept after the call returns
+		 * @param totalBeetles emerging beetles summed over the stands
+		 * @param totalKilledTrees trees killed this year, summed over the stands and classes
+		 */
+		void year(int year, SafranyikLandscape landscape, double totalBeetles, double totalKilledTrees);
+	}
+
+	final SafranyikStepEngine engine;
+	final int chunkSize;
+
+	/** Weight of the climate score, 0 to ignore it and 1 to use it unchanged. */
+	double climateWeight = 0d;
+
+	public SafranyikLandscapeRunner(SafranyikStepEngine engine) { this(engine, DEFAULT_CHUNK_SIZE); }
+
+	public SafranyikLandscapeRunner(SafranyikStepEngine engine, int chunkSize)
+	{
+		if(chunkSize < 1) throw new IllegalArgumentException("chunkSize must be positive");
+		this.engine = engine;
+		this.chunkSize = chunkSize;
+	}
+
+	/** @return the number of stands in a work chunk */
+	public int chunkSize() { return chunkSize; }
+
+	/** Set the weight given to the stand climate scores. */
+	public void setClimateWeight(double climateWeight) { this.climateWeight = climateWeight; }
+
+	/** Run on the common fork-join pool.  See {@link #run(SafranyikLandscape, int, YearSink, ForkJoinPool)}. */
+	public double[][] run(SafranyikLandscape landscape, int years, YearSink sink)
+	{
+		return run(landscape, years, sink, ForkJoinPool.commonPool());
+	}
+
+	/** Step every stand of the landscape for a number of years.
+	 * @param landscape the stands, updated in place
+	 * @param years number of beetle generations to run
+	 * @param sink receives the landscape after each year; may be null
+	 * @param pool the pool to run on
+	 * @return for each year, {total emerging beetles, total killed trees} */
+	public double[][] run(SafranyikLandscape landscape, int years, YearSink sink, ForkJoinPool pool)
+	{
+		int chunks = (landscape.stands + chunkSize - 1) / chunkSize;
+		double[] chunkBeetles = new double[chunks];
+		double[] chunkKilled = new double[chunks];
+		double[][] totals = new double[years][2];
+
+		for(int year = 0; year < years; year++){
+			pool.invoke(new ChunkTask(landscape, chunkBeetles, chunkKilled, 0, chunks));
+			double beetles = 0d, killed = 0d;
+			for(int c = 0; c < chunks; c++){ beetles += chunkBeetles[c]; killed += chunkKilled[c]; }
+			totals[year][0] = beetles;
+			totals[year][1] = killed;
+			if(sink != null) sink.year(year, landscape, beetles, killed);
+		}
+		return totals;
+	}
+
+	/** Step the stands of one chunk, writing its totals into the chunk arrays. */
+	void stepChunk(SafranyikLandscape landscape, int chunk, double[] chunkBeetles, double[] chunkKilled)
+	{
+		SafranyikStand stand = new SafranyikStand(landscape.classes);
+		int from = chunk * chunkSize, to = Math.min(landscape.stands, from + chunkSize);
+		double beetles = 0d, killed = 0d;
+		for(int s = from; s < to; s++){
+			landscape.load(s, stand);
+			double climate = MPBCalculations.weightedScore(landscape.climateScore[s], climateWeight);
+			for(int i = 0; i < stand.classes; i++) stand.survival[i] *= climate;
+			beetles += engine.step(stand);
+			for(int i = 0; i < stand.classes; i++) killed += stand.attackedTrees[i];
+			landscape.store(stand, s);
+		}
+		chunkBeetles[chunk] = beetles;
+		chunkKilled[chunk] = killed;
+	}
+
+	/** Splits a range of chunks until a single chunk is left. */
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final SafranyikLandscape landscape;
+		final double[] chunkBeetles, chunkKilled;
+		final int from, to;
+
+		ChunkTask(SafranyikLandscape landscape, double[] chunkBeetles, double[] chunkKilled, int from, int to)
+		{
+			this.landscape = landscape;
+			this.chunkBeetles = chunkBeetles; this.chunkKilled = chunkKilled;
+			this.from = from; this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= 1){
+				if(to > from) stepChunk(landscape, from, chunkBeetles, chunkKilled);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ChunkTask(landscape, chunkBeetles, chunkKilled, from, mid),
+					new ChunkTask(landscape, chunkBeetles, chunkKilled, mid, to));
+		}
+	}
+}
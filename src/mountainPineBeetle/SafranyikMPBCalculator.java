@@ -95,23 +95,27 @@ public class SafranyikMPBCalculator {
 	}
 	
 	/**  f1 in equation 5 of Safranyik et al. 1999 (Attack submodel) <br>
-	 *   total bole surface area as function of dbh and tree height.
-	 *   //TODO stub
-	 * @param dbh
-	 * @param height
-	 * @return	 */
+	 *   total bole surface area as function of dbh and tree height. <br>
+	 *   From the caption to Figure 1, see {@link #cumulativeBoleArea(double, double, double)}: 
+	 *   Safranyik 1988, The Canadian Entomologist 120: 323-331.
+	 * @param dbh tree diameter in meters
+	 * @param height tree height in meters
+	 * @return bole surface area in square meters */
 	public static double totalBoleSurfaceArea(double dbh, double height){
-		return 0d;
+		return 0.3455 + 1.9708 * dbh * height;
 	}
 
 	/** f2 in equation 5 of Safranyik et al. 1999 (Attack submodel) <br>
-	 *  proporiton of bole surface below a given height.
-	 *  // TODO stub
-	 * @param infestedHeight
-	 * @param height
-	 * @return	 */
+	 *  proportion of bole surface below a given height. <br>
+	 *  From the caption to Figure 1, see {@link #cumulativeBoleArea(double, double, double)}.  
+	 *  The polynomial is slightly above 1 at the top of the tree, so the result is limited to [0, 1].
+	 * @param infestedHeight height up to which the bole is infested, in meters (Amman and Cole 1980)
+	 * @param height tree height in meters
+	 * @return proportion of the bole surface area below the infested height */
 	public static double proportionBoleAreaBelow(double infestedHeight, double height){
-		return 0d;
+		if(height <= 0d) return 0d;
+		double p = Math.max(0d, Math.min(1d, infestedHeight / height));
+		return Math.max(0d, Math.min(1d, 0.0059 + 1.6761 * p - 0.6657 * p * p));
 	}
 	
 	/** Safranyik et al. 1999 Equation 5, page 5 (Attack submodel)<br>
@@ -146,33 +150,64 @@ public class SafranyikMPBCalculator {
 	{
 		 return (0.3455 + 1.9708 * dbh * height) * 
 				 (0.0059 + 1.6761 * proportionHeight -
-						 0.6657 * Math.pow(proportionHeight, 2d));
+						 0.6657 * proportionHeight * proportionHeight);
 	}
 	
 	
 	/** Safranyik et al. 1999 equation 6, page 6. (Attack submodel)<br>
-	 *  Proportional allocation of attacking beetles to DBH classes.
+	 *  Proportional allocation of attacking beetles to DBH classes. <br>
+	 *  A stand with no live trees gets a proportion of 0 in every class.
 	 * @param liveTrees
 	 * @param dbh
 	 * @return
 	 */
 	public static double[] attackProportionDBHClasses(int[] liveTrees, double[] dbh){
-		double denomSum = 0d;
 		double num[] = new double[liveTrees.length];
-		
-		for(int i = 0; i < liveTrees.length; i++){
-			denomSum += liveTrees[i] * dbh[i];
-			num[i] = liveTrees[i] * dbh[i];
+		attackProportionDBHClasses(liveTrees, dbh, liveTrees.length, num, 0, 1);
+		return num;
+	}
+
+	/** Safranyik et al. 1999 equation 6 for many stands at once, written into a caller-supplied buffer. <br>
+	 *  The arrays are stands &times; classes matrices flattened by stand: 
+	 *  class i of stand s is at index s * classes + i. <br>
+	 *  Stands with no live trees (or zero total live trees times DBH) get a proportion of 0 in every class. 
+	 * @param liveTrees live trees in each class of each stand
+	 * @param dbh DBH of each class of each stand
+	 * @param classes number of DBH classes per stand
+	 * @param out receives the proportion of each stand's attacking beetles allocated to each class
+	 * @param fromStand first stand to calculate (inclusive)
+	 * @param toStand last stand to calculate (exclusive) */
+	public static void attackProportionDBHClasses(int[] liveTrees, double[] dbh, int classes, 
+			double[] out, int fromStand, int toStand){
+		for(int s = fromStand; s < toStand; s++){
+			int offset = s * classes, end = offset + classes;
+			for(int i = offset; i < end; i++) out[i] = liveTrees[i] * dbh[i];
+			normalize(out, offset, end);
 		}
+	}
+
+	/** Safranyik et al. 1999 equation 6 for many stands, with live trees per hectare as doubles. <br>
+	 *  See {@link #attackProportionDBHClasses(int[], double[], int, double[], int, int)}. */
+	public static void attackProportionDBHClasses(double[] liveTrees, double[] dbh, int classes, 
+			double[] out, int fromStand, int toStand){
+		for(int s = fromStand; s < toStand; s++){
+			int offset = s * classes, end = offset + classes;
+			for(int i = offset; i < end; i++) out[i] = liveTrees[i] * dbh[i];
+			normalize(out, offset, end);
+		}
+	}
 
+	/** Scale out[from] to out[to - 1] to sum to 1, or to 0 if they sum to 0. <br>
+	 *  The shared second half of both forms of equation 6. */
+	private static void normalize(double[] out, int from, int to){
+		/* The sum is an ordered floating-point reduction, which the JIT does not vectorize,
+		 * but it is a single pass with no branches. */
+		double denomSum = 0d;
+		for(int i = from; i < to; i++) denomSum += out[i];
 		/* Division calculations are more expensive than multiplication, so I've heard.
 		 * Just do it one time here and use multiplication below. */
-		denomSum = 1d / denomSum;
-		
-		for(int i = 0; i < liveTrees.length; i++){
-			num[i] *= denomSum;
-		}
-		return num;
+		double scale = denomSum > 0d ? 1d / denomSum : 0d;
+		for(int i = from; i < to; i++) out[i] *= scale;
 	}
 	
 	
@@ -0,0 +1,152 @@
+package mountainPineBeetle;
+
+import java.util.Arrays;
+
+/** The state of one lodgepole pine stand for the Safranyik et al. 1999 population model, 
+ *  held in primitive arrays with one entry per DBH class. <br><br>
+ *  
+ *  The per-class inputs (DBH, height, bark area and brood survival) are set by the caller.  
+ *  The per-class results of the most recent generation are written into the result arrays 
+ *  by {@link SafranyikStepEngine#step(SafranyikStand)}, so stepping a stand allocates nothing.  
+ *  The arrays are public so that models and I/O can fill and read them without copying. <br><br>
+ *  
+ *  Reference: <br>
+ *  Safranyik, L., Barclay, H., Thomson, A., and Riel, W.G. 1999. 
+ *  A population dynamics model for the mountain pine beetle, Dendroctonus ponderosae Hopk. 
+ *  (Coleoptera: Scolytidae).  Information Report BC-X-386, Pacific Forestry Centre.
+ * 
+ * @author michaelfrancenelson */
+public class SafranyikStand {
+
+	/** Number of DBH classes. */
+	public final int classes;
+
+	//==========================================================================
+	// Per-class inputs
+	//==========================================================================
+
+	/** Mean DBH of each class, in cm. */
+	public final double[] dbh;
+	/** Mean height of each class, in m. */
+	public final double[] height;
+	/** Infested bark area per tree of each class, in m<sup>2</sup> (equation 4). */
+	public final double[] barkArea;
+	/** Egg-to-adult brood survival in each class (equation 2 or the Regni&egrave;re and Bentz model). */
+	public final double[] survival;
+
+	//==========================================================================
+	// Per-class state
+	//==========================================================================
+
+	/** Live trees per hectare in each class. */
+	public final double[] liveTrees;
+	/** Trees per hectare in each class that were killed by mass attack in the most recent generation. */
+	public final double[] attackedTrees;
+	/** Egg gallery length per m<sup>2</sup> of bark in each class in the most recent generation, in cm. */
+	public final double[] galleryDensity;
+
+	//==========================================================================
+	// Per-class results of the most recent generation
+	//==========================================================================
+
+	/** Proportion of attacking beetles allocated to each class (equation 6). */
+	public final double[] attackProportion;
+	/** Attack density on the attacked trees of each class, attacks per m<sup>2</sup>. */
+	public final double[] attackDensity;
+	/** Probability that an attack on a tree in each class succeeds (equation 9). */
+	public final double[] successProbability;
+	/** Eggs per female in each class (equation 10). */
+	public final double[] eggsPerFemale;
+
+	//==========================================================================
+	// Stand scalars
+	//==========================================================================
+
+	/** Emerging adult beetles per hectare at the start of the next generation. */
+	public double beetles;
+	/** Stand age in years. */
+	public double standAge;
+	/** Mean nearest neighbour distance among pines over 10 cm DBH, in m. */
+	public double neighbourDistance;
+	/** Relative host resistance, 0 = not resistant, 1 = fully resistant. */
+	public double relativeHostResistance;
+	/** Mean daily temperature during brood development, in degrees C. */
+	public double meanDailyTemperature;
+
+	/** Beetles lost to dispersal in the most recent generation. */
+	public double lostBeetles;
+	/** Female beetles that attacked in the most recent generation. */
+	public double attackingFemales;
+
+	/** @param classes the number of DBH classes */
+	public SafranyikStand(int classes)
+	{
+		this.classes = classes;
+		dbh = new double[classes];
+		height = new double[classes];
+		barkArea = new double[classes];
+		survival = new double[classes];
+		liveTrees = new double[classes];
+		attackedTrees = new double[classes];
+		galleryDensity = new double[classes];
+		attackProportion = new double[classes];
+		attackDensity = new double[classes];
+		successProbability = new double[classes];
+		eggsPerFemale = new double[classes];
+	}
+
+	/** Clear the state and results, keeping the per-class inputs. */
+	public void reset()
+	{
+		Arrays.fill(liveTrees, 0d);
+		Arrays.fill(attackedTrees, 0d);
+		Arrays.fill(galleryDensity, 0d);
+		Arrays.fill(attackProportion, 0d);
+		Arrays.fill(attackDensity, 0d);
+		Arrays.fill(successProbability, 0d);
+		Arrays.fill(eggsPerFemale, 0d);
+		beetles = 0d; lostBeetles = 0d; attackingFemales = 0d;
+	}
+
+	/** Copy the inputs, state and results of another stand with the same number of classes into this one. */
+	public void set(SafranyikStand other)
+	{
+		if(other.classes != classes){
+			throw new IllegalArgumentException("Expected a stand of " + classes + " classes, got " + other.classes);
+		}
+		System.arraycopy(other.dbh, 0, dbh, 0, classes);
+		System.arraycopy(other.height, 0, height, 0, classes);
+		System.arraycopy(other.barkArea, 0, barkArea, 0, classes);
+		System.arraycopy(other.survival, 0, survival, 0, classes);
+		System.arraycopy(other.liveTrees, 0, liveTrees, 0, classes);
+		System.arraycopy(other.attackedTrees, 0, attackedTrees, 0, classes);
+		System.arraycopy(other.galleryDensity, 0, galleryDensity, 0, classes);
+		System.arraycopy(other.attackProportion, 0, attackProportion, 0, classes);
+		System.arraycopy(other.attackDensity, 0, attackDensity, 0, classes);
+		System.arraycopy(other.successProbability, 0, successProbability, 0, classes);
+		System.arraycopy(other.eggsPerFemale, 0, eggsPerFemale, 0, classes);
+		beetles = other.beetles;
+		standAge = other.standAge;
+		neighbourDistance = other.neighbourDistance;
+		relativeHostResistance = other.relativeHostResistance;
+		meanDailyTemperature = other.meanDailyTemperature;
+		lostBeetles = other.lostBeetles;
+		attackingFemales = other.attackingFemales;
+	}
+
+	/** @return live trees per hectare, summed over the classes */
+	public double totalLiveTrees()
+	{
+		double sum = 0d;
+		for(int i = 0; i < classes; i++) sum += liveTrees[i];
+		return sum;
+	}
+
+	/** @return the mean DBH of the live trees, or 0 if there are none */
+	public double meanLiveDBH()
+	{
+		double trees = 0d, sum = 0d;
+		for(int i = 0; i < classes; i++){ trees += liveTrees[i]; sum += liveTrees[i] * dbh[i]; }
+		return trees > 0d ? sum / trees : 0d;
+	}
+}
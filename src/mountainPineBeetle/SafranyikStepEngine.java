@@ -0,0 +1,270 @@
+package mountainPineBeetle;
+
+import org.apache.commons.rng.UniformRandomProvider;
+
+/** Runs one mountain pine beetle generation of the Safranyik et al. 1999 model for a 
+ *  {@link SafranyikStand}, chaining the equations in {@link SafranyikMPBCalculator}. <br><br>
+ *  
+ *  One step: <br>
+ *  1. A share of the emerging beetles is lost during dispersal (equation 7). <br>
+ *  2. The attacking females are allocated to the classes at or above the minimum attacked DBH 
+ *     (equations 8 and 6). <br>
+ *  3. In each class the females attack as many trees as they can at the mass-attack density, 
+ *     and each attack succeeds with the probability of equation 9. <br>
+ *  4. Trees killed by successful attacks are removed from the live trees and their brood 
+ *     (equations 10 to 12 and the class survival) becomes the next generation's beetles (equation 1a). <br><br>
+ *  
+ *  The step works on the stand's primitive arrays and creates no objects, 
+ *  so one engine may step many stands from several threads at once. <br><br>
+ *  
+ *  {@link #step(SafranyikStand, UniformRandomProvider)} is the stochastic version: 
+ *  the number of trees killed is a binomial draw from the attacked trees with the 
+ *  probability of equation 9, and the emerging beetles are a binomial draw from the 
+ *  eggs with the class survival. <br><br>
+ *  
+ *  Safranyik et al. 1999 do not publish all of the constants used here; the defaults 
+ *  in {@link Parameters#DEFAULT} give plausible magnitudes and should be calibrated for each study.
+ * 
+ * @author michaelfrancenelson */
+public class SafranyikStepEngine {
+
+	/** Average female pronotum width in mm, assumed in Safranyik et al. 1999, page 8. */
+	public static final double AVERAGE_PRONOTUM_WIDTH = 2.1;
+
+	/** Largest binomial mean that is drawn by inversion. */
+	static final double BINOMIAL_INVERSION_MEAN = 30d;
+
+	/** Immutable constants of the population step. */
+	public static final class Parameters {
+
+		/** Parameter names in the order used by {@link #Parameters(double[])} and {@link #toArray()}. */
+		public static final String[] NAMES = new String[] {
+				"proportionFemale", "dispersalLoss", "attackThreshold", "successB",
+				"eggsA", "eggsPerCm", "galleryA", "galleryB",
+				"femaleSizeA", "femaleSizeB", "femaleSizeE" };
+
+		public static final Parameters DEFAULT = new Parameters(new double[] {
+				0.67, 0.01, 40d, 12d,
+				1d, 2d, 60d, 1d,
+				0.001, 0d, 0d });
+
+		/** Proportion of emerging beetles that are female. */
+		public final double proportionFemale;
+		/** Multiplier that turns equation 7 into the proportion of beetles lost during dispersal. */
+		public final double dispersalLoss;
+		/** Attack density, attacks per m<sup>2</sup> of bark, at which a tree is mass attacked. */
+		public final double attackThreshold;
+		/** Constant b in equation 9 (12.0 in the caption of figure 2). */
+		public final double successB;
+		/** Constant a in equation 10. */
+		public final double eggsA;
+		/** Eggs laid per cm of egg gallery, equation 10. */
+		public final double eggsPerCm;
+		/** Constant a in equation 11. */
+		public final double galleryA;
+		/** Constant b in equation 11. */
+		public final double galleryB;
+		/** Constant a in equation 12. */
+		public final double femaleSizeA;
+		/** Constant b in equation 12. */
+		public final double femaleSizeB;
+		/** Constant e in equation 12. */
+		public final double femaleSizeE;
+
+		/** @param values the constants, in the order of {@link #NAMES} */
+		public Parameters(double[] values)
+		{
+			if(values.length != NAMES.length){
+				throw new IllegalArgumentException("Expected " + NAMES.length + " parameter values, got " + values.length);
+			}
+			proportionFemale = values[0];
+			dispersalLoss = values[1];
+			attackThreshold = values[2];
+			successB = values[3];
+			eggsA = values[4];
+			eggsPerCm = values[5];
+			galleryA = values[6];
+			galleryB = values[7];
+			femaleSizeA = values[8];
+			femaleSizeB = values[9];
+			femaleSizeE = values[10];
+		}
+
+		/** @return a new array of the constants, in the order of {@link #NAMES} */
+		public double[] toArray()
+		{
+			return new double[] {
+					proportionFemale, dispersalLoss, attackThreshold, successB,
+					eggsA, eggsPerCm, galleryA, galleryB,
+					femaleSizeA, femaleSizeB, femaleSizeE };
+		}
+
+		/** @return a copy of these parameters with one constant changed. */
+		public Parameters with(String name, double value)
+		{
+			double[] values = toArray();
+			for(int i = 0; i < NAMES.length; i++){
+				if(NAMES[i].equals(name)){
+					values[i] = value;
+					return new Parameters(values);
+				}
+			}
+			throw new IllegalArgumentException("Unknown parameter name: " + name);
+		}
+	}
+
+	final Parameters params;
+
+	public SafranyikStepEngine() { this(Parameters.DEFAULT); }
+
+	public SafranyikStepEngine(Parameters params) { this.params = params; }
+
+	/** @return the constants of this engine */
+	public Parameters parameters() { return params; }
+
+	/** Run one beetle generation. <br>
+	 *  Updates the live trees, attacked trees and gallery densities of the stand, 
+	 *  writes the per-class results of the generation, replaces {@link SafranyikStand#beetles} 
+	 *  with the emerging beetles of the next generation and adds one year to the stand age.
+	 * @param stand the stand to step
+	 * @return the beetles per hectare emerging for the next generation */
+	public double step(SafranyikStand stand)
+	{
+		return step(stand, null);
+	}
+
+	/** Run one stochastic beetle generation, with trees and beetles counted per hectare. <br>
+	 *  See {@link #step(SafranyikStand)}.
+	 * @param stand the stand to step
+	 * @param random the random stream for the draws, or null for the deterministic step
+	 * @return the beetles per hectare emerging for the next generation */
+	public double step(SafranyikStand stand, UniformRandomProvider random)
+	{
+		int n = stand.classes;
+		double[] dbh = stand.dbh, area = stand.barkArea, live = stand.liveTrees;
+		double resistance = stand.relativeHostResistance;
+
+		/* Equation 7: dispersal losses. */
+		double lossFraction = Math.min(1d, params.dispersalLoss * 
+				SafranyikMPBCalculator.suboptimalStandConditionsDispersalLoss(
+						stand.standAge, stand.neighbourDistance, stand.meanLiveDBH()));
+		stand.lostBeetles = stand.beetles * lossFraction;
+		double females = (stand.beetles - stand.lostBeetles) * params.proportionFemale;
+		stand.attackingFemales = females;
+
+		/* Equations 8 and 6: allocate the females among the susceptible classes 
+		 * in proportion to their live trees times DBH. */
+		double minDBH = SafranyikMPBCalculator.minimumAttckedDBHInStand(stand.neighbourDistance);
+		double denomSum = 0d;
+		for(int i = 0; i < n; i++){
+			double weight = dbh[i] >= minDBH ? live[i] * dbh[i] : 0d;
+			stand.attackProportion[i] = weight;
+			denomSum += weight;
+		}
+		denomSum = denomSum > 0d ? 1d / denomSum : 0d;
+
+		double offspring = 0d;
+		for(int i = 0; i < n; i++){
+			stand.attackProportion[i] *= denomSum;
+			double classFemales = females * stand.attackProportion[i];
+			if(classFemales <= 0d || area[i] <= 0d || live[i] <= 0d){
+				clearClass(stand, i);
+				continue;
+			}
+
+			/* Equation 3, solved for the trees: as many trees as the females can 
+			 * attack at the mass-attack density, up to the live trees in the class.
+			 * A stochastic step attacks whole trees, and no more than the whole live trees. */
+			double trees = Math.min(live[i], classFemales / (params.attackThreshold * area[i]));
+			if(random != null) trees = Math.min(Math.floor(live[i]), Math.rint(trees));
+			if(trees <= 0d){
+				clearClass(stand, i);
+				continue;
+			}
+			double density = classFemales / (trees * area[i]);
+
+			/* Equation 9 */
+			double success = SafranyikMPBCalculator.successfulAttackProbability(params.successB, resistance, 
+					SafranyikMPBCalculator.adjustedAverageAttackDensity(density));
+			double killed = random == null ? trees * success : binomial(random, trees, success);
+
+			/* Equations 11, 11a, 11b and 12.  Adjusted resistance is kept in [0, 1] 
+			 * so that the host susceptibility in equation 11 stays a proportion. */
+			double adjustedResistance = SafranyikMPBCalculator.adjustedRelativeHostResistance(
+					SafranyikMPBCalculator.helperFunctionM(resistance, density), resistance);
+			adjustedResistance = Math.max(0d, Math.min(1d, adjustedResistance));
+			double pronotumWidth = AVERAGE_PRONOTUM_WIDTH * SafranyikMPBCalculator.averageFemaleSize(
+					params.femaleSizeA, stand.meanDailyTemperature, params.femaleSizeB, dbh[i], 
+					params.femaleSizeE, stand.galleryDensity[i]);
+			double galleryLength = SafranyikMPBCalculator.averageEggGalleryLength(
+					params.galleryA, pronotumWidth, params.galleryB, density, adjustedResistance);
+
+			/* Equation 10 */
+			double eggs = SafranyikMPBCalculator.eggsPerFemale(params.eggsA, galleryLength, params.eggsPerCm);
+
+			/* Equation 1a: the brood of the females in the killed trees. */
+			double brood = killed * density * area[i] * eggs;
+			offspring += random == null ? brood * stand.survival[i] : binomial(random, Math.rint(brood), stand.survival[i]);
+
+			live[i] -= killed;
+			stand.attackedTrees[i] = killed;
+			stand.attackDensity[i] = density;
+			stand.successProbability[i] = success;
+			stand.eggsPerFemale[i] = eggs;
+			stand.galleryDensity[i] = density * galleryLength;
+		}
+		stand.beetles = offspring;
+		stand.standAge += 1d;
+		return offspring;
+	}
+
+	/** Record that no trees of class i were attacked this generation. */
+	private static void clearClass(SafranyikStand stand, int i)
+	{
+		stand.attackedTrees[i] = 0d;
+		stand.attackDensity[i] = 0d;
+		stand.successProbability[i] = 0d;
+		stand.eggsPerFemale[i] = 0d;
+		stand.galleryDensity[i] = 0d;
+	}
+
+	/** Draw from a binomial distribution without creating objects: by inversion when the 
+	 *  mean is small and from the normal approximation, rounded and limited to [0, n], otherwise.
+	 * @param random the random stream
+	 * @param n number of trials, a whole number
+	 * @param p probability of success
+	 * @return the number of successes */
+	static double binomial(UniformRandomProvider random, double n, double p)
+	{
+		if(n <= 0d || p <= 0d) return 0d;
+		if(p >= 1d) return n;
+		if(p > 0.5) return n - binomial(random, n, 1d - p);
+
+		double mean = n * p;
+		if(mean < BINOMIAL_INVERSION_MEAN){
+			/* Sequential search of the cumulative distribution. */
+			double q = 1d - p, s = p / q, a = (n + 1d) * s;
+			double r = Math.pow(q, n);
+			double u = random.nextDouble();
+			double x = 0d;
+			while(u > r){
+				u -= r;
+				x++;
+				if(x >= n) return n;
+				r *= a / x - s;
+			}
+			return x;
+		}
+		/* Box-Muller */
+		double gaussian = Math.sqrt(-2d * Math.log(1d - random.nextDouble())) * Math.cos(2d * Math.PI * random.nextDouble());
+		return Math.max(0d, Math.min(n, Math.rint(mean + Math.sqrt(mean * (1d - p)) * gaussian)));
+	}
+
+	/** Run several generations.
+	 * @return the beetles per hectare emerging after the last generation */
+	public double run(SafranyikStand stand, int generations)
+	{
+		for(int g = 0; g < generations; g++) step(stand);
+		return stand.beetles;
+	}
+}
@@ -0,0 +1,68 @@
+package mountainPineBeetle;
+
+import java.time.LocalDate;
+
+/** A precomputed calendar for a run of the Regniere and Bentz model, so that the daily 
+ *  loop works with an integer day index instead of a {@link LocalDate}. <br><br>
+ *  
+ *  Day 0 is the start date.  For every day the calendar resolves once whether cold 
+ *  hardening can only be gained (August onward, see equation 7) and whether the day starts 
+ *  a new beetle season (the 1st of August).
+ * 
+ * @author michaelfrancenelson */
+public class SeasonCalendar {
+
+	/** The first month of the gain-only part of the season. */
+	public static final int GAIN_ONLY_FIRST_MONTH = 8;
+
+	private final LocalDate start;
+	private final boolean[] gainOnly;
+	private final boolean[] seasonStart;
+
+	/** @param start the date of day 0
+	 *  @param days the number of days in the run */
+	public SeasonCalendar(LocalDate start, int days)
+	{
+		this.start = start;
+		gainOnly = new boolean[days];
+		seasonStart = new boolean[days];
+		LocalDate date = start;
+		for(int day = 0; day < days; day++){
+			gainOnly[day] = isGainOnly(date);
+			seasonStart[day] = isSeasonStart(date);
+			date = date.plusDays(1);
+		}
+	}
+
+	/** @return true if cold hardening can only be gained on this date */
+	public static boolean isGainOnly(LocalDate date) { return date.getMonthValue() >= GAIN_ONLY_FIRST_MONTH; }
+
+	/** @return true if a new beetle season starts on this date */
+	public static boolean isSeasonStart(LocalDate date) 
+	{ return date.getMonthValue() == GAIN_ONLY_FIRST_MONTH && date.getDayOfMonth() == 1; }
+
+	/** @return the year of the 1st of August that starts the beetle season holding this date */
+	public static int seasonYear(LocalDate date) 
+	{ return date.getMonthValue() >= GAIN_ONLY_FIRST_MONTH ? date.getYear() : date.getYear() - 1; }
+
+	/** @return the number of days in the calendar */
+	public int days() { return gainOnly.length; }
+
+	/** @return the date of day 0 */
+	public LocalDate start() { return start; }
+
+	/** @return the date of a day index */
+	public LocalDate date(int day) { return start.plusDays(day); }
+
+	/** @return the day index of a date, which may be outside the calendar */
+	public int dayIndex(LocalDate date) { return (int) (date.toEpochDay() - start.toEpochDay()); }
+
+	/** @return true if cold hardening can only be gained on this day */
+	public boolean gainOnly(int day) { return gainOnly[day]; }
+
+	/** @return true if a new beetle season starts on this day */
+	public boolean seasonStart(int day) { return seasonStart[day]; }
+
+	/** @return the gain-only flag of every day.  This is the calendar's own array: do not modify it. */
+	public boolean[] gainOnlyFlags() { return gainOnly; }
+}
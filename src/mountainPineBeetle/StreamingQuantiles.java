@@ -0,0 +1,88 @@
+package mountainPineBeetle;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Approximate quantiles of a stream of non-negative values from a fixed histogram, 
+ *  without keeping the values. <br><br>
+ *  
+ *  Zeros have their own bin, and positive values fall into bins spaced evenly on a log 
+ *  scale between {@link #lower} and {@link #upper}; values outside that range are counted 
+ *  in the first or last bin.  A quantile inside the range is within a factor of 
+ *  10<sup>1 / binsPerDecade</sup> of the exact sample quantile. <br><br>
+ *  
+ *  Values may be added from several threads at once.  The histogram is only a set of 
+ *  counts, so the quantiles do not depend on the order in which the values were added.
+ * 
+ * @author michaelfrancenelson */
+public class StreamingQuantiles {
+
+	public final double lower;
+	public final double upper;
+	public final int binsPerDecade;
+
+	private final double logLower;
+	private final int bins;
+
+	/** [0] counts zeros, [1 + i] counts values in log bin i */
+	private final AtomicLongArray counts;
+
+	/**
+	 * @param lower the smallest positive value resolved
+	 * @param upper the largest value resolved
+	 * @param binsPerDecade number of bins for each factor of 10
+	 */
+	public StreamingQuantiles(double lower, double upper, int binsPerDecade)
+	{
+		if(!(lower > 0d && upper > lower && binsPerDecade > 0)){
+			throw new IllegalArgumentException("Need 0 < lower < upper and at least one bin per decade");
+		}
+		this.lower = lower;
+		this.upper = upper;
+		this.binsPerDecade = binsPerDecade;
+		logLower = Math.log10(lower);
+		bins = Math.max(1, (int) Math.ceil((Math.log10(upper) - logLower) * binsPerDecade));
+		counts = new AtomicLongArray(bins + 1);
+	}
+
+	/** Add a value.  Negative values count as zero. */
+	public void add(double value)
+	{
+		if(!(value > 0d)){
+			counts.incrementAndGet(0);
+			return;
+		}
+		int bin = (int) Math.floor((Math.log10(value) - logLower) * binsPerDecade);
+		counts.incrementAndGet(1 + Math.max(0, Math.min(bins - 1, bin)));
+	}
+
+	/** @return the number of values added */
+	public long count()
+	{
+		long n = 0;
+		for(int i = 0; i < counts.length(); i++) n += counts.get(i);
+		return n;
+	}
+
+	/** @return the number of zeros added */
+	public long zeros() { return counts.get(0); }
+
+	/** @param probability from 0 to 1
+	 *  @return the approximate quantile, interpolated on the log scale within its bin, or NaN if empty */
+	public double quantile(double probability)
+	{
+		long n = count();
+		if(n == 0) return Double.NaN;
+		double rank = Math.max(0d, Math.min(1d, probability)) * n;
+		double cumulative = counts.get(0);
+		if(rank <= cumulative && cumulative > 0) return 0d;
+		for(int i = 0; i < bins; i++){
+			long c = counts.get(1 + i);
+			if(c > 0 && rank <= cumulative + c){
+				double fraction = (rank - cumulative) / c;
+				return Math.pow(10d, logLower + (i + fraction) / binsPerDecade);
+			}
+			cumulative += c;
+		}
+		return Math.pow(10d, logLower + (double) bins / binsPerDecade);
+	}
+}
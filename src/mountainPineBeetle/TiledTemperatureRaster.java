@@ -0,0 +1,166 @@
+package mountainPineBeetle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+
+/** A tiled stack of daily minimum and maximum temperature rasters in a binary file. <br><br>
+ *  
+ *  The raster is cut into tiles of tileRows &times; tileCols cells.  Each tile's whole series is 
+ *  stored contiguously so that one tile can be run through the season while reading only 
+ *  its own part of the file.  Edge tiles are padded to the full tile size with missing values. <br><br>
+ *  
+ *  File layout (little-endian): <br>
+ *  a 48 byte header: int magic "MPBR", int version, int rows, int cols, int tileRows, int tileCols, 
+ *  int days, int reserved, long epoch day of day 0, 8 reserved bytes, <br>
+ *  followed by the tiles in row-major order.  Each tile holds, for each day, the tile's minimum 
+ *  temperatures as floats in row-major order, then its maximum temperatures. <br><br>
+ *  
+ *  Reading is thread-safe: tiles may be read from different threads at the same time.
+ * 
+ * @author michaelfrancenelson */
+public class TiledTemperatureRaster implements Closeable {
+
+	public static final int MAGIC = 0x4D504252;
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 48;
+
+	/** Value stored for missing temperatures. */
+	public static final float MISSING = -999f;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final boolean writable;
+
+	public final int rows;
+	public final int cols;
+	public final int tileRows;
+	public final int tileCols;
+	public final int days;
+	public final LocalDate start;
+
+	private TiledTemperatureRaster(RandomAccessFile file, boolean writable, 
+			int rows, int cols, int tileRows, int tileCols, int days, LocalDate start)
+	{
+		this.file = file;
+		this.channel = file.getChannel();
+		this.writable = writable;
+		this.rows = rows; this.cols = cols;
+		this.tileRows = tileRows; this.tileCols = tileCols;
+		this.days = days; this.start = start;
+	}
+
+	/** Open an existing raster stack for reading. */
+	public static TiledTemperatureRaster open(String fileName) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		while(header.hasRemaining()){
+			if(file.getChannel().read(header, header.position()) < 0){
+				file.close();
+				throw new IOException(fileName + " is too short for a raster stack header");
+			}
+		}
+		header.flip();
+		if(header.getInt() != MAGIC || header.getInt() != VERSION){
+			file.close();
+			throw new IOException(fileName + " is not a version " + VERSION + " tiled temperature raster");
+		}
+		int rows = header.getInt(), cols = header.getInt();
+		int tileRows = header.getInt(), tileCols = header.getInt();
+		int days = header.getInt();
+		header.getInt();
+		LocalDate start = LocalDate.ofEpochDay(header.getLong());
+
+		TiledTemperatureRaster raster = new TiledTemperatureRaster(file, false, rows, cols, tileRows, tileCols, days, start);
+		if(file.length() < raster.expectedLength()){
+			file.close();
+			throw new IOException(fileName + " is truncated");
+		}
+		return raster;
+	}
+
+	/** Create a new raster stack, with every value missing, to be filled with 
+	 *  {@link #writeTileDay(int, int, float[], float[])}. */
+	public static TiledTemperatureRaster create(String fileName, int rows, int cols, 
+			int tileRows, int tileCols, LocalDate start, int days) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		TiledTemperatureRaster raster = new TiledTemperatureRaster(file, true, rows, cols, tileRows, tileCols, days, start);
+		file.setLength(0);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(tileRows).putInt(tileCols)
+			.putInt(days).putInt(0).putLong(start.toEpochDay()).putLong(0L);
+		header.flip();
+		while(header.hasRemaining()) raster.channel.write(header, header.position());
+
+		/* Fill with missing values one tile-day at a time. */
+		ByteBuffer missing = ByteBuffer.allocate(raster.tileDayBytes()).order(ByteOrder.LITTLE_ENDIAN);
+		while(missing.hasRemaining()) missing.putFloat(MISSING);
+		long position = HEADER_BYTES;
+		for(long i = 0; i < (long) raster.tiles() * days; i++){
+			missing.clear();
+			while(missing.hasRemaining()) position += raster.channel.write(missing, position);
+		}
+		return raster;
+	}
+
+	/** @return the number of cells in a (padded) tile */
+	public int tileCells() { return tileRows * tileCols; }
+
+	/** @return the number of tile rows */
+	public int tilesDown() { return (rows + tileRows - 1) / tileRows; }
+
+	/** @return the number of tile columns */
+	public int tilesAcross() { return (cols + tileCols - 1) / tileCols; }
+
+	/** @return the number of tiles */
+	public int tiles() { return tilesDown() * tilesAcross(); }
+
+	/** @return the raster row of the first row of a tile */
+	public int tileFirstRow(int tile) { return (tile / tilesAcross()) * tileRows; }
+
+	/** @return the raster column of the first column of a tile */
+	public int tileFirstCol(int tile) { return (tile % tilesAcross()) * tileCols; }
+
+	private int tileDayBytes() { return 8 * tileCells(); }
+
+	private long tileOffset(int tile) { return HEADER_BYTES + (long) tile * days * tileDayBytes(); }
+
+	private long expectedLength() { return tileOffset(tiles()); }
+
+	/** Map the days from firstDay (inclusive) to lastDay (exclusive) of one tile for reading. <br>
+	 *  Within the returned buffer, day d's minimum temperatures start at 
+	 *  index (d - firstDay) &times; 2 &times; tileCells() and its maximum temperatures follow them.
+	 * @throws IOException */
+	public FloatBuffer mapTileDays(int tile, int firstDay, int lastDay) throws IOException
+	{
+		return channel.map(FileChannel.MapMode.READ_ONLY, 
+				tileOffset(tile) + (long) firstDay * tileDayBytes(), 
+				(long) (lastDay - firstDay) * tileDayBytes())
+				.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+	}
+
+	/** Write one day of a tile.
+	 * @param tile the tile index
+	 * @param day the day index
+	 * @param tMin the tile's minimum temperatures, tileCells() values in row-major order
+	 * @param tMax the tile's maximum temperatures, tileCells() values in row-major order */
+	public void writeTileDay(int tile, int day, float[] tMin, float[] tMax) throws IOException
+	{
+		if(!writable) throw new IllegalStateException("The raster stack was opened for reading");
+		ByteBuffer record = ByteBuffer.allocate(tileDayBytes()).order(ByteOrder.LITTLE_ENDIAN);
+		record.asFloatBuffer().put(tMin, 0, tileCells()).put(tMax, 0, tileCells());
+		long position = tileOffset(tile) + (long) day * tileDayBytes();
+		while(record.hasRemaining()) position += channel.write(record, position);
+	}
+
+	@Override
+	public void close() throws IOException { file.close(); }
+}
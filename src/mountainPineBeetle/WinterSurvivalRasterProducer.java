@@ -0,0 +1,201 @@
+package mountainPineBeetle;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mountainPineBeetle.RegniereBentzMPBCalculator.ParameterSet;
+
+/** Produces gridded winter survival from a {@link TiledTemperatureRaster}. <br><br>
+ *  
+ *  Every cell is run through the Regniere and Bentz model for all days of the stack, 
+ *  which should cover one season from the 1st of August to the following 31st of July.  
+ *  Two rasters are written: the survival at the end of the season and the lowest median 
+ *  lethal temperature (equation 8) reached during the season. <br><br>
+ *  
+ *  Tiles are run in parallel on a fork-join pool.  Each tile only needs state arrays 
+ *  with one entry per tile cell and a mapped window of at most {@link #WINDOW_BYTES} 
+ *  of its temperatures, so memory use is bounded by the tile size and the number of 
+ *  threads rather than the size of the raster. <br><br>
+ *  
+ *  The outputs are ESRI float grids: a little-endian .flt file of 32 bit floats in row-major
+ *  order with a text .hdr file beside it.  Cells with missing temperatures on every day 
+ *  of the stack are written as {@link #NODATA} in both rasters.
+ * 
+ * @author michaelfrancenelson */
+public class WinterSurvivalRasterProducer {
+
+	/** Largest window of a tile's temperatures mapped at one time. */
+	public static final long WINDOW_BYTES = 1L << 26;
+
+	/** No-data value written to the .hdr files. */
+	public static final float NODATA = -9999f;
+
+	final ParameterSet params;
+
+	boolean tabulated = false;
+
+	double xllCorner = 0d, yllCorner = 0d, cellSize = 1d;
+
+	public WinterSurvivalRasterProducer(ParameterSet params) { this.params = params; }
+
+	/** Opt in to the faster, approximate update that evaluates the logistic functions from
+	 *  a lookup table.  See {@link RegniereBentzMPBCalculator#updateStatesTabulated}. */
+	public void setTabulated(boolean tabulated) { this.tabulated = tabulated; }
+
+	/** Set the location and cell size written to the .hdr files. */
+	public void setGeoreference(double xllCorner, double yllCorner, double cellSize)
+	{
+		this.xllCorner = xllCorner; this.yllCorner = yllCorner; this.cellSize = cellSize;
+	}
+
+	/** Run on the common fork-join pool.  
+	 *  See {@link #run(TiledTemperatureRaster, String, String, ForkJoinPool)}. */
+	public void run(TiledTemperatureRaster temperatures, String survivalFile, String minLethalFile) throws IOException
+	{
+		run(temperatures, survivalFile, minLethalFile, ForkJoinPool.commonPool());
+	}
+
+	/** Run every cell of a raster stack through the season.
+	 * @param temperatures the daily minimum and maximum temperatures
+	 * @param survivalFile name of the .flt file for the final survival, the .hdr file is written beside it
+	 * @param minLethalFile name of the .flt file for the lowest median lethal temperature
+	 * @param pool the pool to run the tiles on
+	 * @throws IOException */
+	public void run(TiledTemperatureRaster temperatures, String survivalFile, String minLethalFile, 
+			ForkJoinPool pool) throws IOException
+	{
+		SeasonCalendar calendar = new SeasonCalendar(temperatures.start, temperatures.days);
+		try(RandomAccessFile survival = new RandomAccessFile(survivalFile, "rw");
+				RandomAccessFile minLethal = new RandomAccessFile(minLethalFile, "rw"))
+		{
+			long length = 4L * temperatures.rows * temperatures.cols;
+			survival.setLength(0); survival.setLength(length);
+			minLethal.setLength(0); minLethal.setLength(length);
+			pool.invoke(new TileTask(temperatures, calendar, survival.getChannel(), minLethal.getChannel(),
+					0, temperatures.tiles()));
+		}
+		catch(UncheckedIOException e) { throw e.getCause(); }
+		writeHeader(survivalFile, temperatures);
+		writeHeader(minLethalFile, temperatures);
+	}
+
+	/** Run one tile through the season, writing its cells into the output rasters. */
+	void runTile(TiledTemperatureRaster temperatures, SeasonCalendar calendar, int tile, 
+			FileChannel survivalOut, FileChannel minLethalOut) throws IOException
+	{
+		int cells = temperatures.tileCells();
+		double[] tMin = new double[cells], tMax = new double[cells];
+		double[] coldHardening = new double[cells], gain = new double[cells], loss = new double[cells];
+		double[] survival = new double[cells], minLethal = new double[cells];
+		int[] validDays = new int[cells];
+		Arrays.fill(survival, 1d);
+		Arrays.fill(minLethal, Double.POSITIVE_INFINITY);
+
+		int windowDays = (int) Math.max(1, Math.min(temperatures.days, WINDOW_BYTES / (8L * cells)));
+		for(int first = 0; first < temperatures.days; first += windowDays){
+			int last = Math.min(temperatures.days, first + windowDays);
+			FloatBuffer window = temperatures.mapTileDays(tile, first, last);
+			for(int day = first; day < last; day++){
+				for(int i = 0; i < cells; i++) tMin[i] = window.get();
+				for(int i = 0; i < cells; i++){
+					tMax[i] = window.get();
+					/* The same missing-data test as the update. */
+					if(tMin[i] > -999 && tMax[i] > -999) validDays[i]++;
+				}
+				if(tabulated){
+					RegniereBentzMPBCalculator.updateStatesTabulated(params, tMin, tMax, calendar.gainOnly(day),
+							coldHardening, gain, loss, survival, 0, cells);
+				} else {
+					RegniereBentzMPBCalculator.updateStates(params, calendar, day, tMin, tMax,
+							coldHardening, gain, loss, survival);
+				}
+				for(int i = 0; i < cells; i++){
+					minLethal[i] = Math.min(minLethal[i], 
+							RegniereBentzMPBCalculator.medianLethalTemperature(params, coldHardening[i]));
+				}
+			}
+		}
+		/* Cells with no temperatures on any day (masks, water, gaps in the stack) have no result. */
+		for(int i = 0; i < cells; i++){
+			if(validDays[i] == 0){
+				survival[i] = NODATA;
+				minLethal[i] = NODATA;
+			}
+		}
+		writeTile(temperatures, tile, survival, survivalOut);
+		writeTile(temperatures, tile, minLethal, minLethalOut);
+	}
+
+	/** Write the cells of a tile that lie inside the raster. */
+	static void writeTile(TiledTemperatureRaster raster, int tile, double[] values, FileChannel out) throws IOException
+	{
+		int row0 = raster.tileFirstRow(tile), col0 = raster.tileFirstCol(tile);
+		int nRows = Math.min(raster.tileRows, raster.rows - row0);
+		int nCols = Math.min(raster.tileCols, raster.cols - col0);
+		ByteBuffer buffer = ByteBuffer.allocate(4 * nCols).order(ByteOrder.LITTLE_ENDIAN);
+		for(int r = 0; r < nRows; r++){
+			buffer.clear();
+			for(int c = 0; c < nCols; c++) buffer.putFloat((float) values[r * raster.tileCols + c]);
+			buffer.flip();
+			long position = 4L * ((long) (row0 + r) * raster.cols + col0);
+			while(buffer.hasRemaining()) position += out.write(buffer, position);
+		}
+	}
+
+	/** Write the ESRI .hdr file for a .flt raster. */
+	void writeHeader(String fltFile, TiledTemperatureRaster raster) throws IOException
+	{
+		String hdrFile = (fltFile.endsWith(".flt") ? fltFile.substring(0, fltFile.length() - 4) : fltFile) + ".hdr";
+		try(PrintWriter out = new PrintWriter(hdrFile, "US-ASCII"))
+		{
+			out.println("ncols " + raster.cols);
+			out.println("nrows " + raster.rows);
+			out.println("xllcorner " + xllCorner);
+			out.println("yllcorner " + yllCorner);
+			out.println("cellsize " + cellSize);
+			out.println("NODATA_value " + NODATA);
+			out.println("byteorder LSBFIRST");
+		}
+	}
+
+	/** Splits a range of tiles until a single tile is left. */
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final TiledTemperatureRaster temperatures;
+		final SeasonCalendar calendar;
+		final FileChannel survivalOut, minLethalOut;
+		final int from, to;
+
+		TileTask(TiledTemperatureRaster temperatures, SeasonCalendar calendar, 
+				FileChannel survivalOut, FileChannel minLethalOut, int from, int to)
+		{
+			this.temperatures = temperatures; this.calendar = calendar;
+			this.survivalOut = survivalOut; this.minLethalOut = minLethalOut;
+			this.from = from; this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= 0) return;
+			if(to - from == 1){
+				try { runTile(temperatures, calendar, from, survivalOut, minLethalOut); }
+				catch(IOException e) { throw new UncheckedIOException(e); }
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new TileTask(temperatures, calendar, survivalOut, minLethalOut, from, mid),
+					new TileTask(temperatures, calendar, survivalOut, minLethalOut, mid, to));
+		}
+	}
+}
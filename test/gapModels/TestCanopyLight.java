@@ -0,0 +1,43 @@
+package gapModels;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+import org.junit.Test;
+
+public class TestCanopyLight {
+
+	@Test
+	public void testMatchesPairwise()
+	{
+		UniformRandomProvider random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 7L);
+		SpeciesAllometry allometry = new SpeciesAllometry();
+		allometry.register("sugar maple", 152.5, 40.11, 200, 170d, 1.57, 2000d, 6300d, true);
+		GapModelEngine engine = new GapModelEngine(allometry);
+		CanopyLight canopy = new CanopyLight();
+
+		for (int n : new int[] {0, 1, 15, 16, 17, 100, 1000})
+		{
+			GapPlot plot = new GapPlot(n);
+			for (int i = 0; i < n; i++)
+			{
+				/* Rounded heights give ties. */
+				double height = Math.round(random.nextDouble() * 40d * 4d) / 4d;
+				plot.add(0, 1d, height, 10d * random.nextDouble());
+			}
+			engine.lightPassPairwise(plot);
+			double[] expected = plot.light.clone();
+			double expectedFloor = plot.floorLight;
+
+			double[] light = new double[n];
+			double floor = canopy.lightAvailability(plot.height, plot.leafArea, n, 1d, 0.005, light);
+			assertEquals(expectedFloor, floor, 1e-12);
+			for (int i = 0; i < n; i++) assertEquals(expected[i], light[i], 1e-12);
+
+			/* Already sorted, tallest first. */
+			int[] order = canopy.sortByHeight(plot.height, n);
+			for (int i = 1; i < n; i++) assertEquals(true, plot.height[order[i - 1]] >= plot.height[order[i]]);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package gapModels;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestForskaCanopy {
+
+	int layers = 40;
+	double depth = 1d, area = 100d;
+	double[] compensation = new double[] {5d, 20d};
+	double[] halfSaturation = new double[] {50d, 150d};
+
+	int trees = 60;
+	int[] species = new int[trees];
+	double[] height = new double[trees], bole = new double[trees], leafArea = new double[trees];
+
+	UniformRandomProvider random;
+
+	@Before
+	public void setup()
+	{
+		random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 5L);
+		for (int i = 0; i < trees; i++)
+		{
+			species[i] = i % 2;
+			height[i] = 2d + 36d * random.nextDouble();
+			bole[i] = height[i] * 0.6 * random.nextDouble();
+			leafArea[i] = 20d * random.nextDouble();
+		}
+		/* Crowns that start or end on layer boundaries, and one with no depth. */
+		height[0] = 30d; bole[0] = 10d;
+		height[1] = 12.5; bole[1] = 12.5;
+	}
+
+	ForskaCanopy build()
+	{
+		ForskaCanopy canopy = new ForskaCanopy(layers, depth, area, compensation, halfSaturation);
+		for (int i = 0; i < trees; i++) canopy.add(height[i], bole[i], leafArea[i]);
+		return canopy;
+	}
+
+	@Test
+	public void testLightProfile()
+	{
+		ForskaCanopy canopy = build();
+		double total = 0d;
+		double[] lai = new double[layers];
+		for (int i = 0; i < layers; i++)
+		{
+			lai[i] = canopy.leafAreaIndex(i);
+			total += lai[i];
+		}
+		double expectedTotal = 0d;
+		for (double a : leafArea) expectedTotal += a / area;
+		assertEquals(expectedTotal, total, 1e-12);
+
+		double[] expected = ForskaCalculator.forskaLightIntensitiesDepthsCylinder(lai, 0.4, 400d);
+		assertEquals(layers + 1, expected.length);
+		assertEquals(400d, expected[0], 0d);
+		for (int i = 0; i <= layers; i++) assertEquals(expected[i], canopy.lightIntensity(i), 1e-9);
+	}
+
+	@Test
+	public void testAssimilationMatchesLayerSum()
+	{
+		ForskaCanopy canopy = build();
+		double[] out = new double[trees];
+		canopy.assimilation(species, height, bole, trees, out);
+		for (int i = 0; i < trees; i++)
+		{
+			double expected = ForskaCalculator.forskaNetLightAssimilationLayers(
+					canopy.lightResponses(species[i]), depth, layers * depth, height[i], bole[i]);
+			assertEquals(expected, out[i], 1e-9);
+		}
+	}
+
+	@Test
+	public void testStaticChain()
+	{
+		/* Layer LAI -> boundary intensities -> boundary responses -> crown integral, 
+		 * using only the ForskaCalculator equations. */
+		ForskaCanopy canopy = build();
+		double[] lai = new double[layers];
+		for (int i = 0; i < layers; i++) lai[i] = canopy.leafAreaIndex(i);
+		double[] intensities = ForskaCalculator.forskaLightIntensitiesDepthsCylinder(lai, 0.4, 400d);
+		for (int s = 0; s < compensation.length; s++)
+		{
+			double[] responses = ForskaCalculator.forskaCylinderLightResponseLayers(intensities, 0.4, compensation[s], halfSaturation[s]);
+			assertEquals(layers + 1, responses.length);
+			for (int i = 0; i < trees; i++)
+			{
+				if (species[i] != s) continue;
+				double chain = ForskaCalculator.forskaNetLightAssimilationLayers(responses, depth, layers * depth, height[i], bole[i]);
+				assertEquals(canopy.assimilation(s, height[i], bole[i]), chain, 1e-9);
+			}
+		}
+
+		/* A crown filling the top layer integrates the top boundary's response. */
+		double[] responses = ForskaCalculator.forskaCylinderLightResponseLayers(intensities, 0.4, compensation[0], halfSaturation[0]);
+		double top = ForskaCalculator.forskaNetLightAssimilationLayers(responses, depth, layers * depth, layers * depth, (layers - 1) * depth);
+		assertEquals(0.5 * (responses[0] + responses[1]) * depth, top, 1e-12);
+		assertEquals(ForskaCalculator.forskaCylinderLightResponse(400d, 0.4, compensation[0], halfSaturation[0]), responses[0], 0d);
+	}
+
+	@Test
+	public void testIncrementalUpdates()
+	{
+		ForskaCanopy canopy = build();
+		/* Grow some trees and kill others, then compare with a canopy built from scratch. */
+		for (int i = 0; i < trees; i++)
+		{
+			if (i % 3 == 0)
+			{
+				double h = Math.min(39d, height[i] + 0.7), b = bole[i] + 0.2, a = leafArea[i] * 1.1;
+				canopy.update(height[i], bole[i], leafArea[i], h, b, a);
+				height[i] = h; bole[i] = b; leafArea[i] = a;
+			} 
+			else if (i % 7 == 0)
+			{
+				canopy.remove(height[i], bole[i], leafArea[i]);
+				leafArea[i] = 0d;
+			}
+		}
+		canopy.assimilation(0, 10d, 5d);
+		ForskaCanopy rebuilt = build();
+		for (int i = 0; i < layers; i++) assertEquals(rebuilt.leafAreaIndex(i), canopy.leafAreaIndex(i), 1e-12);
+		for (int i = 0; i < trees; i++)
+			assertEquals(rebuilt.assimilation(species[i], height[i], bole[i]), 
+					canopy.assimilation(species[i], height[i], bole[i]), 1e-9);
+	}
+}
@@ -0,0 +1,121 @@
+package gapModels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGapModelEngine {
+
+	Logger logger = LogManager.getLogger();
+
+	SpeciesAllometry allometry;
+	GapModelEngine engine;
+
+	@Before
+	public void setup()
+	{
+		/* Sugar maple, yellow birch and pin cherry from Botkin et al. 1972. */
+		allometry = new SpeciesAllometry();
+		allometry.register("sugar maple", 152.5, 40.11, 200, 170d, 1.57, 2000d, 6300d, true);
+		allometry.register("yellow birch", 122d, 30.5, 300, 100d, 2.45, 2000d, 5300d, false);
+		allometry.register("pin cherry", 28d, 11.26, 30, 200d, 2.45, 1100d, 6000d, false);
+		engine = new GapModelEngine(allometry);
+	}
+
+	GapPlot newPlot()
+	{
+		GapPlot plot = new GapPlot(64);
+		plot.degreeDays = 3500d;
+		return plot;
+	}
+
+	@Test
+	public void testCompaction()
+	{
+		GapPlot plot = new GapPlot(2);
+		for (int i = 0; i < 5; i++) plot.add(i % 3, 10d + i, 5d + i, 1d + i);
+		assertTrue(plot.capacity() >= 5);
+		plot.alive[1] = false;
+		plot.alive[4] = false;
+		assertEquals(2, plot.compact());
+		assertEquals(3, plot.trees);
+		assertEquals(10d, plot.dbh[0], 0d);
+		assertEquals(12d, plot.dbh[1], 0d);
+		assertEquals(13d, plot.dbh[2], 0d);
+		assertEquals(0, plot.species[2]);
+	}
+
+	@Test
+	public void testLightPass()
+	{
+		GapPlot plot = newPlot();
+		plot.add(0, 30d, 20d, 50d);
+		plot.add(1, 20d, 15d, 30d);
+		plot.add(2, 20d, 15d, 40d);
+		engine.lightPass(plot);
+		assertEquals(1d, plot.light[0], 0d);
+		assertEquals(GapModelCalculator.diskLightAvailability(1d, 0.005, 50d), plot.light[1], 1e-15);
+		assertEquals(plot.light[1], plot.light[2], 0d);
+		assertEquals(GapModelCalculator.diskLightAvailability(1d, 0.005, 120d), plot.floorLight, 1e-15);
+	}
+
+	@Test
+	public void testSuccession()
+	{
+		GapPlot plot = newPlot();
+		engine.run(plot, 400, RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 42L));
+		int[] count = new int[allometry.species()];
+		for (int i = 0; i < plot.trees; i++)
+		{
+			assertTrue(plot.alive[i]);
+			assertTrue(plot.dbh[i] > 0d && plot.dbh[i] <= allometry.dbhMax(plot.species[i]));
+			count[plot.species[i]]++;
+		}
+		logger.debug("trees: " + plot.trees + ", basal area: " + plot.basalArea() + 
+				", by species: " + Arrays.toString(count));
+		assertTrue(plot.trees > 0);
+		assertTrue(plot.basalArea() < 2d * 1.5);
+
+		/* The same seed gives the same plot. */
+		GapPlot again = newPlot();
+		engine.run(again, 400, RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 42L));
+		assertEquals(plot.trees, again.trees);
+		for (int i = 0; i < plot.trees; i++) assertEquals(plot.dbh[i], again.dbh[i], 0d);
+	}
+
+	@Test
+	public void testNoRegenerationOutsideDegreeDayRange()
+	{
+		GapPlot plot = newPlot();
+		plot.degreeDays = 500d;
+		UniformRandomProvider random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 1L);
+		engine.run(plot, 10, random);
+		assertEquals(0, plot.trees);
+	}
+
+	@Test
+	public void testSpeciesRegisteredAfterEngine()
+	{
+		/* Only the new species can establish at these degree days. */
+		for (int s = 0; s < allometry.species(); s++) engine.setSaplingsMax(s, 0);
+		int aspen = allometry.register("quaking aspen", 60d, 25d, 120, 200d, 2.45, 600d, 6000d, false);
+		GapPlot plot = newPlot();
+		UniformRandomProvider random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 1L);
+		engine.run(plot, 5, random);
+		assertTrue(plot.trees > 0);
+		for (int i = 0; i < plot.trees; i++) assertEquals(aspen, plot.species[i]);
+
+		engine.setSaplingsMax(aspen, 0);
+		GapPlot empty = newPlot();
+		engine.run(empty, 5, random);
+		assertEquals(0, empty.trees);
+	}
+}
@@ -0,0 +1,104 @@
+package gapModels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.rng.JumpableUniformRandomProvider;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGapModelEnsemble {
+
+	Logger logger = LogManager.getLogger();
+
+	GapModelEngine engine;
+	GapPlot bare;
+	int years = 60;
+
+	@Before
+	public void setup()
+	{
+		/* Values from the parameter table in Botkin et al. 1972. */
+		double[] heightMax = new double[] {40.11, 36.6,  30.5,  21.6,  5,    10,   11.26, 5,    18.3,  18.3,  18.3, 5,    36.6 };
+		double[] dbhMax = new double[]    {152.5, 122,   122,   50,    13.5, 22.5, 28,    10,   50,    50,    46,   10,   152.5 };
+		int[] ageMax = new int[]          {200,   300,   300,   100,   25,   30,   30,    20,   80,    80,    80,   30,   150 };
+		double[] g = new double[]         {170,   150,   100,   130,   150,  150,  200,   150,  200,   200,   140,  150,  240 };
+
+		SpeciesAllometry allometry = new SpeciesAllometry();
+		for (int i = 0; i < dbhMax.length; i++)
+			allometry.register("species" + i, dbhMax[i], heightMax[i], ageMax[i], g[i],
+					1.5 + 0.1 * i, 2000d + 100d * i, 5000d + 150d * i, i % 3 == 0);
+		engine = new GapModelEngine(allometry);
+		bare = new GapPlot(1);
+		bare.degreeDays = 3500d;
+	}
+
+	@Test
+	public void testStreamingMoments()
+	{
+		UniformRandomProvider random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 3L);
+		double[] values = new double[1001];
+		StreamingMoments all = new StreamingMoments(1), left = new StreamingMoments(1), right = new StreamingMoments(1);
+		double sum = 0d;
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = 1e6 + random.nextDouble();
+			sum += values[i];
+			all.add(0, values[i]);
+			(i < 300 ? left : right).add(0, values[i]);
+		}
+		double mean = sum / values.length, ss = 0d;
+		for (double v : values) ss += (v - mean) * (v - mean);
+		left.merge(right);
+		for (StreamingMoments m : new StreamingMoments[] {all, left})
+		{
+			assertEquals(values.length, m.count(0));
+			assertEquals(mean, m.mean(0), 1e-6);
+			assertEquals(ss / (values.length - 1), m.variance(0), 1e-9);
+		}
+	}
+
+	@Test
+	public void testReproducibleAcrossPools()
+	{
+		GapModelEnsemble ensemble = new GapModelEnsemble(engine, bare, years);
+		int plots = 40;
+		final double[] finalBasalArea = new double[plots];
+		GapModelEnsemble.Summary one = ensemble.run(plots, 11L, 
+				(index, plot) -> finalBasalArea[index] = plot.basalArea(), new ForkJoinPool(1));
+		GapModelEnsemble.Summary three = ensemble.run(plots, 11L, null, new ForkJoinPool(3));
+		for (int y = 0; y < years; y++)
+		{
+			assertEquals(one.basalArea.mean(y), three.basalArea.mean(y), 0d);
+			assertEquals(one.biomass.variance(y), three.biomass.variance(y), 0d);
+			assertEquals(one.speciesBasalArea.mean(y * 13 + 4), three.speciesBasalArea.mean(y * 13 + 4), 0d);
+		}
+
+		/* Plot p is plot p of a sequential run with the p-th jump of the seeded generator. */
+		JumpableUniformRandomProvider root = 
+				(JumpableUniformRandomProvider) RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 11L);
+		StreamingMoments expected = new StreamingMoments(1);
+		GapPlot plot = new GapPlot(64);
+		for (int p = 0; p < plots; p++)
+		{
+			plot.set(bare);
+			engine.run(plot, years, root.jump());
+			assertEquals(finalBasalArea[p], plot.basalArea(), 1e-12);
+			expected.add(0, plot.basalArea());
+		}
+		assertEquals(expected.mean(0), one.basalArea.mean(years - 1), 1e-12);
+
+		double composition = 0d;
+		for (int s = 0; s < 13; s++) composition += one.composition(years - 1, s);
+		assertEquals(1d, composition, 1e-9);
+		assertTrue(one.stems.mean(years - 1) > 0d);
+		logger.debug("mean basal area after " + years + " years: " + one.basalArea.mean(years - 1) + 
+				" +/- " + one.basalArea.standardError(years - 1));
+	}
+}
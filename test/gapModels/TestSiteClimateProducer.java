@@ -0,0 +1,123 @@
+package gapModels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestSiteClimateProducer {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	int cells = 200_000;
+	float[] elevation;
+	File elevationFile;
+
+	@Before
+	public void setup() throws IOException
+	{
+		elevation = new float[cells];
+		ByteBuffer bytes = ByteBuffer.allocate(4 * cells).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < cells; i++)
+		{
+			elevation[i] = i % 101 == 0 ? -9999f : (float) (200d + 3000d * i / cells);
+			bytes.putFloat(elevation[i]);
+		}
+		elevationFile = folder.newFile("elevation.flt");
+		Files.write(elevationFile.toPath(), bytes.array());
+		try (PrintWriter out = new PrintWriter(new File(folder.getRoot(), "elevation.hdr"), "US-ASCII"))
+		{
+			out.println("ncols 400");
+			out.println("nrows 500");
+			out.println("NODATA_value -9999");
+		}
+	}
+
+	float[] read(File file) throws IOException
+	{
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+		float[] values = new float[bytes.remaining() / 4];
+		bytes.asFloatBuffer().get(values);
+		return values;
+	}
+
+	@Test
+	public void testRastersAndCache() throws IOException
+	{
+		SiteClimateProducer producer = new SiteClimateProducer(500d, 20d, -8d, 6d, 4d, 4.4);
+		String cache = folder.newFolder("cache").getPath();
+		SiteClimateProducer.SiteClimate climate = producer.run(elevationFile.getPath(), cache);
+		assertEquals(false, climate.cached);
+		assertTrue(new File(climate.directory, "degreeDays.hdr").isFile());
+
+		float[] july = read(climate.july), january = read(climate.january), degreeDays = read(climate.degreeDays);
+		assertEquals(cells, degreeDays.length);
+		for (int i = 0; i < cells; i += 7)
+		{
+			if (elevation[i] == -9999f)
+			{
+				assertEquals(-9999f, degreeDays[i], 0f);
+				continue;
+			}
+			double tJuly = GapModelCalculator.jaBoWaLapseTemperature(20d, elevation[i] - 500d, 6d);
+			double tJanuary = GapModelCalculator.jaBoWaLapseTemperature(-8d, elevation[i] - 500d, 4d);
+			assertEquals(tJuly, july[i], 1e-4);
+			assertEquals(tJanuary, january[i], 1e-4);
+			assertEquals(SiteClimateProducer.degreeDays(tJuly, tJanuary, 4.4), degreeDays[i], 1e-2);
+		}
+
+		/* The same inputs come from the cache, and new parameters make a new entry. */
+		SiteClimateProducer.SiteClimate again = producer.run(elevationFile.getPath(), cache);
+		assertEquals(true, again.cached);
+		assertEquals(climate.directory, again.directory);
+		SiteClimateProducer.SiteClimate other = new SiteClimateProducer(500d, 21d, -8d, 6d, 4d, 4.4).run(elevationFile.getPath(), cache);
+		assertEquals(false, other.cached);
+		assertEquals(2, new File(cache).list().length);
+
+		/* Rewritten elevations make a new entry. */
+		assertTrue(elevationFile.setLastModified(elevationFile.lastModified() - 60_000L));
+		assertEquals(false, producer.run(elevationFile.getPath(), cache).cached);
+		assertEquals(3, new File(cache).list().length);
+	}
+
+	@Test
+	public void testFailedRunLeavesNoEntry() throws IOException
+	{
+		SiteClimateProducer producer = new SiteClimateProducer(500d, 20d, -8d, 6d, 4d, 4.4) {
+			@Override
+			void runCells(FileChannel elevationIn, FileChannel julyOut, FileChannel januaryOut, 
+					FileChannel degreeDaysOut, float nodata, long from, long to) throws IOException
+			{ throw new IOException("disk full"); }
+		};
+		String cache = folder.newFolder("cache").getPath();
+		try
+		{
+			producer.run(elevationFile.getPath(), cache);
+			fail("expected the run to fail");
+		}
+		catch (IOException e) { assertEquals("disk full", e.getMessage()); }
+		assertEquals(0, new File(cache).list().length);
+	}
+
+	@Test
+	public void testDegreeDays()
+	{
+		assertEquals(0d, SiteClimateProducer.degreeDays(3d, -20d, 4.4), 0d);
+		assertEquals(365d * (15d - 4.4), SiteClimateProducer.degreeDays(20d, 10d, 4.4), 1e-9);
+		assertEquals(GapModelCalculator.jaBoWaDegreeDaysTwoPointEstimate(20d, -8d, 4.4),
+				SiteClimateProducer.degreeDays(20d, -8d, 4.4), 0d);
+	}
+}
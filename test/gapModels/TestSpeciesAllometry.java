@@ -0,0 +1,70 @@
+package gapModels;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSpeciesAllometry {
+
+	double[] heightMax;
+	double[] dbhMax;
+	int[] ageMax;
+	double[] g;
+
+	double b1 = 1.37;
+	SpeciesAllometry allometry;
+
+	@Before
+	public void setup()
+	{
+		/* Values from the parameter table in Botkin et al. 1972. */
+		heightMax = new double[] {40.11, 36.6,  30.5,  21.6,  5,    10,   11.26, 5,    18.3,  18.3,  18.3, 5,    36.6 };
+		dbhMax = new double[]    {152.5, 122,   122,   50,    13.5, 22.5, 28,    10,   50,    50,    46,   10,   152.5 };
+		ageMax = new int[]       {200,   300,   300,   100,   25,   30,   30,    20,   80,    80,    80,   30,   150 };
+		g = new double[]         {170,   150,   100,   130,   150,  150,  200,   150,  200,   200,   140,  150,  240 };
+
+		allometry = new SpeciesAllometry(b1);
+		for (int i = 0; i < dbhMax.length; i++)
+		{
+			/* Species with an even index use the table's G, odd ones the calculated G. */
+			int id = allometry.register("species" + i, dbhMax[i], heightMax[i], ageMax[i], i % 2 == 0 ? g[i] : Double.NaN,
+					1.5 + 0.1 * i, 2000d + 100d * i, 5000d + 150d * i, i % 3 == 0);
+			assertEquals(i, id);
+		}
+	}
+
+	@Test
+	public void testCachedConstants()
+	{
+		assertEquals(dbhMax.length, allometry.species());
+		assertEquals(4, allometry.id("species4"));
+		assertEquals(-1, allometry.id("none"));
+		for (int i = 0; i < dbhMax.length; i++)
+		{
+			double b2 = GapModelCalculator.allometricHeightParameterB2(b1, heightMax[i], dbhMax[i]);
+			double b3 = GapModelCalculator.allometricHeightParameterB3(b1, heightMax[i], dbhMax[i]);
+			double gi = i % 2 == 0 ? g[i] : GapModelCalculator.growthParameterG_Jabowa(ageMax[i], dbhMax[i], heightMax[i]);
+			assertEquals(b2, allometry.b2(i), 0d);
+			assertEquals(b3, allometry.b3(i), 0d);
+			assertEquals(gi, allometry.g(i), 0d);
+			assertEquals(GapModelCalculator.foretFortranGR(100d * b1, b2, b3), allometry.gr(i), 0d);
+			assertEquals(GapModelCalculator.yearlyExponentialMortalityRate(0.01, ageMax[i]), allometry.mortality(i), 0d);
+
+			for (double dbh = 0.5; dbh < dbhMax[i]; dbh += dbhMax[i] / 7d)
+			{
+				double height = GapModelCalculator.allometricPolynomialHeight(b1, b2, b3, dbh);
+				assertEquals(height, allometry.height(i, dbh), 1e-12);
+				assertEquals(GapModelCalculator.allometricMaxDiameterIncrementDiskJabowa(gi, dbh, height, dbhMax[i], heightMax[i], b1, b2, b3),
+						allometry.maxDiameterIncrement(i, dbh, height), 1e-12);
+				assertEquals(GapModelCalculator.foretFortranMaxDBHIncrement(gi, dbh, 100d * b1, b2, b3),
+						allometry.foretMaxDiameterIncrement(i, dbh), 1e-9);
+				assertEquals(GapModelCalculator.jabowaAllometricLeafArea(
+						GapModelCalculator.leafWeightJaBoWa(1.5 + 0.1 * i, dbh, 2d), 45d), allometry.leafArea(i, dbh), 1e-12);
+			}
+			for (double dd = 1000d; dd < 8000d; dd += 500d)
+				assertEquals(GapModelCalculator.parabolicDegreeDayTemperatureEffect(2000d + 100d * i, 5000d + 150d * i, dd),
+						allometry.temperatureEffect(i, dd), 1e-12);
+		}
+	}
+}
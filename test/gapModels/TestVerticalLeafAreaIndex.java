@@ -0,0 +1,107 @@
+package gapModels;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+import org.junit.Test;
+
+import gapModels.forClim.ForClimPlantCalculator;
+
+public class TestVerticalLeafAreaIndex {
+
+	double tol = 1e-9;
+
+	@Test
+	public void testDiskCrowns()
+	{
+		UniformRandomProvider random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 9L);
+		VerticalLeafAreaIndex index = new VerticalLeafAreaIndex(400, 0.1, 100d);
+		int n = 200;
+		double[] height = new double[n], leafArea = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			/* One tree per bucket, at the middle of the bucket. */
+			height[i] = 0.1 * (2 * i + 0.5);
+			leafArea[i] = 10d * random.nextDouble();
+			index.add(height[i], leafArea[i]);
+		}
+		/* Grow every third tree into the next empty bucket and remove every fifth. */
+		for (int i = 0; i < n; i += 3)
+		{
+			index.resize(height[i], leafArea[i], height[i] + 0.1, 1.5 * leafArea[i]);
+			height[i] += 0.1; leafArea[i] *= 1.5;
+		}
+		for (int i = 0; i < n; i += 5)
+		{
+			index.remove(height[i], leafArea[i]);
+			leafArea[i] = 0d;
+		}
+
+		double[] light = new double[n];
+		new CanopyLight().lightAvailability(height, leafArea, n, 1d, 0.005, light);
+		for (int i = 0; i < n; i++)
+		{
+			double above = 0d;
+			for (int j = 0; j < n; j++) if (height[j] > height[i]) above += leafArea[j];
+			assertEquals(above, index.foliageAboveDisk(height[i]), tol);
+			assertEquals(light[i], GapModelCalculator.diskLightAvailability(1d, 0.005, index, height[i]), tol);
+			assertEquals(ForClimPlantCalculator.lightAvailablilty(above / 100d, 0.25), 
+					ForClimPlantCalculator.lightAvailablilty(index, height[i], 0.25), tol);
+		}
+	}
+
+	@Test
+	public void testCylinderCrowns()
+	{
+		/* Crowns that start and end on bucket boundaries, one reaching above the top. */
+		VerticalLeafAreaIndex index = new VerticalLeafAreaIndex(10, 2d, 50d);
+		index.add(14d, 2d, 100d);
+		index.add(8d, 6d, 20d);
+		index.add(25d, 16d, 30d);
+
+		assertEquals(150d, index.foliage(), tol);
+		/* Foliage above z from each crown spread evenly between bole and top. */
+		for (double z = 0d; z <= 20d; z += 0.25)
+		{
+			double expected = 100d * clamp((14d - z) / 12d) + 20d * clamp((8d - z) / 2d) + 30d * clamp((20d - z) / 4d);
+			assertEquals(expected, index.foliageAbove(z), tol);
+			assertEquals(expected / 50d, index.leafAreaIndexAbove(z), tol);
+		}
+
+		/* Crowns that end inside a bucket. */
+		index.resize(14d, 2d, 100d, 13d, 3d, 110d);
+		index.remove(8d, 6d, 20d);
+		index.add(7d, 6.5, 5d);
+		assertEquals(11d, index.foliageInBucket(1), tol);
+		assertEquals(22d + 5d, index.foliageInBucket(3), tol);
+		assertEquals(11d, index.foliageInBucket(6), tol);
+		assertEquals(145d, index.foliage(), tol);
+	}
+
+	@Test
+	public void testSuffixSums()
+	{
+		UniformRandomProvider random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 13L);
+		for (int buckets : new int[] {1, 7, 16, 37})
+		{
+			VerticalLeafAreaIndex index = new VerticalLeafAreaIndex(buckets, 1d, 1d);
+			double[] suffix = new double[buckets + 1];
+			for (int k = 0; k < 30; k++)
+			{
+				double height = buckets * random.nextDouble();
+				index.add(height, height * random.nextDouble(), random.nextDouble());
+				/* Queries between updates need no rebuild. */
+				index.suffixSums(suffix);
+				assertEquals(0d, suffix[buckets], 0d);
+				for (int b = 0; b < buckets; b++)
+				{
+					assertEquals(index.foliageAboveBucket(b - 1), suffix[b], tol);
+					assertEquals(index.foliageInBucket(b), suffix[b] - suffix[b + 1], tol);
+				}
+			}
+		}
+	}
+
+	static double clamp(double x) { return Math.min(1d, Math.max(0d, x)); }
+}
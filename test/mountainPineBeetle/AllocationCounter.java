@@ -0,0 +1,41 @@
+package mountainPineBeetle;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+
+/** Counts the bytes the current thread allocates while running some work, 
+ *  for tests that check a loop creates no objects. <br>
+ *  Per-thread allocation counters are a HotSpot extension: on other JVMs the 
+ *  calling test is skipped. <br><br>
+ *  
+ *  NOTE: once the JIT has compiled the work, escape analysis can hide 
+ *  short-lived arrays, so the count is strictest when run in a fresh JVM. */
+final class AllocationCounter {
+
+	/** Slack for the counter itself: one array per update in the calling tests 
+	 *  would be far more than this. */
+	static final double SLACK_BYTES = 1024d;
+
+	private AllocationCounter() {}
+
+	/** @param warmUp run first and not counted: the first calls to the counter and 
+	 *  the code under test may allocate during class loading and initialization
+	 *  @param work the work to count
+	 *  @return the bytes allocated by the current thread while running work */
+	static long allocatedBytes(Runnable warmUp, Runnable work)
+	{
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = 
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		long threadId = Thread.currentThread().getId();
+
+		threadBean.getThreadAllocatedBytes(threadId);
+		warmUp.run();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		work.run();
+		return threadBean.getThreadAllocatedBytes(threadId) - before;
+	}
+}
@@ -0,0 +1,67 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestBoleAreaTable {
+
+	double[] dbh = new double[] {0.10, 0.15, 0.20, 0.25, 0.30, 0.35, 0.40};
+
+	@Test
+	public void testBoleArea()
+	{
+		/* The cumulative area from the Figure 1 caption is the product of f1 and f2. */
+		for (double p = 0d; p < 0.99; p += 0.05)
+			assertEquals(SafranyikMPBCalculator.cumulativeBoleArea(0.2, 18d, p),
+					SafranyikMPBCalculator.infestedBoleSurfaceArea(0.2, 18d, p * 18d), 1e-12);
+
+		assertEquals(0.0059, SafranyikMPBCalculator.proportionBoleAreaBelow(-1d, 18d), 0d);
+		assertEquals(1d, SafranyikMPBCalculator.proportionBoleAreaBelow(18d, 18d), 0d);
+		assertEquals(1d, SafranyikMPBCalculator.proportionBoleAreaBelow(25d, 18d), 0d);
+		assertEquals(0d, SafranyikMPBCalculator.proportionBoleAreaBelow(5d, 0d), 0d);
+		assertTrue(SafranyikMPBCalculator.infestedBoleSurfaceArea(0.2, 18d, 9d) > 0d);
+	}
+
+	@Test
+	public void testTableError()
+	{
+		BoleAreaTable table = new BoleAreaTable(dbh, 40d, 40, 64);
+		double worst = 0d;
+		for (int c = 0; c < dbh.length; c++)
+		{
+			for (double height = 0.5; height < 45d; height += 0.37)
+			{
+				double clamped = Math.min(height, 40d);
+				double total = SafranyikMPBCalculator.totalBoleSurfaceArea(dbh[c], clamped);
+				for (double infested = 0d; infested <= height * 1.1; infested += 0.13)
+				{
+					double exact = SafranyikMPBCalculator.infestedBoleSurfaceArea(dbh[c], clamped, 
+							Math.min(infested, height) / height * clamped);
+					double error = Math.abs(table.area(c, height, infested) - exact) / total;
+					worst = Math.max(worst, error);
+				}
+			}
+		}
+		assertTrue("relative error " + worst, worst <= table.maxRelativeError() + 1e-12);
+	}
+
+	@Test
+	public void testFillBarkArea()
+	{
+		SafranyikStand stand = new SafranyikStand(dbh.length);
+		double[] infestedHeight = new double[dbh.length];
+		for (int i = 0; i < dbh.length; i++)
+		{
+			stand.dbh[i] = 100d * dbh[i];
+			stand.height[i] = 10d + 2d * i;
+			infestedHeight[i] = 0.6 * stand.height[i];
+		}
+		BoleAreaTable table = BoleAreaTable.forStand(stand, 40d, 40, 64);
+		table.fillBarkArea(stand, infestedHeight);
+		for (int i = 0; i < dbh.length; i++)
+			assertEquals(SafranyikMPBCalculator.infestedBoleSurfaceArea(dbh[i], stand.height[i], infestedHeight[i]),
+					stand.barkArea[i], table.maxRelativeError() * SafranyikMPBCalculator.totalBoleSurfaceArea(dbh[i], stand.height[i]));
+	}
+}
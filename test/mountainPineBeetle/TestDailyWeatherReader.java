@@ -0,0 +1,246 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mountainPineBeetle.RegniereBentzMPBCalculator.ParameterSet;
+
+public class TestDailyWeatherReader {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	int nStations = 7;
+	int nDays = 800;
+	LocalDate start = LocalDate.of(2001, 8, 1);
+	List<String> stationIds;
+	String csvFile;
+
+	@Before
+	public void setup() throws IOException
+	{
+		stationIds = new ArrayList<String>();
+		for (int i = 0; i < nStations; i++) stationIds.add("station" + i);
+
+		/* Stations are written in reverse order, and station 3 has no line every 10th day. */
+		File csv = folder.newFile("weather.csv");
+		PrintWriter writer = new PrintWriter(new FileWriter(csv));
+		writer.println("date,station,tmin,tmax");
+		for (int day = 0; day < nDays; day++)
+		{
+			for (int i = nStations - 1; i >= 0; i--)
+			{
+				if (i == 3 && day % 10 == 0) continue;
+				writer.println(start.plusDays(day) + "," + stationIds.get(i) + "," + tMin(day, i) + "," + tMax(day, i));
+			}
+		}
+		writer.close();
+		csvFile = csv.getPath();
+	}
+
+	double tMin(int day, int station) { return Math.round(-8d + 20d * Math.cos(2d * Math.PI * (day - 10) / 365d) - station + 3d * Math.sin(day)); }
+	double tMax(int day, int station) { return tMin(day, station) + 7d + (day + station) % 5; }
+
+	@Test
+	public void testCSVAndBinaryReaders() throws IOException
+	{
+		CSVDailyWeatherReader csv = new CSVDailyWeatherReader(csvFile, stationIds);
+		String binFile = new File(folder.getRoot(), "weather.bin").getPath();
+		assertEquals(nDays, BinaryDailyWeatherReader.write(csv, binFile));
+		csv.close();
+
+		BinaryDailyWeatherReader bin = new BinaryDailyWeatherReader(binFile);
+		assertEquals(nStations, bin.stations());
+		assertEquals(nDays, bin.days());
+		assertEquals(start, bin.startDate());
+
+		double[] low = new double[nStations];
+		double[] high = new double[nStations];
+		for (int day = 0; day < nDays; day++)
+		{
+			assertTrue(bin.nextDay(low, high));
+			assertEquals(start.plusDays(day), bin.date());
+			for (int i = 0; i < nStations; i++)
+			{
+				boolean missing = i == 3 && day % 10 == 0;
+				assertEquals(missing ? DailyWeatherReader.MISSING : tMin(day, i), low[i], 0d);
+				assertEquals(missing ? DailyWeatherReader.MISSING : tMax(day, i), high[i], 0d);
+			}
+		}
+		assertFalse(bin.nextDay(low, high));
+		bin.close();
+	}
+
+	@Test
+	public void testCSVMissingDateAndMalformedLines() throws IOException
+	{
+		File csv = folder.newFile("gap.csv");
+		PrintWriter writer = new PrintWriter(new FileWriter(csv));
+		writer.println("date,station,tmin,tmax");
+		writer.println("2001-08-01,station0,5,15");
+		writer.println("2001-08-04,station1,6,16");
+		writer.close();
+		CSVDailyWeatherReader reader = new CSVDailyWeatherReader(csv.getPath(), stationIds);
+		double[] low = new double[nStations], high = new double[nStations];
+		double[] missing = new double[nStations];
+		Arrays.fill(missing, DailyWeatherReader.MISSING);
+
+		/* The 2nd and 3rd of August have no lines, so every station is missing. */
+		for (int day = 0; day < 4; day++)
+		{
+			assertTrue(reader.nextDay(low, high));
+			assertEquals(LocalDate.of(2001, 8, 1 + day), reader.date());
+			double[] expected = missing.clone();
+			if (day == 0) expected[0] = 5d;
+			if (day == 3) expected[1] = 6d;
+			assertArrayEquals(expected, low, 0d);
+		}
+		assertFalse(reader.nextDay(low, high));
+		reader.close();
+
+		for (String line : new String[] {"2001-08-01,station0,cold,15", "2001-13-01,station0,5,15"})
+		{
+			File bad = folder.newFile();
+			writer = new PrintWriter(new FileWriter(bad));
+			writer.println("date,station,tmin,tmax");
+			writer.println(line);
+			writer.close();
+			try (CSVDailyWeatherReader badReader = new CSVDailyWeatherReader(bad.getPath(), stationIds))
+			{
+				badReader.nextDay(low, high);
+				fail("expected " + line + " to be rejected");
+			}
+			catch (IOException e) { assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed line in " + bad.getPath())); }
+		}
+	}
+
+	@Test
+	public void testSeasonRunner() throws IOException
+	{
+		final List<double[]> seasons = new ArrayList<double[]>();
+		RegniereBentzSeasonRunner runner = new RegniereBentzSeasonRunner(ParameterSet.DEFAULT, nStations);
+		CSVDailyWeatherReader csv = new CSVDailyWeatherReader(csvFile, stationIds);
+		assertEquals(nDays, runner.run(csv, new RegniereBentzSeasonRunner.SeasonSink() {
+			public void season(LocalDate lastDay, double[] survival, double[] minLethalTemperature)
+			{ seasons.add(survival.clone()); }
+		}));
+		csv.close();
+
+		/* Two full seasons and a partial third. */
+		assertEquals(3, seasons.size());
+
+		/* The first season should match the single-cell model. */
+		for (int i = 0; i < nStations; i++)
+		{
+			double[] state = new double[] {0d, 0d, 0d, 1d};
+			for (int day = 0; day < 365; day++)
+			{
+				boolean missing = i == 3 && day % 10 == 0;
+				double[] temps = missing ? new double[] {-999, -999} : new double[] {tMin(day, i), tMax(day, i)};
+				RegniereBentzMPBCalculator.updateState(temps, start.plusDays(day), state);
+			}
+			assertEquals(state[3], seasons.get(0)[i], 1e-12);
+		}
+		assertTrue(Arrays.toString(seasons.get(1)), seasons.get(1)[0] < 1d);
+	}
+
+	@Test
+	public void testSeasonRunnerWithGap() throws IOException
+	{
+		/* The weather skips from the 20th of July to the 10th of August. */
+		final LocalDate gapStart = LocalDate.of(2002, 7, 21), gapEnd = LocalDate.of(2002, 8, 10);
+		DailyWeatherReader weather = new DailyWeatherReader() {
+			LocalDate date = start.minusDays(1);
+			public int stations() { return nStations; }
+			public LocalDate date() { return date; }
+			public void close() {}
+			public boolean nextDay(double[] tMin, double[] tMax)
+			{
+				date = date.plusDays(1);
+				if (date.equals(gapStart)) date = gapEnd;
+				int day = (int) (date.toEpochDay() - start.toEpochDay());
+				if (day >= 500) return false;
+				for (int i = 0; i < nStations; i++) { tMin[i] = tMin(day, i); tMax[i] = tMax(day, i); }
+				return true;
+			}
+		};
+		final List<LocalDate> lastDays = new ArrayList<LocalDate>();
+		new RegniereBentzSeasonRunner(ParameterSet.DEFAULT, nStations).run(weather, new RegniereBentzSeasonRunner.SeasonSink() {
+			public void season(LocalDate lastDay, double[] survival, double[] minLethalTemperature)
+			{ lastDays.add(lastDay); }
+		});
+		assertEquals(Arrays.asList(gapStart.minusDays(1), start.plusDays(499)), lastDays);
+	}
+
+	@Test
+	public void testCheckpointResume() throws IOException
+	{
+		CSVDailyWeatherReader csv = new CSVDailyWeatherReader(csvFile, stationIds);
+		String binFile = new File(folder.getRoot(), "weather.bin").getPath();
+		BinaryDailyWeatherReader.write(csv, binFile);
+		csv.close();
+
+		/* The uninterrupted run. */
+		RegniereBentzSeasonRunner full = new RegniereBentzSeasonRunner(ParameterSet.DEFAULT, nStations);
+		BinaryDailyWeatherReader weather = new BinaryDailyWeatherReader(binFile);
+		full.run(weather, null);
+		weather.close();
+
+		/* A run that fails after 500 days, with a checkpoint every 30 days. */
+		String checkpointFile = new File(folder.getRoot(), "state.chk").getPath();
+		ColdHardeningCheckpoint checkpoint = new ColdHardeningCheckpoint(checkpointFile, nStations);
+		assertEquals(null, checkpoint.lastDay());
+		final BinaryDailyWeatherReader failing = new BinaryDailyWeatherReader(binFile);
+		DailyWeatherReader firstPart = new DailyWeatherReader() {
+			int days = 0;
+			public int stations() { return failing.stations(); }
+			public LocalDate date() { return failing.date(); }
+			public void close() throws IOException { failing.close(); }
+			public boolean nextDay(double[] tMin, double[] tMax) throws IOException
+			{
+				if (days++ == 500) throw new IOException("simulated failure");
+				return failing.nextDay(tMin, tMax);
+			}
+		};
+		try {
+			new RegniereBentzSeasonRunner(ParameterSet.DEFAULT, nStations).run(firstPart, null, checkpoint, 30);
+		} catch (IOException e) { firstPart.close(); }
+		checkpoint.close();
+
+		/* Resume from the last checkpoint in a new runner. */
+		checkpoint = new ColdHardeningCheckpoint(checkpointFile, nStations);
+		RegniereBentzSeasonRunner resumed = new RegniereBentzSeasonRunner(ParameterSet.DEFAULT, nStations);
+		LocalDate lastDay = resumed.restore(checkpoint);
+		assertEquals(start.plusDays(479), lastDay);
+		weather = new BinaryDailyWeatherReader(binFile);
+		weather.seek(lastDay.plusDays(1));
+		assertEquals(nDays - 480, resumed.run(weather, null, checkpoint, 30));
+		weather.close();
+		assertEquals(start.plusDays(nDays - 1), checkpoint.lastDay());
+		checkpoint.close();
+
+		for (int i = 0; i < nStations; i++)
+		{
+			assertEquals(full.coldHardening()[i], resumed.coldHardening()[i], 0d);
+			assertEquals(full.survival()[i], resumed.survival()[i], 0d);
+			assertEquals(full.minLethalTemperature()[i], resumed.minLethalTemperature()[i], 0d);
+		}
+	}
+}
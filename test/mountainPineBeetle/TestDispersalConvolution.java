@@ -0,0 +1,81 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class TestDispersalConvolution {
+
+	int rows = 150, cols = 97;
+
+	double[] source()
+	{
+		double[] source = new double[rows * cols];
+		for (int i = 0; i < source.length; i++) source[i] = (i * 7919) % 13 == 0 ? 1000d * (1 + i % 5) : 0d;
+		return source;
+	}
+
+	double[] bruteForce(double[] source, DispersalKernel kernel)
+	{
+		double[] out = new double[rows * cols];
+		for (int r = 0; r < rows; r++) for (int c = 0; c < cols; c++)
+			for (int sr = 0; sr < rows; sr++) for (int sc = 0; sc < cols; sc++)
+				out[r * cols + c] += source[sr * cols + sc] * kernel.weight(r - sr, c - sc);
+		return out;
+	}
+
+	@Test
+	public void testKernel()
+	{
+		DispersalKernel kernel = DispersalKernel.of(2d, 0.01, 30d, 1e-3, false);
+		assertSame(kernel, DispersalKernel.of(2d, 0.01, 30d, 1e-3, false));
+		/* ln(2000) / 0.01 = 760 m, 26 cells of 30 m */
+		assertEquals(Math.log(2000d) / 0.01, DispersalKernel.cutoffDistance(2d, 0.01, 1e-3), 1e-9);
+		assertEquals(26, kernel.radius);
+		assertEquals(2d, kernel.weight(0, 0), 0d);
+		assertEquals(MPBCalculations.exponentialDistanceScore(30d * Math.sqrt(2d), 2d, 0.01), kernel.weight(1, 1), 1e-12);
+		assertEquals(0d, kernel.weight(26, 26), 0d);
+		assertEquals(1d, DispersalKernel.of(2d, 0.01, 30d, 1e-3, true).sum(), 1e-12);
+
+		/* Only the most recently used kernels are kept. */
+		for (int i = 0; i < DispersalKernel.CACHED_KERNELS; i++) DispersalKernel.of(1d, 1d + i, 30d, 1e-3, true);
+		assertNotSame(kernel, DispersalKernel.of(2d, 0.01, 30d, 1e-3, false));
+	}
+
+	@Test
+	public void testDirectAndFFTMatchBruteForce()
+	{
+		double[] source = source();
+		ForkJoinPool pool = new ForkJoinPool(3);
+		for (DispersalKernel kernel : new DispersalKernel[] {DispersalKernel.of(1d, 0.05, 30d, 1e-3, true),
+				DispersalKernel.of(1d, 0.02, 30d, 1e-3, true), DispersalKernel.of(1d, 0.005, 30d, 1e-4, true)})
+		{
+			double[] expected = bruteForce(source, kernel);
+			double[] direct = new double[rows * cols], fft = new double[rows * cols];
+			DispersalConvolution.convolveDirect(source, rows, cols, kernel, direct, pool);
+			DispersalConvolution.convolveFFT(source, rows, cols, kernel, fft, pool);
+			for (int i = 0; i < expected.length; i++)
+			{
+				assertEquals(expected[i], direct[i], 1e-9 * (1d + expected[i]));
+				assertEquals(expected[i], fft[i], 1e-7 * (1d + expected[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testNormalizedKernelConservesBeetles()
+	{
+		/* One source far from the edges. */
+		double[] source = new double[rows * cols];
+		source[75 * cols + 48] = 5000d;
+		double[] out = new double[rows * cols];
+		DispersalConvolution.convolve(source, rows, cols, DispersalKernel.of(1d, 0.02, 30d, 1e-3, true), out);
+		double total = 0d;
+		for (double x : out) total += x;
+		assertEquals(5000d, total, 1e-6);
+	}
+}
@@ -0,0 +1,79 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import mountainPineBeetle.RegniereBentzMPBCalculator.ParameterSet;
+
+public class TestLogisticLookupTable {
+
+	Logger logger = LogManager.getLogger();
+
+	@Test
+	public void testDocumentedErrorBounds()
+	{
+		double maxDensityError = 0d;
+		double maxCdfError = 0d;
+
+		/* An irregular grid so the points fall between table entries. */
+		for (double z = -60d; z <= 60d; z += 0.000731)
+		{
+			double e = Math.exp(-z);
+			double density = e / Math.pow(1d + e, 2d);
+			maxDensityError = Math.max(maxDensityError, Math.abs(LogisticLookupTable.density(z) - density));
+			maxCdfError = Math.max(maxCdfError, Math.abs(LogisticLookupTable.cdf(z) - 1d / (1d + e)));
+		}
+		logger.debug("max density error: " + maxDensityError + ", max cdf error: " + maxCdfError);
+		assertTrue(maxDensityError <= LogisticLookupTable.DENSITY_MAX_ERROR);
+		assertTrue(maxCdfError <= LogisticLookupTable.CDF_MAX_ERROR);
+
+		/* The scaled form used for gain and loss. */
+		double[] betas = new double[] {ParameterSet.DEFAULT.spreadGainSigmaG, ParameterSet.DEFAULT.spreadLossSigmaL, 0.5};
+		for (double beta : betas)
+			for (double x = -50d; x <= 50d; x += 0.0137)
+				assertEquals(RegniereBentzMPBCalculator.logistic(x, 3.3, beta), 
+						LogisticLookupTable.logistic(x, 3.3, beta), LogisticLookupTable.DENSITY_MAX_ERROR / beta);
+	}
+
+	@Test
+	public void testTabulatedSeason()
+	{
+		int nCells = 50;
+		double[][] tMin = new double[365][nCells];
+		double[][] tMax = new double[365][nCells];
+		for (int day = 0; day < 365; day++)
+			for (int cell = 0; cell < nCells; cell++)
+			{
+				tMin[day][cell] = -12d + 22d * Math.cos(2d * Math.PI * (day - 10) / 365d) - 0.4 * cell + 6d * Math.sin(day * 0.8 + cell);
+				tMax[day][cell] = tMin[day][cell] + 6d + 4d * Math.cos(day * 1.1 + cell);
+			}
+
+		double[][] exact = new double[4][nCells];
+		double[][] tabulated = new double[4][nCells];
+		Arrays.fill(exact[3], 1d);
+		Arrays.fill(tabulated[3], 1d);
+		SeasonCalendar calendar = new SeasonCalendar(LocalDate.of(2000, 8, 1), 365);
+		for (int day = 0; day < 365; day++)
+		{
+			boolean gainOnly = calendar.gainOnly(day);
+			RegniereBentzMPBCalculator.updateStates(ParameterSet.DEFAULT, tMin[day], tMax[day], gainOnly, 
+					exact[0], exact[1], exact[2], exact[3], 0, nCells);
+			RegniereBentzMPBCalculator.updateStatesTabulated(ParameterSet.DEFAULT, tMin[day], tMax[day], gainOnly, 
+					tabulated[0], tabulated[1], tabulated[2], tabulated[3], 0, nCells);
+		}
+
+		/* Errors accumulate through the season, but should stay small. */
+		for (int cell = 0; cell < nCells; cell++)
+		{
+			assertEquals(exact[0][cell], tabulated[0][cell], 1e-5);
+			assertEquals(exact[3][cell], tabulated[3][cell], 1e-5);
+		}
+	}
+}
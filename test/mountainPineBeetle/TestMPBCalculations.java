@@ -0,0 +1,77 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestMPBCalculations {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	double[] score = new double[] {3d, -1d, 7d, 2.5, 7d, 0d, 4.25};
+	double weight = 0.6;
+
+	double[] expected()
+	{
+		double[] out = new double[score.length];
+		for (int i = 0; i < score.length; i++)
+			out[i] = MPBCalculations.weightedScore((score[i] + 1d) / 8d, weight);
+		return out;
+	}
+
+	@Test
+	public void testWeightedScores()
+	{
+		assertArrayEquals(expected(), MPBCalculations.weightedScore(score, weight), 1e-15);
+
+		/* In place */
+		double[] copy = score.clone();
+		MPBCalculations.weightedScore(copy, weight, copy);
+		assertArrayEquals(expected(), copy, 1e-15);
+
+		/* Two passes over chunks of 3 */
+		double[] range = MPBCalculations.newScoreRange();
+		for (int from = 0; from < score.length; from += 3)
+			MPBCalculations.scoreRange(score, from, Math.min(score.length, from + 3), range);
+		double[] out = new double[score.length];
+		for (int from = 0; from < score.length; from += 3)
+			MPBCalculations.weightedScore(score, from, Math.min(score.length, from + 3), range, weight, out, from);
+		assertArrayEquals(expected(), out, 1e-15);
+
+		/* Equal scores normalize to 1. */
+		assertArrayEquals(new double[] {1d, 1d, 1d}, MPBCalculations.weightedScore(new double[] {2d, 2d, 2d}, weight), 0d);
+	}
+
+	@Test
+	public void testWeightedScoreFile() throws IOException
+	{
+		String in = folder.getRoot() + "/scores.flt", out = folder.getRoot() + "/weighted.flt";
+		float nodata = -9999f;
+		/* The scores, then a nodata cell and a NaN that should stay out of the range. */
+		ByteBuffer bytes = ByteBuffer.allocate(4 * (score.length + 2)).order(ByteOrder.LITTLE_ENDIAN);
+		for (double s : score) bytes.putFloat((float) s);
+		bytes.putFloat(nodata).putFloat(Float.NaN);
+		try (RandomAccessFile file = new RandomAccessFile(in, "rw")) { file.write(bytes.array()); }
+
+		double[] range = MPBCalculations.weightedScoreFile(in, out, weight, nodata);
+		assertEquals(-1d, range[0], 0d);
+		assertEquals(7d, range[1], 0d);
+
+		byte[] written = new byte[4 * (score.length + 2)];
+		try (RandomAccessFile file = new RandomAccessFile(out, "r")) { file.readFully(written); }
+		ByteBuffer result = ByteBuffer.wrap(written).order(ByteOrder.LITTLE_ENDIAN);
+		double[] expected = expected();
+		for (int i = 0; i < score.length; i++) assertEquals(expected[i], result.getFloat(), 1e-6);
+		assertEquals(nodata, result.getFloat(), 0f);
+		assertEquals(nodata, result.getFloat(), 0f);
+	}
+}
@@ -0,0 +1,80 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+import org.junit.Test;
+
+public class TestNeighborIndex {
+
+	double paramA = 1d, paramB = 0.004, epsilon = 1e-3;
+
+	double[][] points(int n, long seed)
+	{
+		UniformRandomProvider random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, seed);
+		double[] x = new double[n], y = new double[n];
+		/* Clumped stands: half in a small block, half spread over 20 km. */
+		for (int i = 0; i < n; i++)
+		{
+			double extent = i % 2 == 0 ? 3000d : 20000d;
+			x[i] = 5000d + extent * random.nextDouble();
+			y[i] = -2000d + extent * random.nextDouble();
+		}
+		return new double[][] {x, y};
+	}
+
+	void check(NeighborIndex index, double[] x, double[] y, int n)
+	{
+		double cutoff = index.cutoff();
+		int[] buffer = new int[n];
+		double[] source = new double[n];
+		for (int i = 0; i < n; i++) source[i] = 1d + i % 7;
+
+		double[] scores = new double[n];
+		index.dispersalScores(source, paramA, paramB, scores, new ForkJoinPool(3));
+		for (int i = 0; i < n; i += 7)
+		{
+			int found = index.neighbors(x[i], y[i], buffer);
+			int[] expected = new int[n];
+			int count = 0;
+			double score = 0d;
+			for (int j = 0; j < n; j++)
+			{
+				double d = Math.hypot(x[i] - x[j], y[i] - y[j]);
+				if (d <= cutoff)
+				{
+					expected[count++] = j;
+					score += source[j] * MPBCalculations.exponentialDistanceScore(d, paramA, paramB);
+				}
+			}
+			assertEquals(count, found);
+			int[] actual = Arrays.copyOf(buffer, found);
+			Arrays.sort(actual);
+			assertArrayEquals(Arrays.copyOf(expected, count), actual);
+			assertEquals(score, scores[i], 1e-9 * score);
+		}
+	}
+
+	@Test
+	public void testMatchesBruteForce()
+	{
+		NeighborIndex index = NeighborIndex.forScore(paramA, paramB, epsilon);
+		assertEquals(Math.log(1000d) / 0.004, index.cutoff(), 1e-9);
+
+		double[][] many = points(3000, 5L);
+		index.build(many[0], many[1], 3000);
+		assertEquals(3000, index.size());
+		check(index, many[0], many[1], 3000);
+
+		/* Rebuilding with fewer points reuses the arrays. */
+		double[][] few = points(700, 6L);
+		index.build(few[0], few[1], 700);
+		assertEquals(700, index.size());
+		check(index, few[0], few[1], 700);
+	}
+}
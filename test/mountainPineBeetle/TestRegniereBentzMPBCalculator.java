@@ -0,0 +1,207 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import mountainPineBeetle.RegniereBentzMPBCalculator.ModelParameters;
+import mountainPineBeetle.RegniereBentzMPBCalculator.ParameterSet;
+
+public class TestRegniereBentzMPBCalculator {
+
+	Logger logger = LogManager.getLogger();
+
+	int nCells = 25;
+	int nDays = 365;
+	LocalDate start = LocalDate.of(2000, 8, 1);
+
+	/* Daily temperatures for each day and cell: [day][cell] */
+	double[][] tMin;
+	double[][] tMax;
+
+	@Before
+	public void setup()
+	{
+		/* A smooth annual cycle with a coldest day in late January,
+		 * offset for each cell, and some missing days. */
+		tMin = new double[nDays][nCells];
+		tMax = new double[nDays][nCells];
+		for (int day = 0; day < nDays; day++)
+		{
+			for (int cell = 0; cell < nCells; cell++)
+			{
+				double season = Math.cos(2d * Math.PI * (day - 10) / 365d);
+				double low = -8d + 22d * season - 0.6 * cell + 5d * Math.sin(day * 0.7 + cell);
+				tMin[day][cell] = low;
+				tMax[day][cell] = low + 8d + 3d * Math.cos(day * 1.3 + cell);
+				if ((day + cell) % 37 == 0) tMin[day][cell] = -999;
+				if ((day * cell) % 53 == 1) tMax[day][cell] = -999;
+			}
+		}
+	}
+
+	double tol = 1e-12;
+
+	@Test
+	public void testBatchedUpdateMatchesSingleCell()
+	{
+		double[][] states = new double[nCells][];
+		for (int cell = 0; cell < nCells; cell++) states[cell] = new double[] {0d, 0d, 0d, 1d};
+
+		double[] coldHardening = new double[nCells];
+		double[] gain = new double[nCells];
+		double[] loss = new double[nCells];
+		double[] survival = new double[nCells];
+		Arrays.fill(survival, 1d);
+
+		for (int day = 0; day < nDays; day++)
+		{
+			LocalDate today = start.plusDays(day);
+			for (int cell = 0; cell < nCells; cell++)
+				RegniereBentzMPBCalculator.updateState(
+						new double[] {tMin[day][cell], tMax[day][cell]}, today, states[cell]);
+
+			RegniereBentzMPBCalculator.updateStates(
+					tMin[day], tMax[day], today, coldHardening, gain, loss, survival);
+		}
+
+		for (int cell = 0; cell < nCells; cell++)
+		{
+			assertEquals(states[cell][0], coldHardening[cell], tol);
+			assertEquals(states[cell][1], gain[cell], tol);
+			assertEquals(states[cell][2], loss[cell], tol);
+			assertEquals(states[cell][3], survival[cell], tol);
+		}
+		logger.debug("survival in first and last cells: " + survival[0] + ", " + survival[nCells - 1]);
+	}
+
+	@Test
+	public void testSeasonCalendar()
+	{
+		SeasonCalendar calendar = new SeasonCalendar(start, nDays);
+		assertEquals(true, calendar.seasonStart(0));
+		assertEquals(true, calendar.gainOnly(152));
+		assertEquals(false, calendar.gainOnly(153));
+		assertEquals(LocalDate.of(2001, 1, 1), calendar.date(153));
+		assertEquals(153, calendar.dayIndex(LocalDate.of(2001, 1, 1)));
+
+		double[][] byDate = new double[4][nCells];
+		double[][] byIndex = new double[4][nCells];
+		Arrays.fill(byDate[3], 1d);
+		Arrays.fill(byIndex[3], 1d);
+		for (int day = 0; day < nDays; day++)
+		{
+			RegniereBentzMPBCalculator.updateStates(tMin[day], tMax[day], calendar.date(day),
+					byDate[0], byDate[1], byDate[2], byDate[3]);
+			RegniereBentzMPBCalculator.updateStates(calendar, day, tMin[day], tMax[day],
+					byIndex[0], byIndex[1], byIndex[2], byIndex[3]);
+		}
+		for (int i = 0; i < 4; i++)
+			for (int cell = 0; cell < nCells; cell++)
+				assertEquals(byDate[i][cell], byIndex[i][cell], 0d);
+	}
+
+	@Test
+	public void testParameterSets() throws InterruptedException
+	{
+		/* The default parameter set should reproduce the static parameters. */
+		assertEquals(RegniereBentzMPBCalculator.medianLethalTemperature(0.6),
+				RegniereBentzMPBCalculator.medianLethalTemperature(ParameterSet.DEFAULT, 0.6), tol);
+		double[] expected = runSeason(ParameterSet.DEFAULT);
+		double[] state = new double[] {0d, 0d, 0d, 1d};
+		for (int day = 0; day < nDays; day++)
+			RegniereBentzMPBCalculator.updateState(new double[] {tMin[day][0], tMax[day][0]}, start.plusDays(day), state);
+		assertEquals(state[3], expected[0], tol);
+
+		/* Different parameter sets run side by side should not interfere. */
+		final ParameterSet hardy = ParameterSet.DEFAULT.with("alpha1", -15d).with("alpha2", -28d);
+		assertEquals(-15d, hardy.meanSCPAlpha1, 0d);
+		assertEquals(ParameterSet.DEFAULT.spreadSCPBeta1, hardy.spreadSCPBeta1, 0d);
+		double[] expectedHardy = runSeason(hardy);
+
+		final double[][] results = new double[8][];
+		Thread[] threads = new Thread[results.length];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int index = t;
+			threads[t] = new Thread(new Runnable() {
+				public void run() { results[index] = runSeason(index % 2 == 0 ? ParameterSet.DEFAULT : hardy); }
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) thread.join();
+		for (int t = 0; t < results.length; t++)
+			for (int cell = 0; cell < nCells; cell++)
+				assertEquals(t % 2 == 0 ? expected[cell] : expectedHardy[cell], results[t][cell], 0d);
+
+		/* The static methods should follow changes to the static parameters. */
+		try
+		{
+			ModelParameters.set(hardy);
+			state = new double[] {0d, 0d, 0d, 1d};
+			for (int day = 0; day < nDays; day++)
+				RegniereBentzMPBCalculator.updateState(new double[] {tMin[day][0], tMax[day][0]}, start.plusDays(day), state);
+			assertEquals(expectedHardy[0], state[3], 0d);
+		}
+		finally { ModelParameters.set(ParameterSet.DEFAULT); }
+	}
+
+	/** Run the whole season for all cells with one parameter set.
+	 * @return final survival of each cell */
+	double[] runSeason(ParameterSet params)
+	{
+		double[] coldHardening = new double[nCells];
+		double[] gain = new double[nCells];
+		double[] loss = new double[nCells];
+		double[] survival = new double[nCells];
+		Arrays.fill(survival, 1d);
+		for (int day = 0; day < nDays; day++)
+			RegniereBentzMPBCalculator.updateStates(
+					params, tMin[day], tMax[day], start.plusDays(day), coldHardening, gain, loss, survival);
+		return survival;
+	}
+
+	@Test
+	public void testDailyUpdateAllocatesNothing()
+	{
+		final LocalDate[] dates = new LocalDate[nDays];
+		for (int day = 0; day < nDays; day++) dates[day] = start.plusDays(day);
+
+		final double[] temps = new double[2];
+		final double[] state = new double[4];
+		final double[] coldHardening = new double[nCells];
+		final double[] gain = new double[nCells];
+		final double[] loss = new double[nCells];
+		final double[] survival = new double[nCells];
+
+		long allocated = AllocationCounter.allocatedBytes(
+				() -> {
+					RegniereBentzMPBCalculator.updateState(new double[] {-10d, 0d}, start, new double[] {0d, 0d, 0d, 1d});
+					RegniereBentzMPBCalculator.updateStates(tMin[0], tMax[0], start, coldHardening, gain, loss, survival);
+				},
+				() -> {
+					for (int cell = 0; cell < nCells; cell++)
+					{
+						state[0] = 0d; state[1] = 0d; state[2] = 0d; state[3] = 1d;
+						for (int day = 0; day < nDays; day++)
+						{
+							temps[0] = tMin[day][cell];
+							temps[1] = tMax[day][cell];
+							RegniereBentzMPBCalculator.updateState(temps, dates[day], state);
+						}
+					}
+					for (int day = 0; day < nDays; day++)
+						RegniereBentzMPBCalculator.updateStates(
+								tMin[day], tMax[day], dates[day], coldHardening, gain, loss, survival);
+				});
+
+		logger.debug("bytes allocated by " + (2 * nDays * nCells) + " cell updates: " + allocated);
+		assertEquals(0d, allocated, AllocationCounter.SLACK_BYTES);
+	}
+}
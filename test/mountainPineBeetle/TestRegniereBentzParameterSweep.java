@@ -0,0 +1,112 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import mountainPineBeetle.RegniereBentzMPBCalculator.ParameterSet;
+import mountainPineBeetle.RegniereBentzParameterSweep.Design;
+import mountainPineBeetle.RegniereBentzParameterSweep.ResultSink;
+
+public class TestRegniereBentzParameterSweep {
+
+	double[] lower;
+	double[] upper;
+	double[] tMin;
+	double[] tMax;
+	LocalDate start = LocalDate.of(2000, 8, 1);
+
+	@Before
+	public void setup()
+	{
+		/* Vary the state 1 and 2 SCP means by +/- 3 degrees. */
+		lower = ParameterSet.DEFAULT.toArray();
+		upper = ParameterSet.DEFAULT.toArray();
+		lower[0] -= 3d; upper[0] += 3d;
+		lower[2] -= 3d; upper[2] += 3d;
+
+		tMin = new double[365];
+		tMax = new double[365];
+		for (int day = 0; day < tMin.length; day++)
+		{
+			tMin[day] = -10d + 22d * Math.cos(2d * Math.PI * (day - 10) / 365d) + 4d * Math.sin(day * 0.9);
+			tMax[day] = tMin[day] + 9d;
+		}
+	}
+
+	@Test
+	public void testGrid()
+	{
+		int[] levels = new int[lower.length];
+		Arrays.fill(levels, 1);
+		levels[0] = 3;
+		levels[2] = 4;
+		Design grid = RegniereBentzParameterSweep.grid(lower, upper, levels);
+		assertEquals(12, grid.size());
+		assertEquals(lower[0], grid.parameters(0).meanSCPAlpha1, 0d);
+		assertEquals(upper[0], grid.parameters(2).meanSCPAlpha1, 1e-12);
+		assertEquals(upper[2], grid.parameters(11).meanSCPAlpha2, 1e-12);
+		assertEquals(lower[1], grid.parameters(7).spreadSCPBeta1, 0d);
+	}
+
+	@Test
+	public void testLatinHypercubeStrata()
+	{
+		int n = 50;
+		Design lhs = RegniereBentzParameterSweep.latinHypercube(lower, upper, n, 42L);
+		boolean[] used = new boolean[n];
+		for (int i = 0; i < n; i++)
+		{
+			double u = (lhs.parameters(i).meanSCPAlpha2 - lower[2]) / (upper[2] - lower[2]);
+			int stratum = (int) (u * n);
+			assertTrue(!used[stratum]);
+			used[stratum] = true;
+		}
+		/* The design is reproducible from its seed. */
+		assertEquals(lhs.parameters(7).meanSCPAlpha1, 
+				RegniereBentzParameterSweep.latinHypercube(lower, upper, n, 42L).parameters(7).meanSCPAlpha1, 0d);
+	}
+
+	@Test
+	public void testSobol()
+	{
+		/* The first points of the first dimension are 1/2, 3/4, 1/4, 3/8 */
+		Design sobol = RegniereBentzParameterSweep.sobol(lower, upper, 4);
+		double[] expected = new double[] {0.5, 0.75, 0.25, 0.375};
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(lower[0] + 6d * expected[i], sobol.parameters(i).meanSCPAlpha1, 1e-12);
+	}
+
+	@Test
+	public void testParallelRunMatchesSerial()
+	{
+		Design design = RegniereBentzParameterSweep.sobol(lower, upper, 200);
+		final ConcurrentHashMap<Long, double[]> results = new ConcurrentHashMap<Long, double[]>();
+		RegniereBentzParameterSweep.run(design, tMin, tMax, start, new ResultSink() {
+			public void accept(long index, ParameterSet params, double finalSurvival, double minLethalTemperature)
+			{ results.put(index, new double[] {finalSurvival, minLethalTemperature}); }
+		});
+		assertEquals(200, results.size());
+
+		boolean[] gainOnly = new SeasonCalendar(start, tMin.length).gainOnlyFlags();
+		for (long i = 0; i < design.size(); i += 17)
+		{
+			double[] expected = RegniereBentzParameterSweep.runSeries(design.parameters(i), tMin, tMax, gainOnly);
+			assertEquals(expected[0], results.get(i)[0], 0d);
+			assertEquals(expected[1], results.get(i)[1], 0d);
+		}
+
+		/* The survival should match the single-cell model. */
+		double[] state = new double[] {0d, 0d, 0d, 1d};
+		for (int day = 0; day < tMin.length; day++)
+			RegniereBentzMPBCalculator.updateState(design.parameters(0), 
+					new double[] {tMin[day], tMax[day]}, start.plusDays(day), state);
+		assertEquals(state[3], results.get(0L)[0], 1e-12);
+	}
+}
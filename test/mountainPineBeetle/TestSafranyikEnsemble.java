@@ -0,0 +1,99 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+import org.junit.Test;
+
+public class TestSafranyikEnsemble {
+
+	int nClasses = 8;
+	int years = 15;
+
+	SafranyikStand newStand()
+	{
+		SafranyikStand s = new SafranyikStand(nClasses);
+		for (int i = 0; i < nClasses; i++)
+		{
+			s.dbh[i] = 10d + 5d * i;
+			s.height[i] = 8d + 2d * i;
+			s.barkArea[i] = 0.6 * Math.PI * s.dbh[i] / 100d * s.height[i];
+			s.survival[i] = 0.03 + 0.002 * i;
+			s.liveTrees[i] = 300d - 30d * i;
+		}
+		s.beetles = 50000d;
+		s.standAge = 80d;
+		s.neighbourDistance = 4d;
+		s.relativeHostResistance = 0.3;
+		s.meanDailyTemperature = 15d;
+		return s;
+	}
+
+	@Test
+	public void testSameResultForAnyThreadCount()
+	{
+		int replicates = 300;
+		SafranyikEnsemble ensemble = new SafranyikEnsemble(new SafranyikStepEngine(), newStand(), years);
+		final double[] finalOne = new double[replicates], finalFour = new double[replicates];
+
+		SafranyikEnsemble.Summary one = ensemble.run(replicates, 1234L, 
+				(r, stand) -> finalOne[r] = stand.totalLiveTrees(), new ForkJoinPool(1));
+		SafranyikEnsemble.Summary four = ensemble.run(replicates, 1234L, 
+				(r, stand) -> finalFour[r] = stand.totalLiveTrees(), new ForkJoinPool(4));
+
+		assertArrayEquals(finalOne, finalFour, 0d);
+		for (double q : new double[] {0.05, 0.5, 0.95})
+		{
+			assertArrayEquals(one.beetleQuantile(q), four.beetleQuantile(q), 0d);
+			assertArrayEquals(one.liveTreeQuantile(q), four.liveTreeQuantile(q), 0d);
+		}
+		assertEquals(replicates, one.beetles[years - 1].count());
+
+		/* The replicates differ from each other. */
+		double spread = 0d;
+		for (int r = 1; r < replicates; r++) spread += Math.abs(finalOne[r] - finalOne[0]);
+		assertTrue(spread > 0d);
+	}
+
+	@Test
+	public void testBinomial()
+	{
+		UniformRandomProvider random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 99L);
+		double[][] cases = new double[][] {{20d, 0.3}, {1000d, 0.01}, {1e6, 0.2}, {50d, 0.9}};
+		int draws = 20000;
+		for (double[] c : cases)
+		{
+			double n = c[0], p = c[1], sum = 0d, sumSq = 0d;
+			for (int i = 0; i < draws; i++)
+			{
+				double x = SafranyikStepEngine.binomial(random, n, p);
+				assertTrue(x >= 0d && x <= n && x == Math.rint(x));
+				sum += x; sumSq += x * x;
+			}
+			double mean = sum / draws, variance = sumSq / draws - mean * mean;
+			double sd = Math.sqrt(n * p * (1d - p));
+			assertEquals(n * p, mean, 5d * sd / Math.sqrt(draws));
+			assertEquals(sd * sd, variance, 0.1 * sd * sd);
+		}
+	}
+
+	@Test
+	public void testStreamingQuantiles()
+	{
+		StreamingQuantiles quantiles = new StreamingQuantiles(1d, 1e6, 50);
+		for (int i = 0; i < 100; i++) quantiles.add(0d);
+		for (int i = 1; i <= 900; i++) quantiles.add(i * 10d);
+		assertEquals(1000, quantiles.count());
+		assertEquals(0d, quantiles.quantile(0.05), 0d);
+		double factor = Math.pow(10d, 1d / 50);
+		double median = quantiles.quantile(0.5);
+		assertTrue(median > 4000d / factor && median < 4000d * factor);
+		double q90 = quantiles.quantile(0.9);
+		assertTrue(q90 > 8000d / factor && q90 < 8000d * factor);
+	}
+}
@@ -0,0 +1,79 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class TestSafranyikLandscapeRunner {
+
+	int nStands = 1000;
+	int nClasses = 6;
+	int years = 12;
+
+	SafranyikLandscape newLandscape()
+	{
+		SafranyikLandscape landscape = new SafranyikLandscape(nStands, nClasses);
+		for (int s = 0; s < nStands; s++)
+		{
+			for (int i = 0; i < nClasses; i++)
+			{
+				int k = s * nClasses + i;
+				landscape.dbh[k] = 12d + 6d * i + s % 7;
+				landscape.height[k] = 9d + 2d * i;
+				landscape.barkArea[k] = 0.6 * Math.PI * landscape.dbh[k] / 100d * landscape.height[k];
+				landscape.survival[k] = 0.03 + 0.001 * (s % 11);
+				landscape.liveTrees[k] = 250d - 20d * i + s % 13;
+			}
+			landscape.beetles[s] = 1000d * (s % 50);
+			landscape.standAge[s] = 60d + s % 40;
+			landscape.neighbourDistance[s] = 3d + (s % 5) * 0.5;
+			landscape.relativeHostResistance[s] = 0.2 + 0.05 * (s % 9);
+			landscape.meanDailyTemperature[s] = 14d + s % 4;
+			landscape.climateScore[s] = (s % 17) / 16d;
+		}
+		return landscape;
+	}
+
+	@Test
+	public void testSameResultForAnyThreadCount()
+	{
+		SafranyikLandscape one = newLandscape(), four = newLandscape();
+		SafranyikLandscapeRunner runner = new SafranyikLandscapeRunner(new SafranyikStepEngine(), 37);
+		runner.setClimateWeight(0.5);
+		double[][] totalsOne = runner.run(one, years, null, new ForkJoinPool(1));
+		double[][] totalsFour = runner.run(four, years, null, new ForkJoinPool(4));
+
+		for (int year = 0; year < years; year++) assertArrayEquals(totalsOne[year], totalsFour[year], 0d);
+		assertArrayEquals(one.liveTrees, four.liveTrees, 0d);
+		assertArrayEquals(one.beetles, four.beetles, 0d);
+	}
+
+	@Test
+	public void testMatchesSingleStands()
+	{
+		SafranyikLandscape landscape = newLandscape(), initial = newLandscape();
+		SafranyikLandscapeRunner runner = new SafranyikLandscapeRunner(new SafranyikStepEngine(), 64);
+		runner.setClimateWeight(0.5);
+		runner.run(landscape, years, null);
+
+		SafranyikStepEngine engine = new SafranyikStepEngine();
+		SafranyikStand stand = new SafranyikStand(nClasses);
+		for (int s = 0; s < nStands; s += 97)
+		{
+			initial.load(s, stand);
+			double climate = MPBCalculations.weightedScore(initial.climateScore[s], 0.5);
+			double[] survival = stand.survival.clone();
+			for (int year = 0; year < years; year++)
+			{
+				for (int i = 0; i < nClasses; i++) stand.survival[i] = survival[i] * climate;
+				engine.step(stand);
+			}
+			assertEquals(stand.beetles, landscape.beetles[s], 0d);
+			for (int i = 0; i < nClasses; i++)
+				assertEquals(stand.liveTrees[i], landscape.liveTrees[s * nClasses + i], 0d);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestSafranyikMPBCalculator {
+
+	@Test
+	public void testBatchAttackProportions()
+	{
+		int nStands = 50, nClasses = 7;
+		int[] liveTrees = new int[nStands * nClasses];
+		double[] liveTreesDouble = new double[nStands * nClasses];
+		double[] dbh = new double[nStands * nClasses];
+		for (int s = 0; s < nStands; s++)
+		{
+			for (int i = 0; i < nClasses; i++)
+			{
+				int k = s * nClasses + i;
+				/* Every 10th stand is empty. */
+				liveTrees[k] = s % 10 == 0 ? 0 : (s * 31 + i * 17) % 200;
+				liveTreesDouble[k] = liveTrees[k];
+				dbh[k] = 10d + 4d * i + s % 3;
+			}
+		}
+
+		double[] out = new double[nStands * nClasses];
+		double[] outDouble = new double[nStands * nClasses];
+		Arrays.fill(out, Double.NaN);
+		SafranyikMPBCalculator.attackProportionDBHClasses(liveTrees, dbh, nClasses, out, 0, nStands);
+		SafranyikMPBCalculator.attackProportionDBHClasses(liveTreesDouble, dbh, nClasses, outDouble, 0, nStands);
+		assertArrayEquals(out, outDouble, 0d);
+
+		for (int s = 0; s < nStands; s++)
+		{
+			int from = s * nClasses, to = from + nClasses;
+			double[] stand = Arrays.copyOfRange(out, from, to);
+			double sum = 0d;
+			for (double p : stand) sum += p;
+			if (s % 10 == 0)
+			{
+				assertArrayEquals(new double[nClasses], stand, 0d);
+			} else
+			{
+				assertEquals(1d, sum, 1e-12);
+				assertArrayEquals(SafranyikMPBCalculator.attackProportionDBHClasses(
+						Arrays.copyOfRange(liveTrees, from, to), Arrays.copyOfRange(dbh, from, to)), stand, 1e-15);
+			}
+		}
+	}
+}
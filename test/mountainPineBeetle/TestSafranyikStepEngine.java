@@ -0,0 +1,125 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSafranyikStepEngine {
+
+	Logger logger = LogManager.getLogger();
+
+	int nClasses = 8;
+	SafranyikStand stand;
+	SafranyikStepEngine engine = new SafranyikStepEngine();
+
+	@Before
+	public void setup()
+	{
+		stand = newStand();
+	}
+
+	SafranyikStand newStand()
+	{
+		SafranyikStand s = new SafranyikStand(nClasses);
+		for (int i = 0; i < nClasses; i++)
+		{
+			s.dbh[i] = 10d + 5d * i;
+			s.height[i] = 8d + 2d * i;
+			/* About 60% of the bole is infested. */
+			s.barkArea[i] = 0.6 * Math.PI * s.dbh[i] / 100d * s.height[i];
+			s.survival[i] = 0.02 + 0.002 * i;
+			s.liveTrees[i] = 300d - 30d * i;
+		}
+		s.beetles = 20000d;
+		s.standAge = 80d;
+		s.neighbourDistance = 4d;
+		s.relativeHostResistance = 0.4;
+		s.meanDailyTemperature = 15d;
+		return s;
+	}
+
+	@Test
+	public void testStep()
+	{
+		double minDBH = SafranyikMPBCalculator.minimumAttckedDBHInStand(stand.neighbourDistance);
+		for (int generation = 0; generation < 10; generation++)
+		{
+			double[] liveBefore = stand.liveTrees.clone();
+			double beetles = engine.step(stand);
+
+			double proportionSum = 0d, brood = 0d;
+			for (int i = 0; i < nClasses; i++)
+			{
+				proportionSum += stand.attackProportion[i];
+				assertTrue(stand.liveTrees[i] >= 0d);
+				assertEquals(liveBefore[i] - stand.attackedTrees[i], stand.liveTrees[i], 1e-9);
+				if (stand.dbh[i] < minDBH) assertEquals(0d, stand.attackedTrees[i], 0d);
+				brood += stand.attackedTrees[i] * stand.attackDensity[i] * stand.barkArea[i] 
+						* stand.eggsPerFemale[i] * stand.survival[i];
+			}
+			if (stand.attackingFemales > 0d && stand.totalLiveTrees() > 0d) assertEquals(1d, proportionSum, 1e-12);
+			assertEquals(brood, beetles, 1e-9 * Math.max(1d, brood));
+			assertEquals(beetles, stand.beetles, 0d);
+			assertEquals(81d + generation, stand.standAge, 0d);
+			logger.debug("generation " + generation + ": beetles " + beetles + ", live trees " + stand.totalLiveTrees());
+		}
+	}
+
+	@Test
+	public void testStochasticStepWithFractionalTrees()
+	{
+		UniformRandomProvider random = RandomSource.create(RandomSource.XO_RO_SHI_RO_128_PP, 3L);
+		for (int run = 0; run < 50; run++)
+		{
+			/* Per-hectare stand tables hold fractional trees, down to less than one. */
+			SafranyikStand s = newStand();
+			for (int i = 0; i < nClasses; i++) s.liveTrees[i] = 10.6 - 1.4 * i;
+			s.beetles = 200000d;
+			for (int generation = 0; generation < 5; generation++)
+			{
+				double[] liveBefore = s.liveTrees.clone();
+				engine.step(s, random);
+				for (int i = 0; i < nClasses; i++)
+				{
+					assertTrue(s.liveTrees[i] >= 0d);
+					assertTrue(s.attackedTrees[i] <= liveBefore[i]);
+					assertEquals(Math.rint(s.attackedTrees[i]), s.attackedTrees[i], 0d);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNoBeetles()
+	{
+		stand.beetles = 0d;
+		double liveBefore = stand.totalLiveTrees();
+		assertEquals(0d, engine.step(stand), 0d);
+		assertEquals(liveBefore, stand.totalLiveTrees(), 0d);
+		for (int i = 0; i < nClasses; i++) assertEquals(0d, stand.attackedTrees[i], 0d);
+	}
+
+	@Test
+	public void testStepAllocatesNothing()
+	{
+		final SafranyikStand[] stands = new SafranyikStand[100];
+		for (int s = 0; s < stands.length; s++) stands[s] = newStand();
+		final SafranyikStand warmUp = newStand();
+
+		long allocated = AllocationCounter.allocatedBytes(
+				() -> engine.step(warmUp),
+				() -> {
+					for (int generation = 0; generation < 30; generation++)
+						for (SafranyikStand s : stands) engine.step(s);
+				});
+
+		logger.debug("bytes allocated by " + (30 * stands.length) + " stand steps: " + allocated);
+		assertEquals(0d, allocated, AllocationCounter.SLACK_BYTES);
+	}
+}
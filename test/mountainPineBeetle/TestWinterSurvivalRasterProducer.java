@@ -0,0 +1,111 @@
+package mountainPineBeetle;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mountainPineBeetle.RegniereBentzMPBCalculator.ParameterSet;
+
+public class TestWinterSurvivalRasterProducer {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	int rows = 11, cols = 13, tileRows = 4, tileCols = 5, days = 365;
+	LocalDate start = LocalDate.of(2003, 8, 1);
+
+	float tMin(int day, int row, int col)
+	{
+		/* One cell is masked out on every day. */
+		if((row == 2 && col == 3) || (row + col + day) % 17 == 0) return TiledTemperatureRaster.MISSING;
+		return (float) Math.round(-10d + 20d * Math.cos(2d * Math.PI * (day - 10) / 365d) - 0.5 * row - 0.3 * col + 3d * Math.sin(day + col));
+	}
+	float tMax(int day, int row, int col) { return tMin(day, row, col) + 6f + (day + row) % 5; }
+
+	@Test
+	public void testTilesMatchSingleCells() throws IOException
+	{
+		String stackFile = folder.getRoot() + "/stack.bin";
+		try(TiledTemperatureRaster stack = TiledTemperatureRaster.create(stackFile, rows, cols, tileRows, tileCols, start, days))
+		{
+			float[] tMin = new float[stack.tileCells()], tMax = new float[stack.tileCells()];
+			for(int tile = 0; tile < stack.tiles(); tile++) for(int day = 0; day < days; day++){
+				for(int r = 0; r < tileRows; r++) for(int c = 0; c < tileCols; c++){
+					int row = stack.tileFirstRow(tile) + r, col = stack.tileFirstCol(tile) + c;
+					tMin[r * tileCols + c] = row < rows && col < cols ? tMin(day, row, col) : TiledTemperatureRaster.MISSING;
+					tMax[r * tileCols + c] = row < rows && col < cols ? tMax(day, row, col) : TiledTemperatureRaster.MISSING;
+				}
+				stack.writeTileDay(tile, day, tMin, tMax);
+			}
+		}
+
+		ParameterSet params = ParameterSet.DEFAULT;
+		String survivalFile = folder.getRoot() + "/survival.flt", minLethalFile = folder.getRoot() + "/minLethal.flt";
+		try(TiledTemperatureRaster stack = TiledTemperatureRaster.open(stackFile))
+		{
+			assertEquals(9, stack.tiles());
+			new WinterSurvivalRasterProducer(params).run(stack, survivalFile, minLethalFile, new ForkJoinPool(3));
+		}
+		FloatBuffer survival = read(survivalFile), minLethal = read(minLethalFile);
+		assertEquals(rows * cols, survival.capacity());
+
+		SeasonCalendar calendar = new SeasonCalendar(start, days);
+		double[] state = new double[4];
+		for(int row = 0; row < rows; row++) for(int col = 0; col < cols; col++){
+			state[0] = 0d; state[1] = 0d; state[2] = 0d; state[3] = 1d;
+			double lowest = Double.POSITIVE_INFINITY;
+			for(int day = 0; day < days; day++){
+				RegniereBentzMPBCalculator.updateState(params, 
+						new double[] {tMin(day, row, col), tMax(day, row, col)}, calendar.gainOnly(day), state);
+				lowest = Math.min(lowest, RegniereBentzMPBCalculator.medianLethalTemperature(params, state[0]));
+			}
+			if(row == 2 && col == 3){
+				assertEquals(WinterSurvivalRasterProducer.NODATA, survival.get(row * cols + col), 0f);
+				assertEquals(WinterSurvivalRasterProducer.NODATA, minLethal.get(row * cols + col), 0f);
+				continue;
+			}
+			assertEquals((float) state[3], survival.get(row * cols + col), 0f);
+			assertEquals((float) lowest, minLethal.get(row * cols + col), 0f);
+		}
+
+		List<String> header = Files.readAllLines(Paths.get(folder.getRoot() + "/survival.hdr"));
+		assertEquals("ncols " + cols, header.get(0));
+		assertEquals("nrows " + rows, header.get(1));
+	}
+
+	@Test
+	public void testEmptyRaster() throws IOException
+	{
+		String stackFile = folder.getRoot() + "/empty.bin";
+		TiledTemperatureRaster.create(stackFile, 0, cols, tileRows, tileCols, start, days).close();
+		String survivalFile = folder.getRoot() + "/emptySurvival.flt", minLethalFile = folder.getRoot() + "/emptyMinLethal.flt";
+		try(TiledTemperatureRaster stack = TiledTemperatureRaster.open(stackFile))
+		{
+			assertEquals(0, stack.tiles());
+			new WinterSurvivalRasterProducer(ParameterSet.DEFAULT).run(stack, survivalFile, minLethalFile, new ForkJoinPool(2));
+		}
+		assertEquals(0, read(survivalFile).capacity());
+	}
+
+	FloatBuffer read(String fileName) throws IOException
+	{
+		try(RandomAccessFile file = new RandomAccessFile(fileName, "r"))
+		{
+			return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length())
+					.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		}
+	}
+}